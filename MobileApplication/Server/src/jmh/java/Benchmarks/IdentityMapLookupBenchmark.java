@@ -0,0 +1,75 @@
+package Benchmarks;
+
+import Core.Day;
+import Core.Reservation;
+import IdentityMap.IdentityMapCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//Lookup latency of the identity map store against the ConcurrentHashMap<Integer, ...> it replaced.
+//Run with "gradle jmh"; the gc profiler reports the allocation per lookup (gc.alloc.rate.norm).
+//Ids are drawn above the Integer cache range, so every ConcurrentHashMap lookup has to box its key.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class IdentityMapLookupBenchmark
+{
+    private static final int FIRST_ID = 1000;
+
+    @Param({"1000", "100000"})
+    private int reservations;
+
+    private Map<Integer, Reservation> concurrentHashMap;
+    private IdentityMapCache<Reservation> identityMapCache;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        concurrentHashMap = new ConcurrentHashMap<Integer, Reservation>();
+        identityMapCache = new IdentityMapCache<Reservation>("benchmark", reservations, 0);
+
+        for(int id = FIRST_ID; id < FIRST_ID + reservations; id++)
+        {
+            Reservation reservation = new Reservation(id, id % 50, id, Day.MONDAY, 9, 10, 0);
+            concurrentHashMap.put(id, reservation);
+            identityMapCache.put(reservation);
+        }
+    }
+
+    private int randomId()
+    {
+        return FIRST_ID + ThreadLocalRandom.current().nextInt(reservations);
+    }
+
+    @Benchmark
+    public Reservation concurrentHashMapGet()
+    {
+        return concurrentHashMap.get(randomId());
+    }
+
+    @Benchmark
+    public Reservation identityMapCacheGet()
+    {
+        return identityMapCache.get(randomId());
+    }
+}
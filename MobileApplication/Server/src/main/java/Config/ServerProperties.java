@@ -0,0 +1,97 @@
+package Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+//Static access to application.properties for the parts of the server that run outside of the Spring context
+//(TDGs, Mappers, identity maps). System properties (-Dkey=value) override the values in the file.
+public class ServerProperties
+{
+    private static final String PROPERTIES_FILE = "application.properties";
+    private static final Properties properties = load();
+
+    private static Properties load()
+    {
+        Properties loaded = new Properties();
+        InputStream inputStream = ServerProperties.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE);
+
+        if(inputStream == null)
+            return loaded;
+
+        try
+        {
+            loaded.load(inputStream);
+        }
+        catch(IOException e)
+        {
+            throw new IllegalStateException("Could not read " + PROPERTIES_FILE, e);
+        }
+        finally
+        {
+            try
+            {
+                inputStream.close();
+            }
+            catch(IOException e)
+            {
+                //Nothing left to do with the stream
+            }
+        }
+
+        return loaded;
+    }
+
+    public static String getString(String key, String defaultValue)
+    {
+        String value = System.getProperty(key);
+        if(value == null)
+            value = properties.getProperty(key);
+
+        if(value == null || value.trim().isEmpty())
+            return defaultValue;
+
+        return value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue)
+    {
+        String value = getString(key, null);
+        if(value == null)
+            return defaultValue;
+
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch(NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Property " + key + " must be an integer but was " + value);
+        }
+    }
+
+    public static long getLong(String key, long defaultValue)
+    {
+        String value = getString(key, null);
+        if(value == null)
+            return defaultValue;
+
+        try
+        {
+            return Long.parseLong(value);
+        }
+        catch(NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Property " + key + " must be a number but was " + value);
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue)
+    {
+        String value = getString(key, null);
+        if(value == null)
+            return defaultValue;
+
+        return Boolean.parseBoolean(value);
+    }
+}
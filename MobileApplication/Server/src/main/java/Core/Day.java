@@ -0,0 +1,61 @@
+package Core;
+
+//Day of the week a reservation is for. Requests and JSON responses name days in lowercase ("monday"); everything behind the
+//controllers uses the constant, and the weekDay column of reservations stores its code.
+//The codes are the ordinals, so the constants must never be reordered.
+public enum Day {
+    SATURDAY("saturday"),
+    SUNDAY("sunday"),
+    MONDAY("monday"),
+    TUESDAY("tuesday"),
+    WEDNESDAY("wednesday"),
+    THURSDAY("thursday"),
+    FRIDAY("friday");
+
+    private static final Day[] DAYS = values();
+
+    private final String name;
+
+    Day(String name)
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public byte getCode()
+    {
+        return (byte) ordinal();
+    }
+
+    public static int count()
+    {
+        return DAYS.length;
+    }
+
+    public static Day fromCode(int code)
+    {
+        if(code < 0 || code >= DAYS.length)
+            throw new IllegalArgumentException("No day has the code " + code);
+
+        return DAYS[code];
+    }
+
+    //The day with the given name, in any case, or null if there is none
+    public static Day parse(String name)
+    {
+        if(name == null)
+            return null;
+
+        for(Day day : DAYS)
+        {
+            if(day.name.equalsIgnoreCase(name))
+                return day;
+        }
+
+        return null;
+    }
+}
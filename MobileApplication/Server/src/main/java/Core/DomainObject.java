@@ -1,5 +1,7 @@
 package Core;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * Created by Emili on 2016-10-26.
  */
@@ -7,6 +9,8 @@ package Core;
 public class DomainObject {
 
     private int id;
+    //Value of the version column when the object was read or last written. The TDGs only update or delete the row if it still matches.
+    private int version;
 
     public DomainObject(int id){
         this.id = id;
@@ -19,4 +23,13 @@ public class DomainObject {
     public void setId(int id) {
         this.id = id;
     }
+
+    @JsonIgnore
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
@@ -1,24 +1,29 @@
 package Core;
 
-import org.springframework.util.StringUtils;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
 
 /**
  * Created by Emili on 2016-10-24.
  */
 
 public class Reservation extends DomainObject{
-    private static final AtomicInteger idCounter = new AtomicInteger();
-    private static final String[] VALID_DAYS = {"saturday", "sunday", "monday", "tuesday", "wednesday", "thursday", "friday"};
+    private static final int HOURS_PER_DAY = 24;
+    //Sunday the 4th of January 1970, the first day of week 0. Weeks end with the weekly reset on saturday night.
+    private static final LocalDate FIRST_WEEK = LocalDate.of(1970, 1, 4);
     private int roomId;
     private int studentId;
-    private String day;
+    private Day day;
     private int startTime;
     private int endTime;
     private int position;
+    private int weekId;
 
-    public Reservation(int resId, int roomId, int studentId, String day, int startTime, int endTime, int position)
+    public Reservation(int resId, int roomId, int studentId, Day day, int startTime, int endTime, int position)
     {
         super(resId);
         this.roomId = roomId;
@@ -29,11 +34,6 @@ public class Reservation extends DomainObject{
         this.position = position;
     }
 
-    public static int getNextId()
-    {
-        return idCounter.getAndIncrement();
-    }
-
     public int getRoomId()
     {
         return roomId;
@@ -44,11 +44,25 @@ public class Reservation extends DomainObject{
         return studentId;
     }
 
+    //Name of the day, as sent to the clients
     public String getDay()
+    {
+        return day.getName();
+    }
+
+    @JsonIgnore
+    public Day getDayOfWeek()
     {
         return day;
     }
 
+    //Day and start time packed into one number, see slot(Day, int)
+    @JsonIgnore
+    public int getSlot()
+    {
+        return slot(day, startTime);
+    }
+
     public int getStartTime()
     {
         return startTime;
@@ -64,11 +78,6 @@ public class Reservation extends DomainObject{
         return endTime;
     }
 
-    public static void setIdCounter(int value)
-    {
-        idCounter.set(value);
-    }
-
     public void setRoomId(int roomId)
     {
         this.roomId = roomId;
@@ -79,7 +88,7 @@ public class Reservation extends DomainObject{
         this.studentId = studentId;
     }
 
-    public void setDay(String day)
+    public void setDay(Day day)
     {
         this.day = day;
     }
@@ -99,11 +108,23 @@ public class Reservation extends DomainObject{
         this.position = position;
     }
 
+    //Week the reservation was made for, see weekId(LocalDate)
+    @JsonIgnore
+    public int getWeekId()
+    {
+        return weekId;
+    }
+
+    public void setWeekId(int weekId)
+    {
+        this.weekId = weekId;
+    }
+
     public String toString() {
         return ("Reservation id: " + super.getId() +
                 "\nRoom id: " + roomId +
                 "\nStudent id: " + studentId +
-                "\nDay of the Week: " + day +
+                "\nDay of the Week: " + day.getName() +
                 "\nStart Time: " + startTime +
                 "\nEnd Time: " + endTime +
                 "\nPosition: " + position);
@@ -111,17 +132,21 @@ public class Reservation extends DomainObject{
 
     public static boolean validDay(String weekDay)
     {
-        if(StringUtils.isEmpty(weekDay))
-            return false;
+        return Day.parse(weekDay) != null;
+    }
 
-        String lowerDay = weekDay.toLowerCase();
-        for(String validDay: VALID_DAYS)
-        {
-            if(lowerDay.equals(validDay))
-                return true;
-        }
+    //Identifies the hour of the week starting at the given hour of the day, so that two reservations start at the same time
+    //exactly when their slots are equal
+    public static int slot(Day day, int hour)
+    {
+        return day.ordinal() * HOURS_PER_DAY + hour;
+    }
 
-        return false;
+    //Number of weeks between the first week and the week, running sunday to saturday, that contains the date
+    public static int weekId(LocalDate date)
+    {
+        LocalDate sunday = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY));
+        return (int) ChronoUnit.WEEKS.between(FIRST_WEEK, sunday);
     }
 
     public static boolean validTime(int time)
@@ -1,5 +1,7 @@
 package Core;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * Created by Emili on 2016-10-24.
  */
@@ -29,6 +31,16 @@ public class Room extends DomainObject{
         return roomSize;
     }
 
+    //Library the room is in, the letters its number starts with: "LB" for "LB-351", "VL" for "VL 301-10", "B" for "B.101"
+    //and "H" for "H961-1"
+    @JsonIgnore
+    public String getLibrary() {
+        int end = 0;
+        while (end < roomNumber.length() && Character.isLetter(roomNumber.charAt(end)))
+            end++;
+        return roomNumber.substring(0, end).toUpperCase();
+    }
+
     public void setRoomNumber(String roomNumber) {
         this.roomNumber = roomNumber;
     }
@@ -0,0 +1,388 @@
+package IdentityMap;
+
+import Config.ServerProperties;
+import Core.DomainObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+//Bounded store behind the identity maps.
+//Holds at most identity-map.<name>.capacity objects and evicts with the CLOCK algorithm (second chance) when full: an object that
+//was read since the clock hand last passed it is skipped once. If identity-map.<name>.ttl-seconds is set, objects older than that
+//are dropped on access so they get reloaded from the database.
+//
+//Ids are kept in an open addressing table of primitive longs, each packing the id with the slot's state (linear probing,
+//tombstones for removed ids), sized once from the capacity, so lookups neither box the id nor allocate. Lookups run under an optimistic StampedLock read and only fall back to a
+//real read lock when a write raced with them.
+//Every cache registers itself so that com.server.IdentityMapMetrics can publish its counters.
+public class IdentityMapCache<T extends DomainObject> {
+
+    private static final String PROPERTY_PREFIX = "identity-map.";
+    private static final List<IdentityMapCache<?>> caches = new CopyOnWriteArrayList<IdentityMapCache<?>>();
+
+    //Slot states, stored in the upper half of each slot with the id in the lower half
+    private static final long EMPTY = 0;
+    private static final long FULL = 1L << 32;
+    private static final long REMOVED = 2L << 32;
+    private static final long STATE_MASK = 0xffffffffL << 32;
+
+    private final String name;
+    private final int capacity;
+    private final long ttlNanos;
+
+    private final StampedLock lock = new StampedLock();
+    private final int mask;
+    private final long[] slots;
+    private final Object[] objects;
+    private final long[] loadedAt;
+    private final boolean[] referenced;
+    private int size;
+    private int tombstones;
+    private int clockHand;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public IdentityMapCache(String name, int capacity, long ttlMillis)
+    {
+        if(capacity <= 0)
+            throw new IllegalArgumentException("Identity map " + name + " needs a positive capacity but got " + capacity);
+
+        this.name = name;
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+
+        //At least twice the capacity so that probe sequences stay short even when full
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.mask = tableSize - 1;
+        this.slots = new long[tableSize];
+        this.objects = new Object[tableSize];
+        this.loadedAt = new long[tableSize];
+        this.referenced = new boolean[tableSize];
+
+        caches.add(this);
+    }
+
+    //Creates a cache sized by the identity-map.<name>.* properties, falling back to the given defaults
+    public static <T extends DomainObject> IdentityMapCache<T> fromProperties(String name, int defaultCapacity)
+    {
+        int capacity = ServerProperties.getInt(PROPERTY_PREFIX + name + ".capacity", defaultCapacity);
+        long ttlSeconds = ServerProperties.getLong(PROPERTY_PREFIX + name + ".ttl-seconds", 0);
+
+        return new IdentityMapCache<T>(name, capacity, TimeUnit.SECONDS.toMillis(ttlSeconds));
+    }
+
+    public static List<IdentityMapCache<?>> getCaches()
+    {
+        return Collections.unmodifiableList(caches);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int id)
+    {
+        long stamp = lock.tryOptimisticRead();
+        int slot = find(id);
+        Object object = slot < 0 ? null : objects[slot];
+        long objectLoadedAt = (slot < 0 || ttlNanos == 0) ? 0 : loadedAt[slot];
+
+        if(!lock.validate(stamp))
+        {
+            stamp = lock.readLock();
+
+            try
+            {
+                slot = find(id);
+                object = slot < 0 ? null : objects[slot];
+                objectLoadedAt = (slot < 0 || ttlNanos == 0) ? 0 : loadedAt[slot];
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        if(object == null)
+        {
+            misses.increment();
+            return null;
+        }
+
+        if(isExpired(objectLoadedAt))
+        {
+            expire(id, object);
+            misses.increment();
+            return null;
+        }
+
+        //A lost update here only costs the object its second chance, so it is not worth a write lock.
+        //Only written when clear, so repeated hits on the same objects do not keep invalidating the cache line for other readers.
+        if(!referenced[slot])
+            referenced[slot] = true;
+        hits.increment();
+        return (T) object;
+    }
+
+    public void put(T object)
+    {
+        long stamp = lock.writeLock();
+
+        try
+        {
+            int id = object.getId();
+            int slot = find(id);
+
+            if(slot < 0)
+            {
+                if(size >= capacity)
+                    evict();
+                if(size + tombstones + 1 > slots.length * 3 / 4)
+                    rehash();
+
+                slot = freeSlot(id);
+                if((slots[slot] & STATE_MASK) == REMOVED)
+                    tombstones--;
+
+                slots[slot] = FULL | (id & 0xffffffffL);
+                size++;
+            }
+
+            objects[slot] = object;
+            loadedAt[slot] = System.nanoTime();
+            referenced[slot] = false;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(int id)
+    {
+        long stamp = lock.writeLock();
+
+        try
+        {
+            int slot = find(id);
+            if(slot >= 0)
+                removeSlot(slot);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear()
+    {
+        long stamp = lock.writeLock();
+
+        try
+        {
+            Arrays.fill(slots, EMPTY);
+            Arrays.fill(objects, null);
+            Arrays.fill(referenced, false);
+            size = 0;
+            tombstones = 0;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    //Every object held, in no particular order, leaving out the expired ones
+    @SuppressWarnings("unchecked")
+    public List<T> values()
+    {
+        long stamp = lock.readLock();
+
+        try
+        {
+            List<T> values = new ArrayList<T>(size);
+            for(int slot = 0; slot < slots.length; slot++)
+            {
+                if((slots[slot] & STATE_MASK) == FULL && !isExpired(loadedAt[slot]))
+                    values.add((T) objects[slot]);
+            }
+
+            return values;
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size()
+    {
+        long stamp = lock.readLock();
+
+        try
+        {
+            return size;
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //Slot holding the id, or -1. Probing stops at the first never used slot, or after one full turn in case a concurrent write
+    //left the table inconsistent for an optimistic reader.
+    private int find(int id)
+    {
+        int slot = hash(id) & mask;
+        long wanted = FULL | (id & 0xffffffffL);
+
+        for(int probes = 0; probes <= mask; probes++)
+        {
+            long current = slots[slot];
+            if(current == wanted)
+                return slot;
+            if(current == EMPTY)
+                return -1;
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    //First removed or never used slot on the id's probe sequence. The table is never full, so there always is one.
+    private int freeSlot(int id)
+    {
+        int slot = hash(id) & mask;
+
+        while((slots[slot] & STATE_MASK) == FULL)
+            slot = (slot + 1) & mask;
+
+        return slot;
+    }
+
+    private void removeSlot(int slot)
+    {
+        slots[slot] = REMOVED;
+        objects[slot] = null;
+        referenced[slot] = false;
+        size--;
+        tombstones++;
+    }
+
+    //Advances the clock hand to the first object that was not read since the hand last passed it, and removes it
+    private void evict()
+    {
+        while(true)
+        {
+            int slot = clockHand;
+            clockHand = (clockHand + 1) & mask;
+
+            if((slots[slot] & STATE_MASK) != FULL)
+                continue;
+
+            if(referenced[slot])
+            {
+                referenced[slot] = false;
+                continue;
+            }
+
+            removeSlot(slot);
+            evictions.increment();
+            return;
+        }
+    }
+
+    //Reinserts every object so that the tombstones left by removals stop lengthening the probe sequences
+    private void rehash()
+    {
+        long[] oldSlots = slots.clone();
+        Object[] oldObjects = objects.clone();
+        long[] oldLoadedAt = loadedAt.clone();
+        boolean[] oldReferenced = referenced.clone();
+
+        Arrays.fill(slots, EMPTY);
+        Arrays.fill(objects, null);
+        Arrays.fill(referenced, false);
+        tombstones = 0;
+
+        for(int i = 0; i < oldSlots.length; i++)
+        {
+            if((oldSlots[i] & STATE_MASK) != FULL)
+                continue;
+
+            int slot = freeSlot((int) oldSlots[i]);
+            slots[slot] = oldSlots[i];
+            objects[slot] = oldObjects[i];
+            loadedAt[slot] = oldLoadedAt[i];
+            referenced[slot] = oldReferenced[i];
+        }
+    }
+
+    //Removes the object if it is still the one that was found expired
+    private void expire(int id, Object object)
+    {
+        long stamp = lock.writeLock();
+
+        try
+        {
+            int slot = find(id);
+            if(slot >= 0 && objects[slot] == object)
+            {
+                removeSlot(slot);
+                expirations.increment();
+            }
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean isExpired(long objectLoadedAt)
+    {
+        return ttlNanos > 0 && System.nanoTime() - objectLoadedAt > ttlNanos;
+    }
+
+    private static int hash(int id)
+    {
+        int hash = id * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    public long getExpirations()
+    {
+        return expirations.sum();
+    }
+}
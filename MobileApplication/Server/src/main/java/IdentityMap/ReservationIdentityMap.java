@@ -2,8 +2,7 @@ package IdentityMap;
 
 import Core.Reservation;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 /**
  * Created by Emili on 2016-10-25.
@@ -11,27 +10,28 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class ReservationIdentityMap {
 
-    private static Map<Integer, Reservation> mapOfReservations = new ConcurrentHashMap<Integer, Reservation>();
+    //Large by default: ReservationMapper loads every reservation of the week at startup
+    private static final IdentityMapCache<Reservation> mapOfReservations = IdentityMapCache.fromProperties("reservations", 100000);
 
     public static void addRes(Reservation reservation){
-        mapOfReservations.put(reservation.getId(), reservation);
+        mapOfReservations.put(reservation);
     }
 
     public static Reservation getResFromMap(int reservationId)  {
-        Reservation reservation = mapOfReservations.get(reservationId);
-        if (reservation == null){
-            return null;
-        }
-        return reservation;
+        return mapOfReservations.get(reservationId);
     }
 
     public static void delete(Reservation reservation){
-        int id = reservation.getId();
-        mapOfReservations.remove(id);
+        mapOfReservations.remove(reservation.getId());
     }
 
     public static void reset()
     {
         mapOfReservations.clear();
     }
-}
\ No newline at end of file
+
+    public static List<Reservation> getAll()
+    {
+        return mapOfReservations.values();
+    }
+}
@@ -0,0 +1,111 @@
+package IdentityMap;
+
+import Core.Day;
+import Core.Reservation;
+
+import java.util.Arrays;
+
+//Bitmask view of SlotOccupancyIndex: one bit per hourly slot of the week for each room, set while the slot holds a reservation.
+//A room's week is 7 days of 18 hours, 126 bits, kept as two consecutive longs of one flat array, so checking a room over any
+//time range is two ANDs against a mask built once per query, and a query over every room is one pass over the array.
+//Bits are numbered like SlotOccupancyIndex numbers the slots of a room: day * 18 + (hour - 7).
+//Only SlotOccupancyIndex writes it, while holding its own lock. Queries take no lock and may miss a booking made a moment
+//before, which is fine for answering what is free: booking the slot still goes through ReservationMapper.
+public class RoomAvailabilityIndex {
+
+    private static final int WORDS_PER_ROOM = 2;
+
+    private static volatile long[] occupied = new long[0];
+
+    //Ids among the given rooms without any reservation from startTime up to endTime on the day, in the given order
+    public static int[] findFreeRooms(int[] roomIds, Day day, int startTime, int endTime)
+    {
+        if(startTime < SlotOccupancyIndex.FIRST_HOUR || endTime > SlotOccupancyIndex.FIRST_HOUR + SlotOccupancyIndex.HOURS || startTime >= endTime)
+            throw new IllegalArgumentException("No time range from " + startTime + " to " + endTime);
+
+        long firstMask = 0;
+        long secondMask = 0;
+        for(int hour = startTime; hour < endTime; hour++)
+        {
+            int bit = bit(day, hour);
+            if(bit < Long.SIZE)
+                firstMask |= 1L << bit;
+            else
+                secondMask |= 1L << (bit - Long.SIZE);
+        }
+
+        long[] current = occupied;
+        int[] freeRooms = new int[roomIds.length];
+        int count = 0;
+
+        for(int roomId : roomIds)
+        {
+            int word = roomId * WORDS_PER_ROOM;
+            if(word + 1 >= current.length || ((current[word] & firstMask) | (current[word + 1] & secondMask)) == 0)
+                freeRooms[count++] = roomId;
+        }
+
+        return Arrays.copyOf(freeRooms, count);
+    }
+
+    //Start times of the one hour reservations that the room could still take on the day
+    public static int[] findFreeHours(int roomId, Day day)
+    {
+        long[] current = occupied;
+        int word = roomId * WORDS_PER_ROOM;
+        int[] freeHours = new int[SlotOccupancyIndex.HOURS];
+        int count = 0;
+
+        for(int hour = SlotOccupancyIndex.FIRST_HOUR; Reservation.validTime(hour + 1); hour++)
+        {
+            int bit = bit(day, hour);
+            if(word + 1 >= current.length || (current[word + bit / Long.SIZE] & (1L << (bit % Long.SIZE))) == 0)
+                freeHours[count++] = hour;
+        }
+
+        return Arrays.copyOf(freeHours, count);
+    }
+
+    static void occupy(int slot)
+    {
+        int word = word(slot);
+        ensureCapacity(word);
+
+        occupied[word] |= 1L << (slot % SlotOccupancyIndex.SLOTS_PER_ROOM % Long.SIZE);
+    }
+
+    static void free(int slot)
+    {
+        int word = word(slot);
+        if(word < occupied.length)
+            occupied[word] &= ~(1L << (slot % SlotOccupancyIndex.SLOTS_PER_ROOM % Long.SIZE));
+    }
+
+    static void clear()
+    {
+        occupied = new long[0];
+    }
+
+    private static int bit(Day day, int hour)
+    {
+        return day.ordinal() * SlotOccupancyIndex.HOURS + hour - SlotOccupancyIndex.FIRST_HOUR;
+    }
+
+    //Index of the long holding the slot's bit
+    private static int word(int slot)
+    {
+        int room = slot / SlotOccupancyIndex.SLOTS_PER_ROOM;
+        int bit = slot % SlotOccupancyIndex.SLOTS_PER_ROOM;
+
+        return room * WORDS_PER_ROOM + bit / Long.SIZE;
+    }
+
+    private static void ensureCapacity(int word)
+    {
+        if(word < occupied.length)
+            return;
+
+        int rooms = Math.max(word / WORDS_PER_ROOM + 1, 2 * occupied.length / WORDS_PER_ROOM);
+        occupied = Arrays.copyOf(occupied, rooms * WORDS_PER_ROOM);
+    }
+}
@@ -2,8 +2,7 @@ package IdentityMap;
 
 import Core.Room;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 /**
  * Created by Emili on 2016-10-25.
@@ -11,25 +10,25 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class RoomIdentityMap {
 
-    private static Map<Integer, Room> mapOfRooms = new ConcurrentHashMap<Integer, Room>();
+    private static final IdentityMapCache<Room> mapOfRooms = IdentityMapCache.fromProperties("rooms", 1000);
 
     public static void addRoom(Room room)
     {
-        mapOfRooms.put(room.getId(), room);
+        mapOfRooms.put(room);
     }
 
     public static Room getRoomFromMap(int roomId)
     {
-        Room room = mapOfRooms.get(roomId);
-        if (room == null){
-           return null;
-        }
-        return room;
+        return mapOfRooms.get(roomId);
     }
 
     public static void delete(Room room)
     {
-        int id = room.getId();
-        mapOfRooms.remove(id);
+        mapOfRooms.remove(room.getId());
     }
-}
\ No newline at end of file
+
+    public static List<Room> getAll()
+    {
+        return mapOfRooms.values();
+    }
+}
@@ -0,0 +1,121 @@
+package IdentityMap;
+
+import Core.Room;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Rooms grouped by library and ordered by size, so that picking the rooms a search should check is a binary search instead
+//of a pass over every room. Built from the whole rooms table and replaced as a whole; RoomMapper drops it whenever a room is
+//added, changed or removed, and the next search rebuilds it.
+public class RoomSearchIndex {
+
+    private static volatile Catalog catalog;
+
+    public static boolean isLoaded()
+    {
+        return catalog != null;
+    }
+
+    public static void load(Collection<Room> rooms)
+    {
+        catalog = new Catalog(rooms);
+    }
+
+    public static void invalidate()
+    {
+        catalog = null;
+    }
+
+    //Ids of every room in ascending order, or null if the index is not loaded. The returned array must not be modified.
+    public static int[] getRoomIds()
+    {
+        Catalog current = catalog;
+        return current == null ? null : current.roomIds;
+    }
+
+    //Ids, in ascending order, of the rooms of the library (any library if null) holding at least minSize people,
+    //or null if the index is not loaded
+    public static int[] findRooms(String library, int minSize)
+    {
+        Catalog current = catalog;
+        if(current == null)
+            return null;
+
+        Group group = library == null ? current.allRooms : current.libraries.get(library.toUpperCase());
+        if(group == null)
+            return new int[0];
+
+        return group.atLeast(minSize);
+    }
+
+    private static class Catalog
+    {
+        private final int[] roomIds;
+        private final Group allRooms;
+        private final Map<String, Group> libraries = new HashMap<String, Group>();
+
+        private Catalog(Collection<Room> rooms)
+        {
+            Map<String, List<Room>> roomsByLibrary = new HashMap<String, List<Room>>();
+            for(Room room : rooms)
+                roomsByLibrary.computeIfAbsent(room.getLibrary(), library -> new ArrayList<Room>()).add(room);
+
+            for(Map.Entry<String, List<Room>> entry : roomsByLibrary.entrySet())
+                libraries.put(entry.getKey(), new Group(entry.getValue()));
+
+            allRooms = new Group(rooms);
+
+            roomIds = new int[rooms.size()];
+            int i = 0;
+            for(Room room : rooms)
+                roomIds[i++] = room.getId();
+            Arrays.sort(roomIds);
+        }
+    }
+
+    //Rooms of one library, largest first, with their sizes in a parallel array
+    private static class Group
+    {
+        private final int[] roomIds;
+        private final int[] sizes;
+
+        private Group(Collection<Room> rooms)
+        {
+            Room[] sorted = rooms.toArray(new Room[rooms.size()]);
+            Arrays.sort(sorted, Comparator.comparingInt(Room::getRoomSize).reversed());
+
+            roomIds = new int[sorted.length];
+            sizes = new int[sorted.length];
+            for(int i = 0; i < sorted.length; i++)
+            {
+                roomIds[i] = sorted[i].getId();
+                sizes[i] = sorted[i].getRoomSize();
+            }
+        }
+
+        private int[] atLeast(int minSize)
+        {
+            //First room smaller than minSize; every room before it is large enough
+            int low = 0;
+            int high = sizes.length;
+            while(low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if(sizes[middle] >= minSize)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+
+            int[] found = Arrays.copyOf(roomIds, low);
+            Arrays.sort(found);
+            return found;
+        }
+    }
+}
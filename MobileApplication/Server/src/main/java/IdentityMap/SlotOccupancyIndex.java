@@ -0,0 +1,192 @@
+package IdentityMap;
+
+import Core.Day;
+import Core.Reservation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+//In-memory occupancy of every room, day and hour: how many reservations the slot holds (the reservation plus its waitlist, which
+//is also the position the next booking would get) and the id of the reservation at position 0.
+//Both are kept in flat primitive arrays indexed by ((roomId * 7) + day) * 18 + (hour - 7), grown when a larger room id shows up.
+//Once loaded from the database, ReservationMapper keeps it in sync on every write, so booking decisions never need to read the
+//reservations table. Mutations are synchronized; reads rely on the caller holding the slot's stripe in Mapper.ReservationLocks.
+//Every slot going from free to taken or back is also recorded in RoomAvailabilityIndex.
+//The ids of the waitlisted reservations are kept per slot as well, only for the few slots that have a waitlist.
+public class SlotOccupancyIndex {
+
+    static final int DAYS = Day.count();
+    static final int FIRST_HOUR = 7;
+    static final int HOURS = 18;
+    static final int SLOTS_PER_ROOM = DAYS * HOURS;
+    private static final int NO_RESERVATION = 0;
+
+    private static volatile int[] depths = new int[0];
+    private static volatile int[] headIds = new int[0];
+    private static final Map<Integer, int[]> waitlistIds = new HashMap<Integer, int[]>();
+    private static volatile boolean loaded = false;
+
+    public static boolean isLoaded()
+    {
+        return loaded;
+    }
+
+    //Number of reservations in the slot, position 0 included
+    public static int getDepth(int roomId, Day day, int startTime)
+    {
+        int slot = slot(roomId, day, startTime);
+        int[] currentDepths = depths;
+
+        return slot < currentDepths.length ? currentDepths[slot] : 0;
+    }
+
+    //Id of the reservation at position 0 in the slot, or 0 if the slot is free
+    public static int getHeadReservationId(int roomId, Day day, int startTime)
+    {
+        int slot = slot(roomId, day, startTime);
+        int[] currentHeadIds = headIds;
+
+        return slot < currentHeadIds.length ? currentHeadIds[slot] : NO_RESERVATION;
+    }
+
+    //Ids of the reservations on the slot's waitlist, in no particular order
+    public static synchronized int[] getWaitlistIds(int roomId, Day day, int startTime)
+    {
+        int[] ids = waitlistIds.get(slot(roomId, day, startTime));
+        return ids == null ? new int[0] : ids.clone();
+    }
+
+    //Ids of the reservations at position 0 in every slot of the day
+    public static int[] getHeadReservationIds(Day day)
+    {
+        int[] currentHeadIds = headIds;
+        int[] ids = new int[currentHeadIds.length / DAYS];
+        int count = 0;
+
+        for(int dayStart = day.ordinal() * HOURS; dayStart < currentHeadIds.length; dayStart += SLOTS_PER_ROOM)
+        {
+            for(int slot = dayStart; slot < dayStart + HOURS; slot++)
+            {
+                if(currentHeadIds[slot] != NO_RESERVATION)
+                    ids[count++] = currentHeadIds[slot];
+            }
+        }
+
+        return Arrays.copyOf(ids, count);
+    }
+
+    public static synchronized void add(Reservation reservation)
+    {
+        int slot = slot(reservation.getRoomId(), reservation.getDayOfWeek(), reservation.getStartTime());
+        ensureCapacity(slot);
+
+        depths[slot]++;
+        if(depths[slot] == 1)
+            RoomAvailabilityIndex.occupy(slot);
+        if(reservation.getPosition() == 0)
+            headIds[slot] = reservation.getId();
+        else
+            addWaitlisted(slot, reservation.getId());
+    }
+
+    public static synchronized void remove(Reservation reservation)
+    {
+        int slot = slot(reservation.getRoomId(), reservation.getDayOfWeek(), reservation.getStartTime());
+        if(slot >= depths.length || depths[slot] == 0)
+            return;
+
+        depths[slot]--;
+        if(depths[slot] == 0)
+            RoomAvailabilityIndex.free(slot);
+        if(headIds[slot] == reservation.getId())
+            headIds[slot] = NO_RESERVATION;
+        else
+            removeWaitlisted(slot, reservation.getId());
+    }
+
+    //Records a waitlisted reservation that just moved up to position 0
+    public static synchronized void promote(Reservation reservation)
+    {
+        int slot = slot(reservation.getRoomId(), reservation.getDayOfWeek(), reservation.getStartTime());
+        ensureCapacity(slot);
+
+        headIds[slot] = reservation.getId();
+        removeWaitlisted(slot, reservation.getId());
+    }
+
+    //Replaces the whole index with the given reservations
+    public static synchronized void load(Collection<Reservation> reservations)
+    {
+        depths = new int[0];
+        headIds = new int[0];
+        waitlistIds.clear();
+        RoomAvailabilityIndex.clear();
+
+        for(Reservation reservation : reservations)
+            add(reservation);
+
+        loaded = true;
+    }
+
+    //Marks the index as out of sync with the database, so that it is loaded again before the next booking decision
+    public static void invalidate()
+    {
+        loaded = false;
+    }
+
+    private static void addWaitlisted(int slot, int reservationId)
+    {
+        int[] ids = waitlistIds.get(slot);
+        if(ids == null)
+        {
+            waitlistIds.put(slot, new int[]{reservationId});
+            return;
+        }
+
+        ids = Arrays.copyOf(ids, ids.length + 1);
+        ids[ids.length - 1] = reservationId;
+        waitlistIds.put(slot, ids);
+    }
+
+    private static void removeWaitlisted(int slot, int reservationId)
+    {
+        int[] ids = waitlistIds.get(slot);
+        if(ids == null)
+            return;
+
+        int[] remaining = new int[ids.length];
+        int count = 0;
+        for(int id : ids)
+        {
+            if(id != reservationId)
+                remaining[count++] = id;
+        }
+
+        if(count == 0)
+            waitlistIds.remove(slot);
+        else
+            waitlistIds.put(slot, Arrays.copyOf(remaining, count));
+    }
+
+    private static void ensureCapacity(int slot)
+    {
+        if(slot < depths.length)
+            return;
+
+        int rooms = Math.max(slot / SLOTS_PER_ROOM + 1, 2 * depths.length / SLOTS_PER_ROOM);
+        headIds = Arrays.copyOf(headIds, rooms * SLOTS_PER_ROOM);
+        depths = Arrays.copyOf(depths, rooms * SLOTS_PER_ROOM);
+    }
+
+    private static int slot(int roomId, Day day, int startTime)
+    {
+        int hourIndex = startTime - FIRST_HOUR;
+
+        if(roomId < 0 || hourIndex < 0 || hourIndex >= HOURS)
+            throw new IllegalArgumentException("No time slot for room " + roomId + " on " + day.getName() + " at " + startTime);
+
+        return (roomId * DAYS + day.ordinal()) * HOURS + hourIndex;
+    }
+}
@@ -2,8 +2,7 @@ package IdentityMap;
 
 import Core.Student;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 /**
  * Created by Emili on 2016-10-25.
@@ -11,23 +10,23 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class StudentIdentityMap {
 
-    private static Map<Integer, Student> mapOfStudents = new ConcurrentHashMap<Integer, Student>();
+    private static final IdentityMapCache<Student> mapOfStudents = IdentityMapCache.fromProperties("students", 10000);
 
     public static void addStudent(Student student)
     {
-        mapOfStudents.put(student.getId(), student);
+        mapOfStudents.put(student);
     }
 
     public static Student getStudentFromMap(int studentID){
-        Student student = mapOfStudents.get(studentID);
-        if (student == null){
-            return null;
-        }
-        return student;
+        return mapOfStudents.get(studentID);
     }
 
     public static void delete(Student student){
-        int id = student.getId();
-        mapOfStudents.remove(id);
+        mapOfStudents.remove(student.getId());
     }
-}
\ No newline at end of file
+
+    public static List<Student> getAll()
+    {
+        return mapOfStudents.values();
+    }
+}
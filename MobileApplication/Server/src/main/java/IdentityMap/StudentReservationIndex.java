@@ -0,0 +1,96 @@
+package IdentityMap;
+
+import Core.Reservation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Secondary index of the reservation identity map: the ids of every reservation and waitlist entry of each student.
+//A student holds at most 3 reservations and 3 waitlist entries, so each entry is a small sorted int array. Arrays are never
+//modified once published, a change replaces the student's array, so lookups need no locking.
+//Once loaded from the database, ReservationMapper keeps it in sync on every write.
+public class StudentReservationIndex {
+
+    private static final int[] NO_RESERVATIONS = new int[0];
+
+    private static Map<Integer, int[]> reservationIdsByStudent = new ConcurrentHashMap<Integer, int[]>();
+    private static volatile boolean loaded = false;
+
+    public static boolean isLoaded()
+    {
+        return loaded;
+    }
+
+    //Ids of the student's reservations, in ascending order. The returned array must not be modified.
+    public static int[] getReservationIds(int studentId)
+    {
+        int[] reservationIds = reservationIdsByStudent.get(studentId);
+        if(reservationIds == null)
+            return NO_RESERVATIONS;
+
+        return reservationIds;
+    }
+
+    public static boolean contains(int studentId, int reservationId)
+    {
+        return Arrays.binarySearch(getReservationIds(studentId), reservationId) >= 0;
+    }
+
+    public static void add(Reservation reservation)
+    {
+        reservationIdsByStudent.compute(reservation.getStudentId(), (studentId, reservationIds) ->
+        {
+            if(reservationIds == null)
+                return new int[]{reservation.getId()};
+
+            int index = Arrays.binarySearch(reservationIds, reservation.getId());
+            if(index >= 0)
+                return reservationIds;
+
+            int insertion = -index - 1;
+            int[] updated = new int[reservationIds.length + 1];
+            System.arraycopy(reservationIds, 0, updated, 0, insertion);
+            updated[insertion] = reservation.getId();
+            System.arraycopy(reservationIds, insertion, updated, insertion + 1, reservationIds.length - insertion);
+
+            return updated;
+        });
+    }
+
+    public static void remove(Reservation reservation)
+    {
+        reservationIdsByStudent.computeIfPresent(reservation.getStudentId(), (studentId, reservationIds) ->
+        {
+            int index = Arrays.binarySearch(reservationIds, reservation.getId());
+            if(index < 0)
+                return reservationIds;
+            if(reservationIds.length == 1)
+                return null;
+
+            int[] updated = new int[reservationIds.length - 1];
+            System.arraycopy(reservationIds, 0, updated, 0, index);
+            System.arraycopy(reservationIds, index + 1, updated, index, reservationIds.length - index - 1);
+
+            return updated;
+        });
+    }
+
+    //Replaces the whole index with the given reservations
+    public static synchronized void load(Collection<Reservation> reservations)
+    {
+        reservationIdsByStudent.clear();
+
+        for(Reservation reservation : reservations)
+            add(reservation);
+
+        loaded = true;
+    }
+
+    //Marks the index as out of sync with the database, so that it is loaded again before it is used
+    public static void invalidate()
+    {
+        loaded = false;
+    }
+}
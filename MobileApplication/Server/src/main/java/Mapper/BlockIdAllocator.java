@@ -0,0 +1,47 @@
+package Mapper;
+
+import TDG.SequenceTDG;
+
+import java.sql.SQLException;
+
+//Hi/lo allocation: reserves blockSize ids at a time from the shared id_sequences table and hands them out from memory.
+//Every server gets disjoint blocks, so ids never collide, and only one id in blockSize costs a database round trip.
+//Ids left in a block when the server stops are skipped.
+public class BlockIdAllocator implements IdAllocator
+{
+    private final String sequenceName;
+    private final int blockSize;
+    private int nextId;
+    private int blockEnd;
+
+    public BlockIdAllocator(String sequenceName, int blockSize)
+    {
+        if(blockSize <= 0)
+            throw new IllegalArgumentException("id-allocator.block-size must be positive but was " + blockSize);
+
+        this.sequenceName = sequenceName;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public synchronized int nextId() throws ClassNotFoundException, SQLException
+    {
+        if(nextId >= blockEnd)
+        {
+            blockEnd = SequenceTDG.reserveBlock(sequenceName, blockSize);
+            nextId = blockEnd - blockSize;
+        }
+
+        return nextId++;
+    }
+
+    //Raises the shared sequence so that blocks reserved from now on start at nextId or later. The current block is dropped,
+    //since it may hold ids below nextId.
+    @Override
+    public synchronized void restartAt(int nextId) throws ClassNotFoundException, SQLException
+    {
+        SequenceTDG.raiseTo(sequenceName, nextId);
+        this.nextId = 0;
+        this.blockEnd = 0;
+    }
+}
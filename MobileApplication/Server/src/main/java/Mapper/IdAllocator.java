@@ -0,0 +1,28 @@
+package Mapper;
+
+import Config.ServerProperties;
+
+import java.sql.SQLException;
+
+//Hands out ids for new domain objects.
+//The strategy is picked with id-allocator.strategy: "local" counts in memory and is only safe with a single server, "block"
+//reserves ranges of id-allocator.block-size ids from the id_sequences table so several servers can share one database.
+public interface IdAllocator
+{
+    int nextId() throws ClassNotFoundException, SQLException;
+
+    //Makes the next ids start at nextId. Shared allocators only ever move forward, since other servers may hold lower ids.
+    void restartAt(int nextId) throws ClassNotFoundException, SQLException;
+
+    static IdAllocator forSequence(String sequenceName)
+    {
+        String strategy = ServerProperties.getString("id-allocator.strategy", "local");
+
+        if(strategy.equals("local"))
+            return new LocalIdAllocator();
+        if(strategy.equals("block"))
+            return new BlockIdAllocator(sequenceName, ServerProperties.getInt("id-allocator.block-size", 1000));
+
+        throw new IllegalArgumentException("Unknown id-allocator.strategy " + strategy + ", expected local or block");
+    }
+}
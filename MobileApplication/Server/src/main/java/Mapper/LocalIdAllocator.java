@@ -0,0 +1,21 @@
+package Mapper;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Counts ids in memory, seeded from the highest id in the database at startup. Only safe while a single server writes.
+public class LocalIdAllocator implements IdAllocator
+{
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    @Override
+    public int nextId()
+    {
+        return nextId.getAndIncrement();
+    }
+
+    @Override
+    public void restartAt(int nextId)
+    {
+        this.nextId.set(nextId);
+    }
+}
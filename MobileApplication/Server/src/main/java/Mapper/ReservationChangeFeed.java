@@ -0,0 +1,179 @@
+package Mapper;
+
+import Config.ServerProperties;
+import Core.Day;
+import Core.Reservation;
+import IdentityMap.SlotOccupancyIndex;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+//Sequence of the slot changes committed by ReservationMapper, so that clients can follow availability instead of polling.
+//Writers record the slots they touch with touch() and call publish() once their change is committed, while still holding the
+//slot stripes, which appends one change per slot with its depth at that point; a failed write calls discard() instead.
+//The last changes.buffer-size changes are kept in a ring buffer. A reader resumes from the last sequence number it saw, and
+//learns from changesAfter() returning null that it fell too far behind and must reload the reservations instead.
+//Sequence numbers start over when the server restarts, so readers keep them together with getEpoch().
+public class ReservationChangeFeed
+{
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private static final Change[] buffer = new Change[Math.max(1, ServerProperties.getInt("changes.buffer-size", DEFAULT_BUFFER_SIZE))];
+    private static long lastSequence = 0;
+
+    private static final List<Runnable> listeners = new CopyOnWriteArrayList<Runnable>();
+
+    //Slots touched by the calling thread's pending write, as roomId << 16 | day code << 8 | start time
+    private static final ThreadLocal<Set<Long>> touchedSlots = ThreadLocal.withInitial(HashSet::new);
+
+    //A slot after a committed change, or the start of a new week ("reset") which empties every slot at once
+    public static class Change
+    {
+        public static final String SLOT = "slot";
+        public static final String RESET = "reset";
+
+        private final long sequence;
+        private final String type;
+        private final int roomId;
+        private final Day day;
+        private final int startTime;
+        private final int depth;
+
+        private Change(long sequence, String type, int roomId, Day day, int startTime, int depth)
+        {
+            this.sequence = sequence;
+            this.type = type;
+            this.roomId = roomId;
+            this.day = day;
+            this.startTime = startTime;
+            this.depth = depth;
+        }
+
+        public long getSequence()
+        {
+            return sequence;
+        }
+
+        public String getType()
+        {
+            return type;
+        }
+
+        public int getRoomId()
+        {
+            return roomId;
+        }
+
+        public String getDay()
+        {
+            return day == null ? null : day.getName();
+        }
+
+        public int getStartTime()
+        {
+            return startTime;
+        }
+
+        //Reservations and waitlisted reservations now in the slot; 0 means it is free
+        public int getDepth()
+        {
+            return depth;
+        }
+    }
+
+    public static String getEpoch()
+    {
+        return EPOCH;
+    }
+
+    public static synchronized long getLastSequence()
+    {
+        return lastSequence;
+    }
+
+    //Changes with a sequence number above the given one, oldest first, or null if some of them are no longer in the buffer
+    public static synchronized List<Change> changesAfter(long sequence)
+    {
+        if(sequence > lastSequence)
+            return null;
+        if(lastSequence - sequence > buffer.length)
+            return null;
+
+        List<Change> changes = new ArrayList<Change>((int) (lastSequence - sequence));
+        for(long next = sequence + 1; next <= lastSequence; next++)
+            changes.add(buffer[(int) (next % buffer.length)]);
+
+        return changes;
+    }
+
+    //Runs the listener, on the publishing thread, every time changes are appended. It must return quickly.
+    public static void addListener(Runnable listener)
+    {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Runnable listener)
+    {
+        listeners.remove(listener);
+    }
+
+    //Records that the calling thread is changing the reservation's slot
+    static void touch(Reservation reservation)
+    {
+        touchedSlots.get().add((long) reservation.getRoomId() << 16 | reservation.getDayOfWeek().getCode() << 8 | reservation.getStartTime());
+    }
+
+    //Appends the slots touched by the calling thread since its last publish or discard
+    static void publish()
+    {
+        Set<Long> slots = touchedSlots.get();
+        if(slots.isEmpty())
+            return;
+
+        synchronized(ReservationChangeFeed.class)
+        {
+            for(long key : slots)
+            {
+                int roomId = (int) (key >>> 16);
+                Day day = Day.fromCode((int) (key >>> 8) & 0xFF);
+                int startTime = (int) key & 0xFF;
+
+                append(Change.SLOT, roomId, day, startTime, SlotOccupancyIndex.getDepth(roomId, day, startTime));
+            }
+        }
+        slots.clear();
+
+        notifyListeners();
+    }
+
+    static void discard()
+    {
+        touchedSlots.get().clear();
+    }
+
+    static void weekReset()
+    {
+        synchronized(ReservationChangeFeed.class)
+        {
+            append(Change.RESET, 0, null, 0, 0);
+        }
+
+        notifyListeners();
+    }
+
+    private static void append(String type, int roomId, Day day, int startTime, int depth)
+    {
+        lastSequence++;
+        buffer[(int) (lastSequence % buffer.length)] = new Change(lastSequence, type, roomId, day, startTime, depth);
+    }
+
+    private static void notifyListeners()
+    {
+        for(Runnable listener : listeners)
+            listener.run();
+    }
+}
@@ -0,0 +1,106 @@
+package Mapper;
+
+import Core.Day;
+import Core.Reservation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Striped locks for reservation writes.
+//Each timeslot (room, day, start time) and each student hashes to one stripe, so writes on unrelated slots and students never wait
+//on each other. Slot stripes come first and student stripes after them in one array, and every caller acquires its stripes in
+//ascending index order, which makes the acquisition order global and rules out deadlocks between writers holding several stripes.
+public class ReservationLocks
+{
+    private static final int SLOT_STRIPES = 1024;
+    private static final int STUDENT_STRIPES = 256;
+
+    private static final ReentrantLock[] stripes = createStripes();
+
+    private static ReentrantLock[] createStripes()
+    {
+        ReentrantLock[] locks = new ReentrantLock[SLOT_STRIPES + STUDENT_STRIPES];
+        for(int i = 0; i < locks.length; i++)
+            locks[i] = new ReentrantLock();
+
+        return locks;
+    }
+
+    public static int slotStripe(int roomId, Day day, int startTime)
+    {
+        int hash = roomId;
+        hash = 31 * hash + Reservation.slot(day, startTime);
+
+        return spread(hash) % SLOT_STRIPES;
+    }
+
+    public static int slotStripe(Reservation reservation)
+    {
+        return slotStripe(reservation.getRoomId(), reservation.getDayOfWeek(), reservation.getStartTime());
+    }
+
+    public static int studentStripe(int studentId)
+    {
+        return SLOT_STRIPES + spread(studentId) % STUDENT_STRIPES;
+    }
+
+    //Locks every given stripe in ascending order and returns the stripes held, to be passed back to unlock
+    public static int[] lock(Collection<Integer> stripeIndexes)
+    {
+        int[] held = new int[stripeIndexes.size()];
+        int count = 0;
+
+        for(int stripe : new TreeSet<Integer>(stripeIndexes))
+        {
+            stripes[stripe].lock();
+            held[count++] = stripe;
+        }
+
+        return Arrays.copyOf(held, count);
+    }
+
+    //Locks every stripe, for operations that rewrite all reservations at once (reset, reload)
+    public static int[] lockAll()
+    {
+        int[] held = new int[stripes.length];
+
+        for(int stripe = 0; stripe < stripes.length; stripe++)
+        {
+            stripes[stripe].lock();
+            held[stripe] = stripe;
+        }
+
+        return held;
+    }
+
+    //Releases stripes returned by lock or lockAll, in the reverse order they were acquired
+    public static void unlock(int[] held)
+    {
+        for(int i = held.length - 1; i >= 0; i--)
+            stripes[held[i]].unlock();
+    }
+
+    //Whether every needed stripe is among the held ones
+    public static boolean holds(int[] held, Collection<Integer> needed)
+    {
+        for(int stripe : needed)
+        {
+            if(Arrays.binarySearch(held, stripe) < 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    //Spreads the bits of the hash so that neighbouring rooms and hours do not land on neighbouring stripes, and keeps it positive
+    private static int spread(int hash)
+    {
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+
+        return hash & 0x7fffffff;
+    }
+}
@@ -1,24 +1,46 @@
 package Mapper;
 
+import Core.Day;
 import Core.Reservation;
 import IdentityMap.ReservationIdentityMap;
+import IdentityMap.RoomAvailabilityIndex;
+import IdentityMap.SlotOccupancyIndex;
+import IdentityMap.StudentReservationIndex;
 import TDG.ReservationTDG;
 import UnitOfWork.UnitOfWork;
+import UnitOfWork.WriteBehind;
 import org.springframework.dao.ConcurrencyFailureException;
 
-import java.sql.ResultSet;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Created by Emili on 2016-10-26.
  */
 
+//Writes lock only the timeslots and students they touch through ReservationLocks, so bookings of unrelated slots run concurrently.
+//Reads take no lock: the identity map is concurrent. Positions come from SlotOccupancyIndex, kept up to date under the stripes.
+//In write-behind mode (see UnitOfWork.WriteBehind) memory is the reference instead: waitlists and full slots are answered from
+//the indexes, and the few reads left on the reservations table first wait for the logged commits to be written.
 public class ReservationMapper
 {
 
-    private static ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    private static final IdAllocator idAllocator = IdAllocator.forSequence("reservations");
+    //Week of the rows in the reservations table, given to every new reservation. Set by warmUp and moved on by resetReservations.
+    private static volatile int currentWeekId = Reservation.weekId(LocalDate.now());
+
+    //Computes the stripes an operation needs from what is currently stored. Called again once the stripes are held to make sure
+    //that nothing it depends on moved in between.
+    private interface StripeCollector
+    {
+        Set<Integer> collect() throws ClassNotFoundException, SQLException;
+    }
 
     public ReservationMapper()
     {
@@ -26,16 +48,7 @@ public class ReservationMapper
 
     public static Reservation getData(int resId) throws ClassNotFoundException, SQLException
     {
-        readWriteLock.readLock().lock();
-
-        try
-        {
-            return getDataNoLock(resId);
-        }
-        finally
-        {
-            readWriteLock.readLock().unlock();
-        }
+        return getDataNoLock(resId);
     }
 
     private static Reservation getDataNoLock(int resId) throws ClassNotFoundException, SQLException
@@ -47,82 +60,69 @@ public class ReservationMapper
         }
         else
         {
-            ResultSet resultSet = ReservationTDG.find(resId);
+            WriteBehind.awaitFlushed();
+            Reservation reservationDB = ReservationTDG.find(resId);
 
-            if(resultSet.next())
-            {
-                int reservationId = resultSet.getInt("reservationId");
-                int roomId = resultSet.getInt("roomId");
-                int studentId = resultSet.getInt("studentId");
-                String weekDay = resultSet.getString("weekDay");
-                int startTime = resultSet.getInt("startTime");
-                int endTime = resultSet.getInt("endTime");
-                int position = resultSet.getInt("position");
-
-                Reservation reservationDB = new Reservation(reservationId, roomId, studentId, weekDay, startTime, endTime, position);
+            if(reservationDB != null)
                 ReservationIdentityMap.addRes(reservationDB);
 
-                return reservationDB;
-            }
-            else
-            {
-                return null;
-            }
+            return reservationDB;
         }
     }
 
-    public static ArrayList<Reservation> getAllData() throws SQLException, ClassNotFoundException
+    //Replaces each reservation loaded from the database by the instance already in the identity map, adding the ones that are not there yet
+    private static ArrayList<Reservation> toIdentityMapInstances(ArrayList<Reservation> loadedReservations)
     {
-        readWriteLock.readLock().lock();
+        ArrayList<Reservation> reservations = new ArrayList<Reservation>(loadedReservations.size());
 
-        try
+        for(Reservation loadedReservation : loadedReservations)
         {
-            ResultSet resultSet = ReservationTDG.findAll();
-            ArrayList<Reservation> reservationList = new ArrayList<Reservation>();
-
-            if(resultSet == null)
-                return null;
-            else
+            Reservation reservation = ReservationIdentityMap.getResFromMap(loadedReservation.getId());
+            if(reservation == null)
             {
-                while(resultSet.next())
-                {
-                    int resId = resultSet.getInt("reservationId");
-                    int roomId = resultSet.getInt("roomId");
-                    int studentId = resultSet.getInt("studentId");
-                    String weekDay = resultSet.getString("weekDay");
-                    int startTime = resultSet.getInt("startTime");
-                    int endTime = resultSet.getInt("endTime");
-                    int position = resultSet.getInt("position");
-
-                    reservationList.add(new Reservation(resId, roomId, studentId, weekDay, startTime, endTime, position));
-                    ReservationIdentityMap.addRes(new Reservation(resId, roomId, studentId, weekDay, startTime, endTime, position));
-                }
-                return reservationList;
+                ReservationIdentityMap.addRes(loadedReservation);
+                reservation = loadedReservation;
             }
+            reservations.add(reservation);
         }
-        finally
-        {
-            readWriteLock.readLock().unlock();
-        }
+
+        return reservations;
+    }
+
+    public static ArrayList<Reservation> getAllData() throws SQLException, ClassNotFoundException
+    {
+        WriteBehind.awaitFlushed();
+        return toIdentityMapInstances(ReservationTDG.findAll());
     }
 
-    public static int makeNew(int roomId, int studentId, String day, int startTime, int endTime) throws ClassNotFoundException, SQLException, IllegalArgumentException
+    public static int makeNew(int roomId, int studentId, Day day, int startTime, int endTime) throws ClassNotFoundException, SQLException, IllegalArgumentException
     {
-        readWriteLock.writeLock().lock();
+        ensureIndexesLoaded();
+
+        int[] heldStripes = lockStripes(() -> makeNewStripes(roomId, studentId, day, startTime));
 
         try
         {
-            return makeNewNoLock(roomId, studentId, day, startTime, endTime);
+            int position = makeNewNoLock(roomId, studentId, day, startTime, endTime);
+            UnitOfWork.commit();
+            ReservationChangeFeed.publish();
+            return position;
+        }
+        catch(Exception e)
+        {
+            discardChanges();
+            throw e;
         }
         finally
         {
-            readWriteLock.writeLock().unlock();
+            ReservationLocks.unlock(heldStripes);
+            ResourceVersions.publish();
         }
     }
 
-    private static int makeNewNoLock(int roomId, int studentId, String day, int startTime, int endTime) throws ClassNotFoundException, SQLException, IllegalArgumentException
+    private static int makeNewNoLock(int roomId, int studentId, Day day, int startTime, int endTime) throws ClassNotFoundException, SQLException, IllegalArgumentException
     {
-        int position = getPosition(day, startTime, endTime, roomId);
+        int position = getPosition(day, startTime, roomId);
         ArrayList<Reservation> existingReservations = getAllResOfStudentNoLock(studentId);
 
         int numReservations = numReservations(existingReservations);
@@ -138,10 +138,13 @@ public class ReservationMapper
         if(numReservations == 2 && position == 0)
             deleteWaitlist(existingReservations);
 
-        Reservation reservation = new Reservation(Reservation.getNextId(), roomId, studentId, day, startTime, endTime, position);
+        Reservation reservation = new Reservation(idAllocator.nextId(), roomId, studentId, day, startTime, endTime, position);
+        reservation.setWeekId(currentWeekId);
         ReservationIdentityMap.addRes(reservation);
+        SlotOccupancyIndex.add(reservation);
+        StudentReservationIndex.add(reservation);
+        touch(reservation);
         UnitOfWork.registerNew(reservation);
-        UnitOfWork.commit();
         return position;
     }
 
@@ -173,7 +176,7 @@ public class ReservationMapper
 
     //Finds conflicting reservations and deletes them if the new reservation is position 0 and they are not or
     // @throws IllegalArgumentException if any conflicting reservations are position 0
-    private static void handleConflictingReservations(ArrayList<Reservation> reservations, String day, int startTime, int endTime, int position, int roomId) throws SQLException, ClassNotFoundException, IllegalArgumentException
+    private static void handleConflictingReservations(ArrayList<Reservation> reservations, Day day, int startTime, int endTime, int position, int roomId) throws SQLException, ClassNotFoundException, IllegalArgumentException
     {
         ArrayList<Reservation> conflictingReservations = getConflictingReservations(reservations, day, startTime, endTime, roomId);
 
@@ -196,12 +199,13 @@ public class ReservationMapper
     }
 
     //Method that returns all reservations in the list at the same day and time
-    private static ArrayList<Reservation> getConflictingReservations(ArrayList<Reservation> reservations, String day, int startTime, int endTime, int roomId) throws IllegalArgumentException
+    private static ArrayList<Reservation> getConflictingReservations(ArrayList<Reservation> reservations, Day day, int startTime, int endTime, int roomId) throws IllegalArgumentException
     {
         ArrayList<Reservation> conflictingReservations = new ArrayList<Reservation>();
+        int slot = Reservation.slot(day, startTime);
         for(Reservation reservation : reservations)
         {
-            if(reservation.getDay().toLowerCase().equals(day) && reservation.getStartTime() == startTime && reservation.getEndTime() == endTime)
+            if(reservation.getSlot() == slot && reservation.getEndTime() == endTime)
             {
                 if(reservation.getPosition() == 0)
                     throw new IllegalArgumentException("Could not add reservation because the user has an existing reservation on that day and time.");
@@ -215,58 +219,133 @@ public class ReservationMapper
     }
 
     //Returns the next position available in the waitlist for this room and time (lowest position is 0)
-    private static int getPosition(String day, int startTime, int endTime, int roomId) throws SQLException, ClassNotFoundException
+    //Reservations always last one hour, so the start time identifies the slot in the occupancy index
+    private static int getPosition(Day day, int startTime, int roomId)
     {
-        ResultSet resultSet = ReservationTDG.findInRange(day, startTime, endTime, roomId);
-        ArrayList<Reservation> reservationList = new ArrayList<Reservation>();
+        return SlotOccupancyIndex.getDepth(roomId, day, startTime);
+    }
 
-        if(resultSet == null)
-            return 0;
-        else
+    public static int modifyReservation(boolean expectingReservation, Reservation oldReservation, int newRoomId, int studentId, Day newDay, int newStartTime, int newEndTime) throws ClassNotFoundException, SQLException
+    {
+        ensureIndexesLoaded();
+
+        //Both slots and their students are locked together, in the global stripe order, so two modifications swapping slots cannot deadlock
+        int[] heldStripes = lockStripes(() ->
         {
-            while(resultSet.next())
-            {
-                int resId = resultSet.getInt("reservationId");
-                int resRoomId = resultSet.getInt("roomId");
-                int studentId = resultSet.getInt("studentId");
-                String weekDay = resultSet.getString("weekDay");
-                int resStartTime = resultSet.getInt("startTime");
-                int resEndTime = resultSet.getInt("endTime");
-                int position = resultSet.getInt("position");
-
-                reservationList.add(new Reservation(resId, resRoomId, studentId, weekDay, resStartTime, resEndTime, position));
-                ReservationIdentityMap.addRes(new Reservation(resId, resRoomId, studentId, weekDay, resStartTime, resEndTime, position));
-            }
-            return reservationList.size();
+            Set<Integer> stripes = eraseStripes(oldReservation);
+            stripes.addAll(makeNewStripes(newRoomId, studentId, newDay, newStartTime));
+            return stripes;
+        });
+
+        try
+        {
+            int position = modifyReservationNoLock(expectingReservation, oldReservation, newRoomId, studentId, newDay, newStartTime, newEndTime);
+
+            //The deletion and the new reservation are written in the same transaction, so the student never loses the old one alone
+            UnitOfWork.commit();
+            ReservationChangeFeed.publish();
+            return position;
+        }
+        catch(Exception e)
+        {
+            discardChanges();
+            throw e;
+        }
+        finally
+        {
+            ReservationLocks.unlock(heldStripes);
+            ResourceVersions.publish();
         }
     }
 
-    public static int modifyReservation(boolean expectingReservation, Reservation oldReservation, int newRoomId, int studentId, String newDay, int newStartTime, int newEndTime) throws ClassNotFoundException, SQLException
+    private static int modifyReservationNoLock(boolean expectingReservation, Reservation oldReservation, int newRoomId, int studentId, Day newDay, int newStartTime, int newEndTime) throws ClassNotFoundException, SQLException
     {
-        readWriteLock.writeLock().lock();
+        int position = getPosition(newDay, newStartTime, newRoomId);
+        if(expectingReservation && position > 0)
+            throw new ConcurrencyFailureException("Was expecting to get a proper reservation, but could only get position " + position);
 
-        try
-        {
-            int position = getPosition(newDay, newStartTime, newEndTime, newRoomId);
-            if(expectingReservation && position > 0)
-                throw new ConcurrencyFailureException("Was expecting to get a proper reservation, but could only get position " + position);
+        //Before deleting anything, make sure that the new reservation can happen
+        validateReplacementReservation(oldReservation, newRoomId, studentId, newDay, newStartTime, newEndTime, position);
+
+        eraseNoLock(oldReservation);
+
+        makeNewNoLock(newRoomId, studentId, newDay, newStartTime, newEndTime);
+        return position;
+    }
 
-            //Before deleting anything, make sure that the new reservation can happen
-            validateReplacementReservation(oldReservation, newRoomId, studentId, newDay, newStartTime, newEndTime, position);
+    //Applies the student's operations in order, each one seeing the reservations as the previous ones left them, while holding
+    //every stripe any of them needs, and writes them all in one transaction: if one fails, none of them is applied.
+    //Returns, for each operation, the position of the reservation it created or modified, or 0 for a deletion.
+    // @throws IllegalArgumentException if an operation is invalid, or names a reservation the student does not have (any more)
+    // @throws ConcurrencyFailureException if a modification expecting a reservation could only get on the waitlist
+    public static int[] applyBatch(int studentId, List<ReservationOperation> operations) throws ClassNotFoundException, SQLException
+    {
+        ensureIndexesLoaded();
 
-            eraseNoLock(oldReservation);
+        int[] heldStripes = lockStripes(() -> batchStripes(studentId, operations));
 
-            makeNewNoLock(newRoomId, studentId, newDay, newStartTime, newEndTime);
+        try
+        {
+            int[] positions = new int[operations.size()];
+            for(int i = 0; i < positions.length; i++)
+                positions[i] = applyNoLock(studentId, operations.get(i));
 
-            return position;
+            UnitOfWork.commit();
+            ReservationChangeFeed.publish();
+            return positions;
+        }
+        catch(Exception e)
+        {
+            discardChanges();
+            throw e;
         }
         finally
         {
-            readWriteLock.writeLock().unlock();
+            ReservationLocks.unlock(heldStripes);
+            ResourceVersions.publish();
+        }
+    }
+
+    private static int applyNoLock(int studentId, ReservationOperation operation) throws ClassNotFoundException, SQLException
+    {
+        if(operation.getType() == ReservationOperation.Type.CREATE)
+            return makeNewNoLock(operation.getRoomId(), studentId, operation.getDayOfWeek(), operation.getStartTime(), operation.getEndTime());
+
+        Reservation reservation = getResOfStudentNoLock(studentId, operation.getReservationId());
+        if(reservation == null)
+            throw new IllegalArgumentException("Student " + studentId + " does not have the reservation " + operation.getReservationId());
+
+        if(operation.getType() == ReservationOperation.Type.MODIFY)
+            return modifyReservationNoLock(operation.isExpectingReservation(), reservation, operation.getRoomId(), studentId, operation.getDayOfWeek(), operation.getStartTime(), operation.getEndTime());
+
+        eraseNoLock(reservation);
+        return 0;
+    }
+
+    //Every stripe any of the operations needs, computed from the reservations as they are before the batch. Operations only add
+    //to the end of waitlists, so the earlier ones cannot make a later one need a stripe that is not in the set.
+    private static Set<Integer> batchStripes(int studentId, List<ReservationOperation> operations) throws ClassNotFoundException, SQLException
+    {
+        Set<Integer> stripes = new HashSet<Integer>();
+        stripes.add(ReservationLocks.studentStripe(studentId));
+
+        for(ReservationOperation operation : operations)
+        {
+            if(operation.getType() != ReservationOperation.Type.CREATE)
+            {
+                Reservation reservation = getResOfStudentNoLock(studentId, operation.getReservationId());
+                if(reservation != null)
+                    stripes.addAll(eraseStripes(reservation));
+            }
+
+            if(operation.getType() != ReservationOperation.Type.DELETE)
+                stripes.addAll(makeNewStripes(operation.getRoomId(), studentId, operation.getDayOfWeek(), operation.getStartTime()));
         }
+
+        return stripes;
     }
 
-    private static void validateReplacementReservation(Reservation oldReservation, int newRoomId, int studentId, String newDay, int newStartTime, int newEndTime, int position) throws ClassNotFoundException, SQLException
+    private static void validateReplacementReservation(Reservation oldReservation, int newRoomId, int studentId, Day newDay, int newStartTime, int newEndTime, int position) throws ClassNotFoundException, SQLException
     {
         ArrayList<Reservation> existingReservations = getAllResOfStudentNoLock(studentId);
 
@@ -286,25 +365,47 @@ public class ReservationMapper
         getConflictingReservations(existingReservations, newDay, newStartTime, newEndTime, newRoomId);
     }
 
-    public static void set(Reservation reservation, int roomId, int studentId, String day, int startTime, int endTime, int position) throws ClassNotFoundException, SQLException
+    public static void set(Reservation reservation, int roomId, int studentId, Day day, int startTime, int endTime, int position) throws ClassNotFoundException, SQLException
     {
-        readWriteLock.writeLock().lock();
+        ensureIndexesLoaded();
+
+        int[] heldStripes = lockStripes(() ->
+        {
+            Set<Integer> stripes = new HashSet<Integer>();
+            stripes.add(ReservationLocks.slotStripe(reservation));
+            stripes.add(ReservationLocks.studentStripe(reservation.getStudentId()));
+            stripes.add(ReservationLocks.slotStripe(roomId, day, startTime));
+            stripes.add(ReservationLocks.studentStripe(studentId));
+            return stripes;
+        });
 
         try
         {
             setNoCommit(reservation, roomId, studentId, day, startTime, endTime, position);
+            UnitOfWork.commit();
+            ReservationChangeFeed.publish();
+        }
+        catch(Exception e)
+        {
+            discardChanges();
+            throw e;
         }
         finally
         {
-            readWriteLock.writeLock().unlock();
+            ReservationLocks.unlock(heldStripes);
+            ResourceVersions.publish();
         }
     }
 
-    private static void setNoCommit(Reservation reservation, int roomId, int studentId, String day, int startTime, int endTime, int position) throws ClassNotFoundException, SQLException
+    private static void setNoCommit(Reservation reservation, int roomId, int studentId, Day day, int startTime, int endTime, int position) throws ClassNotFoundException, SQLException
     {
         if(getDataNoLock(reservation.getId()) == null)
             throw new IllegalArgumentException("Trying to update a reservation that does not exist in the map or database.");
 
+        SlotOccupancyIndex.remove(reservation);
+        StudentReservationIndex.remove(reservation);
+        touch(reservation);
+
         reservation.setRoomId(roomId);
         reservation.setStudentId(studentId);
         reservation.setDay(day);
@@ -312,195 +413,484 @@ public class ReservationMapper
         reservation.setEndTime(endTime);
         reservation.setPosition(position);
 
+        SlotOccupancyIndex.add(reservation);
+        StudentReservationIndex.add(reservation);
+        touch(reservation);
         UnitOfWork.registerDirty(reservation);
     }
 
     public static void erase(Reservation reservation) throws ClassNotFoundException, SQLException
     {
-        readWriteLock.writeLock().lock();
+        ensureIndexesLoaded();
+
+        int[] heldStripes = lockStripes(() -> eraseStripes(reservation));
 
         try
         {
+            //Another request may have erased it while this one was waiting for the stripes
+            if(getDataNoLock(reservation.getId()) == null)
+                throw new IllegalArgumentException("Trying to delete a reservation that does not exist in the map or database.");
+
             eraseNoLock(reservation);
+            UnitOfWork.commit();
+            ReservationChangeFeed.publish();
+        }
+        catch(Exception e)
+        {
+            discardChanges();
+            throw e;
         }
         finally
         {
-            readWriteLock.writeLock().unlock();
+            ReservationLocks.unlock(heldStripes);
+            ResourceVersions.publish();
         }
     }
 
     private static void eraseNoLock(Reservation reservation) throws ClassNotFoundException, SQLException
     {
+        SlotOccupancyIndex.remove(reservation);
+        StudentReservationIndex.remove(reservation);
+        touch(reservation);
         updateProceedingWaitlistPositionsNoLock(reservation);
         ReservationIdentityMap.delete(reservation);
         UnitOfWork.registerDelete(reservation);
-        UnitOfWork.commit();
     }
 
-    //Sets all reservations for the same timeslot and room to one position lower. Meant to be used before deleting the reservation that is being passed
-    private static void updateProceedingWaitlistPositionsNoLock(Reservation reservation) throws SQLException, ClassNotFoundException
+    //Stripes needed to book a slot: the slot itself, the student for the 3 reservation / 3 waitlist limits, and the slots of the
+    //student's waitlist entries since booking may remove them
+    private static Set<Integer> makeNewStripes(int roomId, int studentId, Day day, int startTime) throws ClassNotFoundException, SQLException
     {
-        ArrayList<Reservation> proceedingWaitlist = getProceedingWaitlistNoLock(reservation);
+        Set<Integer> stripes = new HashSet<Integer>();
+        stripes.add(ReservationLocks.slotStripe(roomId, day, startTime));
+        stripes.add(ReservationLocks.studentStripe(studentId));
 
-        for(Reservation waitlistReservation : proceedingWaitlist)
+        for(Reservation reservation : getAllResOfStudentNoLock(studentId))
         {
-            setNoCommit(waitlistReservation, waitlistReservation.getRoomId(), waitlistReservation.getStudentId(), waitlistReservation.getDay(), waitlistReservation.getStartTime(), waitlistReservation.getEndTime(), waitlistReservation.getPosition() - 1);
+            if(reservation.getPosition() > 0)
+                stripes.add(ReservationLocks.slotStripe(reservation));
         }
+
+        return stripes;
     }
 
-    public static ArrayList<Reservation> getProceedingWaitlistNoLock(Reservation reservation) throws SQLException, ClassNotFoundException
+    //Stripes needed to erase a reservation: its slot, its owner, and the students behind it on the waitlist since one of them
+    //may be promoted to a reservation
+    private static Set<Integer> eraseStripes(Reservation reservation) throws ClassNotFoundException, SQLException
     {
-        ResultSet resultSet = ReservationTDG.findProceedingWaitlist(reservation);
-        ArrayList<Reservation> reservationList = new ArrayList<Reservation>();
+        Set<Integer> stripes = new HashSet<Integer>();
+        stripes.add(ReservationLocks.slotStripe(reservation));
+        stripes.add(ReservationLocks.studentStripe(reservation.getStudentId()));
 
-        if(resultSet == null)
-            return null;
-        else
+        for(Reservation waitlistReservation : getProceedingWaitlistNoLock(reservation))
+            stripes.add(ReservationLocks.studentStripe(waitlistReservation.getStudentId()));
+
+        return stripes;
+    }
+
+    //Locks the stripes the collector asks for, then collects them again to check that the waitlists and reservations they were
+    //derived from did not change before the locks were taken. If new stripes are needed, everything is released and retried.
+    private static int[] lockStripes(StripeCollector collector) throws ClassNotFoundException, SQLException
+    {
+        Set<Integer> neededStripes = collector.collect();
+
+        while(true)
         {
-            while(resultSet.next())
+            int[] heldStripes = ReservationLocks.lock(neededStripes);
+
+            try
+            {
+                neededStripes = collector.collect();
+            }
+            catch(Exception e)
             {
-                int resId = resultSet.getInt("reservationId");
-                int roomId = resultSet.getInt("roomId");
-                int studentId = resultSet.getInt("studentId");
-                String weekDay = resultSet.getString("weekDay");
-                int startTime = resultSet.getInt("startTime");
-                int endTime = resultSet.getInt("endTime");
-                int position = resultSet.getInt("position");
-
-                reservationList.add(new Reservation(resId, roomId, studentId, weekDay, startTime, endTime, position));
-                ReservationIdentityMap.addRes(new Reservation(resId, roomId, studentId, weekDay, startTime, endTime, position));
+                ReservationLocks.unlock(heldStripes);
+                throw e;
             }
-            return reservationList;
+
+            if(ReservationLocks.holds(heldStripes, neededStripes))
+                return heldStripes;
+
+            ReservationLocks.unlock(heldStripes);
+        }
+    }
+
+    //Records a reservation about to change, or just changed, for the ETags and the change feed published after the commit
+    private static void touch(Reservation reservation)
+    {
+        ResourceVersions.touch(reservation);
+        ReservationChangeFeed.touch(reservation);
+    }
+
+    //Drops the changes registered by a failed operation. The identity map and its indexes may already hold some of them
+    //(new reservations, shifted waitlist positions), so they are all reloaded from the database.
+    private static void discardChanges()
+    {
+        ReservationChangeFeed.discard();
+
+        if(UnitOfWork.rollback())
+        {
+            ReservationIdentityMap.reset();
+            SlotOccupancyIndex.invalidate();
+            StudentReservationIndex.invalidate();
         }
     }
 
-    public static void saveToDB(ArrayList<Reservation> newReservations) throws ClassNotFoundException, SQLException
+    //Loads every reservation into the identity map and its indexes in a single read of the table, and restarts the id counter
+    //after the highest id that was read. Returns the number of reservations loaded.
+    public static int warmUp(int fetchSize) throws ClassNotFoundException, SQLException
     {
-        readWriteLock.writeLock().lock();
+        int[] heldStripes = ReservationLocks.lockAll();
 
         try
         {
-            ReservationTDG.insert(newReservations);
+            ArrayList<Reservation> reservations = new ArrayList<Reservation>();
+            ReservationTDG.streamAll(fetchSize, reservations::add);
+
+            load(reservations);
+            return reservations.size();
         }
         finally
         {
-            readWriteLock.writeLock().unlock();
+            ReservationLocks.unlock(heldStripes);
         }
     }
 
-    public static void deleteToDB(ArrayList<Reservation> removedReservations) throws ClassNotFoundException, SQLException
+    //Same as warmUp(int), starting from the reservations of a Snapshot: only the reservations it does not have as they are in
+    //the table, same version and week, are read
+    public static int warmUp(List<Reservation> snapshotReservations) throws ClassNotFoundException, SQLException
     {
-        readWriteLock.writeLock().lock();
+        int[] heldStripes = ReservationLocks.lockAll();
 
         try
         {
-            ReservationTDG.delete(removedReservations);
+            ArrayList<Reservation> reservations = Snapshot.reconcile(snapshotReservations, ReservationTDG.findVersions(),
+                    (reservation, row) -> reservation.getVersion() == row[1] && reservation.getWeekId() == row[2], ReservationTDG::findByIds);
+
+            load(reservations);
+            return reservations.size();
         }
         finally
         {
-            readWriteLock.writeLock().unlock();
+            ReservationLocks.unlock(heldStripes);
         }
-
     }
 
-    public static void updateToDB(ArrayList<Reservation> dirtyReservations) throws ClassNotFoundException, SQLException
+    //Hands every reservation of the identity map to the consumer while holding every stripe, for the Snapshot
+    public static void forEachLoaded(Consumer<Reservation> consumer)
     {
-        readWriteLock.writeLock().lock();
+        int[] heldStripes = ReservationLocks.lockAll();
 
         try
         {
-            ReservationTDG.update(dirtyReservations);
+            ReservationIdentityMap.getAll().forEach(consumer);
         }
         finally
         {
-            readWriteLock.writeLock().unlock();
+            ReservationLocks.unlock(heldStripes);
         }
     }
 
-    public static ArrayList<Reservation> getAllResOfStudent(int studentId) throws SQLException, ClassNotFoundException
+    //Fills the identity map and the indexes with the reservations of the table, and restarts the id counter after the highest id
+    private static void load(ArrayList<Reservation> reservations) throws ClassNotFoundException, SQLException
+    {
+        int maxId = 0;
+        int maxWeekId = -1;
+        for(Reservation reservation : reservations)
+        {
+            ReservationIdentityMap.addRes(reservation);
+
+            if(reservation.getId() > maxId)
+                maxId = reservation.getId();
+            if(reservation.getWeekId() > maxWeekId)
+                maxWeekId = reservation.getWeekId();
+        }
+
+        //A week that was not reset yet, because the server was down at the time, stays the current one until the next reset
+        if(maxWeekId >= 0)
+            currentWeekId = maxWeekId;
+
+        SlotOccupancyIndex.load(reservations);
+        StudentReservationIndex.load(reservations);
+        idAllocator.restartAt(maxId + 1);
+    }
+
+    //Whether the slot and student indexes are in memory, so that the availability searches answer without the database
+    public static boolean indexesLoaded()
+    {
+        return SlotOccupancyIndex.isLoaded() && StudentReservationIndex.isLoaded();
+    }
+
+    //Reloads the identity map indexes if they were never loaded or a failed write invalidated them.
+    //Must be called before taking any stripe since the reload locks all of them.
+    private static void ensureIndexesLoaded() throws ClassNotFoundException, SQLException
     {
-        readWriteLock.readLock().lock();
+        if(indexesLoaded())
+            return;
+
+        int[] heldStripes = ReservationLocks.lockAll();
 
         try
         {
-            return getAllResOfStudentNoLock(studentId);
+            if(!indexesLoaded())
+            {
+                WriteBehind.awaitFlushed();
+                ArrayList<Reservation> reservations = ReservationTDG.findAll();
+                SlotOccupancyIndex.load(reservations);
+                StudentReservationIndex.load(reservations);
+            }
         }
         finally
         {
-            readWriteLock.readLock().unlock();
+            ReservationLocks.unlock(heldStripes);
         }
     }
 
-    private static ArrayList<Reservation> getAllResOfStudentNoLock(int studentId) throws SQLException, ClassNotFoundException
+    //Sets all reservations for the same timeslot and room to one position lower. Meant to be used before deleting the reservation that is being passed
+    //The database side is a single set-based UPDATE registered with the UnitOfWork rather than one dirty row per waitlisted reservation
+    private static void updateProceedingWaitlistPositionsNoLock(Reservation reservation) throws SQLException, ClassNotFoundException
     {
-        ResultSet resultSet = ReservationTDG.getAllResOfStudent(studentId);
-        ArrayList<Reservation> reservationStudentList = new ArrayList<Reservation>();
+        ArrayList<Reservation> proceedingWaitlist = getProceedingWaitlistNoLock(reservation);
 
-        if(resultSet == null)
-            return null;
-        else
+        for(Reservation waitlistReservation : proceedingWaitlist)
+        {
+            waitlistReservation.setPosition(waitlistReservation.getPosition() - 1);
+            //The shift UPDATE bumps the version of every row it moves
+            waitlistReservation.setVersion(waitlistReservation.getVersion() + 1);
+            touch(waitlistReservation);
+
+            if(waitlistReservation.getPosition() == 0)
+                SlotOccupancyIndex.promote(waitlistReservation);
+        }
+
+        UnitOfWork.registerWaitlistShift(reservation);
+    }
+
+    public static ArrayList<Reservation> getProceedingWaitlistNoLock(Reservation reservation) throws SQLException, ClassNotFoundException
+    {
+        if(!WriteBehind.isEnabled())
+            return toIdentityMapInstances(ReservationTDG.findProceedingWaitlist(reservation));
+
+        ArrayList<Reservation> proceedingWaitlist = new ArrayList<Reservation>();
+        for(int reservationId : SlotOccupancyIndex.getWaitlistIds(reservation.getRoomId(), reservation.getDayOfWeek(), reservation.getStartTime()))
+        {
+            Reservation waitlistReservation = getDataNoLock(reservationId);
+            if(waitlistReservation != null && waitlistReservation.getPosition() > reservation.getPosition() && waitlistReservation.getEndTime() == reservation.getEndTime())
+                proceedingWaitlist.add(waitlistReservation);
+        }
+
+        return proceedingWaitlist;
+    }
+
+    public static void saveToDB(Connection connection, ArrayList<Reservation> newReservations) throws SQLException
+    {
+        ReservationTDG.insert(connection, newReservations);
+    }
+
+    //Deletes the removed reservations and shifts the waitlists behind them, given in the order they were erased. Each DELETE
+    //must run before the shift moving a reservation into the position it frees, and after the shifts that gave it the version
+    //it is deleted with, so the shifts are cut into runs of distinct slots: each run deletes its reservations, then shifts.
+    //Reservations erased before they were ever written are in the shifts only.
+    public static void removeFromDB(Connection connection, ArrayList<Reservation> shifts, ArrayList<Reservation> removedReservations) throws SQLException
+    {
+        Set<Integer> removedIds = new HashSet<Integer>();
+        for(Reservation reservation : removedReservations)
+            removedIds.add(reservation.getId());
+
+        ArrayList<Reservation> runDeletes = new ArrayList<Reservation>();
+        ArrayList<Reservation> runShifts = new ArrayList<Reservation>();
+        Set<Long> runSlots = new HashSet<Long>();
+
+        for(Reservation reservation : shifts)
         {
-            while(resultSet.next())
+            long slot = ((long) reservation.getRoomId() << 32) | reservation.getSlot();
+            if(runSlots.contains(slot))
             {
-                int resId = resultSet.getInt("reservationId");
-                int roomId = resultSet.getInt("roomId");
-                int resStudentId = resultSet.getInt("studentId");
-                String weekDay = resultSet.getString("weekDay");
-                int startTime = resultSet.getInt("startTime");
-                int endTime = resultSet.getInt("endTime");
-                int position = resultSet.getInt("position");
-
-                reservationStudentList.add(new Reservation(resId, roomId, resStudentId, weekDay, startTime, endTime, position));
-
-                if(ReservationIdentityMap.getResFromMap(resId) == null)
-                    ReservationIdentityMap.addRes(new Reservation(resId, roomId, resStudentId, weekDay, startTime, endTime, position));
+                ReservationTDG.delete(connection, runDeletes);
+                ReservationTDG.shiftWaitlists(connection, runShifts);
+                runDeletes.clear();
+                runShifts.clear();
+                runSlots.clear();
             }
-            return reservationStudentList;
+
+            runSlots.add(slot);
+            runShifts.add(reservation);
+            if(removedIds.remove(reservation.getId()))
+                runDeletes.add(reservation);
+        }
+
+        ReservationTDG.delete(connection, runDeletes);
+        ReservationTDG.shiftWaitlists(connection, runShifts);
+
+        if(!removedIds.isEmpty())
+            throw new IllegalStateException("Reservations " + removedIds + " were removed without shifting their waitlist");
+    }
+
+    public static void updateToDB(Connection connection, ArrayList<Reservation> dirtyReservations) throws SQLException
+    {
+        ReservationTDG.update(connection, dirtyReservations);
+    }
+
+    public static ArrayList<Reservation> getAllResOfStudent(int studentId) throws SQLException, ClassNotFoundException
+    {
+        ensureIndexesLoaded();
+
+        return getAllResOfStudentNoLock(studentId);
+    }
+
+    //Returns the reservation if it belongs to the student, or null otherwise
+    public static Reservation getResOfStudent(int studentId, int resId) throws SQLException, ClassNotFoundException
+    {
+        ensureIndexesLoaded();
+
+        return getResOfStudentNoLock(studentId, resId);
+    }
+
+    private static Reservation getResOfStudentNoLock(int studentId, int resId) throws SQLException, ClassNotFoundException
+    {
+        if(!StudentReservationIndex.isLoaded())
+            return findResOfStudent(getAllResOfStudentNoLock(studentId), resId);
+        if(!StudentReservationIndex.contains(studentId, resId))
+            return null;
+
+        return getDataNoLock(resId);
+    }
+
+    private static Reservation findResOfStudent(ArrayList<Reservation> reservations, int resId)
+    {
+        for(Reservation reservation : reservations)
+        {
+            if(reservation.getId() == resId)
+                return reservation;
+        }
+
+        return null;
+    }
+
+    //Resolves the student's reservations through the student index and the identity map.
+    //Falls back to the database while the index is invalidated, since it cannot be reloaded by a caller already holding stripes.
+    private static ArrayList<Reservation> getAllResOfStudentNoLock(int studentId) throws SQLException, ClassNotFoundException
+    {
+        if(!StudentReservationIndex.isLoaded())
+        {
+            WriteBehind.awaitFlushed();
+            return toIdentityMapInstances(ReservationTDG.getAllResOfStudent(studentId));
+        }
+
+        int[] reservationIds = StudentReservationIndex.getReservationIds(studentId);
+        ArrayList<Reservation> reservations = new ArrayList<Reservation>(reservationIds.length);
+
+        for(int reservationId : reservationIds)
+        {
+            Reservation reservation = getDataNoLock(reservationId);
+            if(reservation != null)
+                reservations.add(reservation);
+        }
+
+        return reservations;
+    }
+
+    //Ids of the rooms without any reservation or waitlist from startTime up to endTime on the day.
+    //Answered from the in-memory availability bitmasks, without reading the reservations table.
+    public static int[] findFreeRooms(Day day, int startTime, int endTime) throws SQLException, ClassNotFoundException
+    {
+        ensureIndexesLoaded();
+        return RoomAvailabilityIndex.findFreeRooms(RoomMapper.getRoomIds(), day, startTime, endTime);
+    }
+
+    //Ids of the rooms of the library (any library if null) holding at least minSize people that are free from startTime
+    //up to endTime on the day
+    public static int[] findFreeRooms(Day day, int startTime, int endTime, String library, int minSize) throws SQLException, ClassNotFoundException
+    {
+        ensureIndexesLoaded();
+        return RoomAvailabilityIndex.findFreeRooms(RoomMapper.findRooms(library, minSize), day, startTime, endTime);
+    }
+
+    //Start times of the hours in which the room has no reservation on the day
+    public static int[] findFreeHours(int roomId, Day day) throws SQLException, ClassNotFoundException
+    {
+        ensureIndexesLoaded();
+        return RoomAvailabilityIndex.findFreeHours(roomId, day);
+    }
+
+    public static ArrayList<Reservation> getFullReservationsForDay(Day weekDay) throws SQLException, ClassNotFoundException
+    {
+        if(!WriteBehind.isEnabled())
+            return toIdentityMapInstances(ReservationTDG.getFullReservationsForDay(weekDay));
+
+        ensureIndexesLoaded();
+
+        ArrayList<Reservation> reservations = new ArrayList<Reservation>();
+        for(int reservationId : SlotOccupancyIndex.getHeadReservationIds(weekDay))
+        {
+            Reservation reservation = getDataNoLock(reservationId);
+            if(reservation != null)
+                reservations.add(reservation);
         }
+
+        return reservations;
     }
 
-    public static ArrayList<Reservation> getFullReservationsForDay(String weekDay) throws SQLException, ClassNotFoundException
+    //Starts a new week with no reservations. Only the table swap runs while holding every stripe, so bookings wait for one
+    //rename instead of a delete of the whole week; the old week is archived afterwards by archivePreviousWeek.
+    public static void resetReservations(int archiveChunkSize) throws ClassNotFoundException, SQLException
     {
-        readWriteLock.readLock().lock();
+        //The swap needs the archiving table's name, so a week left over by a failed archival is finished first
+        if(ReservationTDG.hasWeekToArchive())
+            archivePreviousWeek(archiveChunkSize);
 
-        ResultSet resultSet = ReservationTDG.getFullReservationsForDay(weekDay);
-        ArrayList<Reservation> reservationStudentList = new ArrayList<Reservation>();
+        int[] heldStripes = ReservationLocks.lockAll();
 
         try
         {
-            if(resultSet == null)
-                return null;
-            else
-            {
-                while(resultSet.next())
-                {
-                    int resId = resultSet.getInt("reservationId");
-                    int roomId = resultSet.getInt("roomId");
-                    int resStudentId = resultSet.getInt("studentId");
-                    String day = resultSet.getString("weekDay");
-                    int startTime = resultSet.getInt("startTime");
-                    int endTime = resultSet.getInt("endTime");
-                    int position = resultSet.getInt("position");
-
-                    reservationStudentList.add(new Reservation(resId, roomId, resStudentId, day, startTime, endTime, position));
-
-                    if(ReservationIdentityMap.getResFromMap(resId) == null)
-                        ReservationIdentityMap.addRes(new Reservation(resId, roomId, resStudentId, day, startTime, endTime, position));
-
-                }
-                return reservationStudentList;
-            }
+            WriteBehind.awaitFlushed();
+            ReservationTDG.swapInEmptyWeek();
+            //The reset runs just before sunday starts, and may run late, so the calendar alone cannot tell the new week
+            currentWeekId = Math.max(currentWeekId + 1, Reservation.weekId(LocalDate.now()));
+            ReservationIdentityMap.reset();
+            SlotOccupancyIndex.load(new ArrayList<Reservation>());
+            StudentReservationIndex.load(new ArrayList<Reservation>());
+            idAllocator.restartAt(1);
+            ResourceVersions.weekChanged();
+            ReservationChangeFeed.weekReset();
         }
         finally
         {
-            readWriteLock.readLock().unlock();
+            ReservationLocks.unlock(heldStripes);
+        }
+    }
+
+    //Moves the week swapped out by resetReservations to the history table without taking any stripe: the archiving table is no
+    //longer read or written by bookings. A single week becomes a history partition as is; rows of several weeks, or of a week
+    //older than the newest history partition, are copied chunk by chunk. Returns the number of reservations archived.
+    public static int archivePreviousWeek(int chunkSize) throws ClassNotFoundException, SQLException
+    {
+        int[] archivingWeeks = ReservationTDG.findArchivingWeeks();
+        int archived = 0;
+
+        //An empty week has nothing to archive
+        if(archivingWeeks != null && archivingWeeks[0] == archivingWeeks[1] && ReservationTDG.canExchangeIntoHistory(archivingWeeks[0]))
+        {
+            ReservationTDG.exchangeIntoHistory(archivingWeeks[0]);
+            archived = archivingWeeks[2];
+        }
+        else if(archivingWeeks != null)
+        {
+            for(int moved = ReservationTDG.archiveChunk(chunkSize); moved > 0; moved = ReservationTDG.archiveChunk(chunkSize))
+                archived += moved;
         }
+
+        ReservationTDG.dropArchivedWeek();
+        return archived;
     }
 
-    public static void resetReservations() throws ClassNotFoundException, SQLException
+    //Drops the history of the weeks more than retentionWeeks before the current one. 0 keeps the history forever.
+    //Returns the number of weeks dropped.
+    public static int dropExpiredHistory(int retentionWeeks) throws ClassNotFoundException, SQLException
     {
-        ReservationIdentityMap.reset();
-        ReservationTDG.reset();
-        Reservation.setIdCounter(1);
+        if(retentionWeeks <= 0)
+            return 0;
+
+        return ReservationTDG.dropHistoryBefore(currentWeekId - retentionWeeks);
     }
 }
\ No newline at end of file
@@ -0,0 +1,123 @@
+package Mapper;
+
+import Core.Day;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+//One step of a batch applied by ReservationMapper.applyBatch, as sent in the JSON body of /reservations/batch:
+//create uses roomId, day, startTime and endTime; delete uses reservationId; modify uses all of them and expectingReservation.
+public class ReservationOperation
+{
+    public enum Type
+    {
+        CREATE,
+        MODIFY,
+        DELETE;
+
+        //Accepts the names in any case ("create")
+        @JsonCreator
+        public static Type parse(String name)
+        {
+            return name == null ? null : valueOf(name.toUpperCase());
+        }
+    }
+
+    private Type type;
+    private int reservationId;
+    private int roomId;
+    private String day;
+    private int startTime;
+    private int endTime;
+    private boolean expectingReservation;
+
+    public ReservationOperation()
+    {
+    }
+
+    public ReservationOperation(Type type, int reservationId, int roomId, String day, int startTime, int endTime)
+    {
+        this.type = type;
+        this.reservationId = reservationId;
+        this.roomId = roomId;
+        this.day = day;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public int getReservationId()
+    {
+        return reservationId;
+    }
+
+    public int getRoomId()
+    {
+        return roomId;
+    }
+
+    public String getDay()
+    {
+        return day;
+    }
+
+    //The day as a constant, or null if the name is not a day
+    @JsonIgnore
+    public Day getDayOfWeek()
+    {
+        return Day.parse(day);
+    }
+
+    public int getStartTime()
+    {
+        return startTime;
+    }
+
+    public int getEndTime()
+    {
+        return endTime;
+    }
+
+    public boolean isExpectingReservation()
+    {
+        return expectingReservation;
+    }
+
+    public void setType(Type type)
+    {
+        this.type = type;
+    }
+
+    public void setReservationId(int reservationId)
+    {
+        this.reservationId = reservationId;
+    }
+
+    public void setRoomId(int roomId)
+    {
+        this.roomId = roomId;
+    }
+
+    public void setDay(String day)
+    {
+        this.day = day;
+    }
+
+    public void setStartTime(int startTime)
+    {
+        this.startTime = startTime;
+    }
+
+    public void setEndTime(int endTime)
+    {
+        this.endTime = endTime;
+    }
+
+    public void setExpectingReservation(boolean expectingReservation)
+    {
+        this.expectingReservation = expectingReservation;
+    }
+}
@@ -0,0 +1,87 @@
+package Mapper;
+
+import Core.Day;
+import Core.Reservation;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Version counters of the resources the read end points serve, used as their ETags: the list of rooms, the reservations of
+//each day and the reservations of each student (students share STUDENT_STRIPES counters, so a change may also refresh the tag
+//of a few unrelated students, never the opposite).
+//Writers record what they touch with touch() while changing it and call publish() once the change is committed or discarded,
+//which bumps the counters only then: a read takes its tag before reading, so a tag is never paired with older data than it names.
+//The tags start with the server's boot time, so that counters starting over on a restart never repeat a tag handed out before.
+public class ResourceVersions
+{
+    private static final int STUDENT_STRIPES = 4096;
+    private static final String BOOT_EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private static final AtomicLong rooms = new AtomicLong();
+    //Bumped by the weekly reset, which changes every day and every student at once
+    private static final AtomicLong weeks = new AtomicLong();
+    private static final AtomicLongArray days = new AtomicLongArray(Day.count());
+    private static final AtomicLongArray students = new AtomicLongArray(STUDENT_STRIPES);
+
+    //Days and student stripes touched by the calling thread's pending write
+    private static final ThreadLocal<Set<Integer>> touchedDays = ThreadLocal.withInitial(HashSet::new);
+    private static final ThreadLocal<Set<Integer>> touchedStudents = ThreadLocal.withInitial(HashSet::new);
+
+    public static String roomsTag()
+    {
+        return tag("r", rooms.get());
+    }
+
+    public static String dayTag(Day day)
+    {
+        return tag("d" + day.getCode() + "." + weeks.get(), days.get(day.ordinal()));
+    }
+
+    public static String studentTag(int studentId)
+    {
+        return tag("s" + weeks.get(), students.get(studentStripe(studentId)));
+    }
+
+    public static void roomsChanged()
+    {
+        rooms.incrementAndGet();
+    }
+
+    public static void weekChanged()
+    {
+        weeks.incrementAndGet();
+    }
+
+    //Records that the reservation's day and student are being changed by the calling thread
+    static void touch(Reservation reservation)
+    {
+        touchedDays.get().add(reservation.getDayOfWeek().ordinal());
+        touchedStudents.get().add(studentStripe(reservation.getStudentId()));
+    }
+
+    //Bumps every counter touched by the calling thread since its last publish
+    static void publish()
+    {
+        Set<Integer> dayIndexes = touchedDays.get();
+        for(int day : dayIndexes)
+            days.incrementAndGet(day);
+        dayIndexes.clear();
+
+        Set<Integer> studentStripes = touchedStudents.get();
+        for(int stripe : studentStripes)
+            students.incrementAndGet(stripe);
+        studentStripes.clear();
+    }
+
+    private static int studentStripe(int studentId)
+    {
+        return (studentId & Integer.MAX_VALUE) % STUDENT_STRIPES;
+    }
+
+    private static String tag(String resource, long version)
+    {
+        return "\"" + BOOT_EPOCH + "-" + resource + "-" + version + "\"";
+    }
+}
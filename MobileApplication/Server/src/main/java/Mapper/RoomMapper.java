@@ -2,13 +2,17 @@ package Mapper;
 
 import Core.Room;
 import IdentityMap.RoomIdentityMap;
+import IdentityMap.RoomSearchIndex;
 import TDG.RoomsTDG;
 import UnitOfWork.UnitOfWork;
 
-import java.sql.ResultSet;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * Created by Emili on 2016-10-25.
@@ -47,24 +51,12 @@ public class RoomMapper
         }
         else
         {
-            ResultSet resultSet = RoomsTDG.find(roomId);
+            Room roomDB = RoomsTDG.find(roomId);
 
-            if(resultSet.next())
-            {
-                int roomId1 = resultSet.getInt("roomId");
-                String roomNumber1 = resultSet.getString("roomNumber");
-                String description = resultSet.getString("description");
-                int roomSize = resultSet.getInt("roomSize");
-
-                Room roomDB = new Room(roomId1, roomNumber1, description, roomSize);
+            if(roomDB != null)
                 RoomIdentityMap.addRoom(roomDB);
 
-                return roomDB;
-            }
-            else
-            {
-                return null;
-            }
+            return roomDB;
         }
     }
 
@@ -82,27 +74,79 @@ public class RoomMapper
 
         try
         {
-            ResultSet resultSet = RoomsTDG.findAll();
-            ArrayList<Room> roomList = new ArrayList<Room>();
+            ArrayList<Room> loadedRooms = RoomsTDG.findAll();
+            ArrayList<Room> roomList = new ArrayList<Room>(loadedRooms.size());
 
-            if(resultSet == null)
-                return null;
-            else
+            //Hand out the identity map instances so that callers and the map never disagree
+            for(Room loadedRoom : loadedRooms)
             {
-
-                while(resultSet.next())
+                Room room = RoomIdentityMap.getRoomFromMap(loadedRoom.getId());
+                if(room == null)
                 {
-
-                    int roomid1 = resultSet.getInt("roomId");
-                    String roomNumber1 = resultSet.getString("roomNumber");
-                    String description = resultSet.getString("description");
-                    int roomSize = resultSet.getInt("roomSize");
-
-                    roomList.add(new Room(roomid1, roomNumber1, description, roomSize));
-                    RoomIdentityMap.addRoom(new Room(roomid1, roomNumber1, description, roomSize));
+                    RoomIdentityMap.addRoom(loadedRoom);
+                    room = loadedRoom;
                 }
-                return roomList;
+                roomList.add(room);
             }
+            return roomList;
+        }
+        finally
+        {
+            readWriteLock.readLock().unlock();
+        }
+    }
+
+    //Loads every room into the identity map. Returns the number of rooms read.
+    public static int warmUp(int fetchSize) throws ClassNotFoundException, SQLException
+    {
+        readWriteLock.writeLock().lock();
+
+        try
+        {
+            ArrayList<Room> loadedRooms = new ArrayList<Room>();
+            int count = RoomsTDG.streamAll(fetchSize, room ->
+            {
+                RoomIdentityMap.addRoom(room);
+                loadedRooms.add(room);
+            });
+
+            RoomSearchIndex.load(loadedRooms);
+            return count;
+        }
+        finally
+        {
+            readWriteLock.writeLock().unlock();
+        }
+    }
+
+    //Same as warmUp(int), starting from the rooms of a Snapshot: only the rooms it does not have as they are in the table are read
+    public static int warmUp(List<Room> snapshotRooms) throws ClassNotFoundException, SQLException
+    {
+        readWriteLock.writeLock().lock();
+
+        try
+        {
+            ArrayList<Room> loadedRooms = Snapshot.reconcile(snapshotRooms, RoomsTDG.findVersions(), (room, row) -> room.getVersion() == row[1], RoomsTDG::findByIds);
+            for(Room room : loadedRooms)
+                RoomIdentityMap.addRoom(room);
+
+            RoomSearchIndex.load(loadedRooms);
+            return loadedRooms.size();
+        }
+        finally
+        {
+            readWriteLock.writeLock().unlock();
+        }
+    }
+
+    //Hands every room of the identity map to the consumer while no room can change, for the Snapshot
+    public static void forEachLoaded(Consumer<Room> consumer)
+    {
+        readWriteLock.readLock().lock();
+
+        try
+        {
+            RoomIdentityMap.getAll().forEach(consumer);
         }
         finally
         {
@@ -113,18 +157,26 @@ public class RoomMapper
     public static void makeNew(int i, String rn, String d, int rs) throws ClassNotFoundException, SQLException
     {
 
+        Room ro = new Room(i, rn, d, rs);
+
         readWriteLock.writeLock().lock();
 
         try
         {
-            Room ro = new Room(i, rn, d, rs);
             RoomIdentityMap.addRoom(ro);
             UnitOfWork.registerNew(ro);
             UnitOfWork.commit();
+            RoomSearchIndex.invalidate();
+        }
+        catch(Exception e)
+        {
+            discardChanges(ro);
+            throw e;
         }
         finally
         {
             readWriteLock.writeLock().unlock();
+            ResourceVersions.roomsChanged();
         }
     }
 
@@ -143,10 +195,18 @@ public class RoomMapper
 
             UnitOfWork.registerDirty(room);
             UnitOfWork.commit();
+            RoomSearchIndex.invalidate();
+        }
+        catch(Exception e)
+        {
+            discardChanges(room);
+            throw e;
         }
         finally
         {
             readWriteLock.writeLock().unlock();
+            //Also after a failure: the room instance read by others may have held the discarded changes
+            ResourceVersions.roomsChanged();
         }
     }
 
@@ -160,52 +220,101 @@ public class RoomMapper
             RoomIdentityMap.delete(r);
             UnitOfWork.registerDelete(r);
             UnitOfWork.commit();
+            RoomSearchIndex.invalidate();
+        }
+        catch(Exception e)
+        {
+            discardChanges(r);
+            throw e;
         }
         finally
         {
             readWriteLock.writeLock().unlock();
+            ResourceVersions.roomsChanged();
         }
     }
 
-    public static void saveToDB(ArrayList<Room> newRooms) throws ClassNotFoundException, SQLException
+    //Whether getRoomIds, findRooms and hasRoom answer from memory
+    public static boolean searchIndexLoaded()
     {
-        readWriteLock.writeLock().lock();
+        return RoomSearchIndex.isLoaded();
+    }
 
-        try
-        {
-            RoomsTDG.insert(newRooms);
-        }
-        finally
-        {
-            readWriteLock.writeLock().unlock();
-        }
+    //Whether a room with the id exists, answered from the search index rather than the identity map so that an unknown id
+    //does not read the rooms table
+    public static boolean hasRoom(int roomId) throws ClassNotFoundException, SQLException
+    {
+        return Arrays.binarySearch(getRoomIds(), roomId) >= 0;
     }
 
-    public static void deleteToDB(ArrayList<Room> removedRooms) throws ClassNotFoundException, SQLException
+    //Ids of every room in ascending order. The returned array must not be modified.
+    public static int[] getRoomIds() throws ClassNotFoundException, SQLException
     {
-        readWriteLock.writeLock().lock();
+        int[] roomIds = RoomSearchIndex.getRoomIds();
+        if(roomIds != null)
+            return roomIds;
+
+        readWriteLock.readLock().lock();
 
         try
         {
-            RoomsTDG.delete(removedRooms);
+            loadSearchIndex();
+            return RoomSearchIndex.getRoomIds();
         }
         finally
         {
-            readWriteLock.writeLock().unlock();
+            readWriteLock.readLock().unlock();
         }
     }
 
-    public static void updateToDB(ArrayList<Room> dirtyRooms) throws ClassNotFoundException, SQLException
+    //Ids, in ascending order, of the rooms of the library (any library if null) holding at least minSize people.
+    //Answered from RoomSearchIndex, without reading the rooms table.
+    public static int[] findRooms(String library, int minSize) throws ClassNotFoundException, SQLException
     {
-        readWriteLock.writeLock().lock();
+        int[] found = RoomSearchIndex.findRooms(library, minSize);
+        if(found != null)
+            return found;
+
+        readWriteLock.readLock().lock();
 
         try
         {
-            RoomsTDG.update(dirtyRooms);
+            loadSearchIndex();
+            return RoomSearchIndex.findRooms(library, minSize);
         }
         finally
         {
-            readWriteLock.writeLock().unlock();
+            readWriteLock.readLock().unlock();
         }
     }
+
+    //Must be called with the read lock held: room writes invalidate the index under the write lock, so it stays loaded until
+    //the caller releases the lock
+    private static void loadSearchIndex() throws ClassNotFoundException, SQLException
+    {
+        if(!RoomSearchIndex.isLoaded())
+            RoomSearchIndex.load(RoomsTDG.findAll());
+    }
+
+    //Drops the changes registered by a failed operation and evicts the room from the identity map so that it is reloaded from the database
+    private static void discardChanges(Room room)
+    {
+        if(UnitOfWork.rollback())
+            RoomIdentityMap.delete(room);
+    }
+
+    public static void saveToDB(Connection connection, ArrayList<Room> newRooms) throws SQLException
+    {
+        RoomsTDG.insert(connection, newRooms);
+    }
+
+    public static void deleteToDB(Connection connection, ArrayList<Room> removedRooms) throws SQLException
+    {
+        RoomsTDG.delete(connection, removedRooms);
+    }
+
+    public static void updateToDB(Connection connection, ArrayList<Room> dirtyRooms) throws SQLException
+    {
+        RoomsTDG.update(connection, dirtyRooms);
+    }
 }
@@ -0,0 +1,344 @@
+package Mapper;
+
+import Config.ServerProperties;
+import Core.Day;
+import Core.DomainObject;
+import Core.Reservation;
+import Core.Room;
+import Core.Student;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+//Compact binary copy of the rooms, students and reservations held in memory, written to snapshot.file every
+//snapshot.interval-minutes and when the server stops (see com.server.SnapshotTask), so that WarmUp can start from it instead of
+//reading every table. It is written through a memory mapping of a temporary file renamed over the previous one, and read back
+//through a memory mapping; a file with another magic number or format, or failing its checksum, is ignored.
+//The copy may be behind the database, so WarmUp reconciles it with reconcile(): only the ids and versions of each table are
+//read, and only the rows missing from the snapshot or with another version are read in full. The slot, student and room search
+//indexes are rebuilt from the loaded objects rather than stored.
+//The file holds the students' passwords, so it is only readable by its owner where the file system allows it.
+public class Snapshot
+{
+    private static final int MAGIC = 0x534e4150;
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+
+    //Reads the rows of the given ids
+    public interface RowLoader<T>
+    {
+        ArrayList<T> load(List<Integer> ids) throws ClassNotFoundException, SQLException;
+    }
+
+    public static class Contents
+    {
+        private final long writtenAt;
+        private final ArrayList<Room> rooms;
+        private final ArrayList<Student> students;
+        private final ArrayList<Reservation> reservations;
+
+        private Contents(long writtenAt, ArrayList<Room> rooms, ArrayList<Student> students, ArrayList<Reservation> reservations)
+        {
+            this.writtenAt = writtenAt;
+            this.rooms = rooms;
+            this.students = students;
+            this.reservations = reservations;
+        }
+
+        //Milliseconds since the epoch
+        public long getWrittenAt()
+        {
+            return writtenAt;
+        }
+
+        public ArrayList<Room> getRooms()
+        {
+            return rooms;
+        }
+
+        public ArrayList<Student> getStudents()
+        {
+            return students;
+        }
+
+        public ArrayList<Reservation> getReservations()
+        {
+            return reservations;
+        }
+    }
+
+    public static boolean isEnabled()
+    {
+        return ServerProperties.getBoolean("snapshot.enabled", false);
+    }
+
+    public static File getFile()
+    {
+        return new File(ServerProperties.getString("snapshot.file", "snapshot.bin"));
+    }
+
+    //Writes the objects of the identity maps to the file, each map read while its Mapper lock is held so that no object is
+    //copied halfway through a change. Returns the size of the file.
+    public static synchronized long write(File file) throws IOException
+    {
+        Encoder body = new Encoder();
+
+        body.putList(RoomMapper::forEachLoaded, room ->
+        {
+            body.putInt(room.getId());
+            body.putInt(room.getVersion());
+            body.putString(room.getRoomNumber());
+            body.putString(room.getDescription());
+            body.putInt(room.getRoomSize());
+        });
+        body.putList(StudentMapper::forEachLoaded, student ->
+        {
+            body.putInt(student.getId());
+            body.putInt(student.getVersion());
+            body.putString(student.getName());
+            body.putString(student.getPassword());
+        });
+        body.putList(ReservationMapper::forEachLoaded, reservation ->
+        {
+            body.putInt(reservation.getId());
+            body.putInt(reservation.getVersion());
+            body.putInt(reservation.getRoomId());
+            body.putInt(reservation.getStudentId());
+            body.putByte(reservation.getDayOfWeek().getCode());
+            body.putInt(reservation.getStartTime());
+            body.putInt(reservation.getEndTime());
+            body.putInt(reservation.getPosition());
+            body.putInt(reservation.getWeekId());
+        });
+
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        File temporary = new File(file.getPath() + ".tmp");
+        Files.deleteIfExists(temporary.toPath());
+        createOwnerOnly(temporary);
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(temporary, "rw");
+        try
+        {
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + bytes.length);
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT);
+            buffer.putLong(System.currentTimeMillis());
+            buffer.putInt(bytes.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(bytes);
+            buffer.force();
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return HEADER_SIZE + bytes.length;
+    }
+
+    //The snapshot in the file, or null if there is none or it cannot be used
+    public static Contents read(File file)
+    {
+        if(!file.isFile())
+            return null;
+
+        try
+        {
+            MappedByteBuffer buffer;
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try
+            {
+                buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+            }
+            finally
+            {
+                randomAccessFile.close();
+            }
+
+            if(buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT)
+                return invalid(file, "it is not a snapshot of this format");
+
+            long writtenAt = buffer.getLong();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if(length != buffer.remaining())
+                return invalid(file, "it was cut short");
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if((int) crc.getValue() != checksum)
+                return invalid(file, "its checksum does not match");
+
+            ArrayList<Room> rooms = new ArrayList<Room>();
+            for(int i = buffer.getInt(); i > 0; i--)
+            {
+                int id = buffer.getInt();
+                int version = buffer.getInt();
+                Room room = new Room(id, getString(buffer), getString(buffer), buffer.getInt());
+                room.setVersion(version);
+                rooms.add(room);
+            }
+
+            ArrayList<Student> students = new ArrayList<Student>();
+            for(int i = buffer.getInt(); i > 0; i--)
+            {
+                int id = buffer.getInt();
+                int version = buffer.getInt();
+                Student student = new Student(id, getString(buffer), getString(buffer));
+                student.setVersion(version);
+                students.add(student);
+            }
+
+            ArrayList<Reservation> reservations = new ArrayList<Reservation>();
+            for(int i = buffer.getInt(); i > 0; i--)
+            {
+                int id = buffer.getInt();
+                int version = buffer.getInt();
+                int roomId = buffer.getInt();
+                int studentId = buffer.getInt();
+                Day day = Day.fromCode(buffer.get());
+                int startTime = buffer.getInt();
+                int endTime = buffer.getInt();
+                int position = buffer.getInt();
+
+                Reservation reservation = new Reservation(id, roomId, studentId, day, startTime, endTime, position);
+                reservation.setVersion(version);
+                reservation.setWeekId(buffer.getInt());
+                reservations.add(reservation);
+            }
+
+            return new Contents(writtenAt, rooms, students, reservations);
+        }
+        catch(IOException | BufferUnderflowException | IllegalArgumentException e)
+        {
+            return invalid(file, e.toString());
+        }
+    }
+
+    //The rows of a table as the snapshot and tableVersions say they are: the snapshot's object where the table has a row with the
+    //same id that it matches, the table's row, read through the loader, where it does not or the snapshot has none.
+    //Each element of tableVersions starts with the row's id; the matcher compares the rest (version, week) with the object.
+    public static <T extends DomainObject> ArrayList<T> reconcile(List<T> snapshotObjects, List<int[]> tableVersions, BiPredicate<T, int[]> matcher, RowLoader<T> loader) throws ClassNotFoundException, SQLException
+    {
+        Map<Integer, T> snapshotById = new HashMap<Integer, T>(snapshotObjects.size() * 2);
+        for(T object : snapshotObjects)
+            snapshotById.put(object.getId(), object);
+
+        ArrayList<T> objects = new ArrayList<T>(tableVersions.size());
+        List<Integer> staleIds = new ArrayList<Integer>();
+
+        for(int[] row : tableVersions)
+        {
+            T object = snapshotById.get(row[0]);
+            if(object != null && matcher.test(object, row))
+                objects.add(object);
+            else
+                staleIds.add(row[0]);
+        }
+
+        if(!staleIds.isEmpty())
+            objects.addAll(loader.load(staleIds));
+
+        return objects;
+    }
+
+    private static Contents invalid(File file, String reason)
+    {
+        System.out.println("Ignoring the snapshot " + file + ": " + reason);
+        return null;
+    }
+
+    private static void createOwnerOnly(File file) throws IOException
+    {
+        Files.createFile(file.toPath());
+
+        try
+        {
+            Files.setPosixFilePermissions(file.toPath(), EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+        }
+        catch(UnsupportedOperationException e)
+        {
+            //Not a POSIX file system; the directory's permissions apply
+        }
+    }
+
+    private static String getString(ByteBuffer buffer)
+    {
+        int length = buffer.getInt();
+        if(length < 0)
+            return null;
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //Big-endian like ByteBuffer, into a growing array that never throws IOException
+    private static class Encoder extends ByteArrayOutputStream
+    {
+        //The number of objects, then each of them. The count goes in front once they are all written.
+        private <T> void putList(Consumer<Consumer<T>> forEach, Consumer<T> writer)
+        {
+            int countAt = count;
+            putInt(0);
+
+            int[] written = new int[1];
+            forEach.accept(object ->
+            {
+                writer.accept(object);
+                written[0]++;
+            });
+
+            ByteBuffer.wrap(buf, countAt, 4).putInt(written[0]);
+        }
+
+        private void putByte(int value)
+        {
+            write(value);
+        }
+
+        private void putInt(int value)
+        {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        private void putString(String value)
+        {
+            if(value == null)
+            {
+                putInt(-1);
+                return;
+            }
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
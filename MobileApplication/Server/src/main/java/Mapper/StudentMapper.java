@@ -5,10 +5,12 @@ import IdentityMap.StudentIdentityMap;
 import TDG.StudentTDG;
 import UnitOfWork.UnitOfWork;
 
-import java.sql.ResultSet;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * Created by Emili on 2016-10-25.
@@ -46,23 +48,12 @@ public class StudentMapper
         }
         else
         {
-            ResultSet resultSet = StudentTDG.find(studentId);
+            Student studentDB = StudentTDG.find(studentId);
 
-            if(resultSet.next())
-            {
-                int username = resultSet.getInt("username");
-                String name = resultSet.getString("FullName");
-                String password = resultSet.getString("password");
-
-                Student studentDB = new Student(username, name, password);
+            if(studentDB != null)
                 StudentIdentityMap.addStudent(studentDB);
 
-                return studentDB;
-            }
-            else
-            {
-                return null;
-            }
+            return studentDB;
         }
     }
 
@@ -75,27 +66,25 @@ public class StudentMapper
 
     public static ArrayList<Student> getAllData() throws SQLException, ClassNotFoundException
     {
-        ResultSet resultSet = StudentTDG.findAll();
-        ArrayList<Student> studentList = new ArrayList<Student>();
         readWriteLock.readLock().lock();
 
         try
         {
-            if(resultSet == null)
-                return null;
-            else
+            ArrayList<Student> loadedStudents = StudentTDG.findAll();
+            ArrayList<Student> studentList = new ArrayList<Student>(loadedStudents.size());
+
+            //Hand out the identity map instances so that callers and the map never disagree
+            for(Student loadedStudent : loadedStudents)
             {
-                while(resultSet.next())
+                Student student = StudentIdentityMap.getStudentFromMap(loadedStudent.getId());
+                if(student == null)
                 {
-                    int username = resultSet.getInt("username");
-                    String name = resultSet.getString("FullName");
-                    String password = resultSet.getString("password");
-
-                    studentList.add(new Student(username, name, password));
-                    StudentIdentityMap.addStudent(new Student(username, name, password));
+                    StudentIdentityMap.addStudent(loadedStudent);
+                    student = loadedStudent;
                 }
-                return studentList;
+                studentList.add(student);
             }
+            return studentList;
         }
         finally
         {
@@ -103,16 +92,14 @@ public class StudentMapper
         }
     }
 
-    public static void makeNew(int u, String n, String p) throws SQLException, ClassNotFoundException
+    //Loads every student into the identity map, up to its capacity. Returns the number of students read.
+    public static int warmUp(int fetchSize) throws ClassNotFoundException, SQLException
     {
         readWriteLock.writeLock().lock();
 
         try
         {
-            Student s = new Student(u, n, p);
-            StudentIdentityMap.addStudent(s);
-            UnitOfWork.registerNew(s);
-            UnitOfWork.commit();
+            return StudentTDG.streamAll(fetchSize, StudentIdentityMap::addStudent);
         }
         finally
         {
@@ -120,20 +107,19 @@ public class StudentMapper
         }
     }
 
-    public static void set(Student student, String name, String password) throws ClassNotFoundException, SQLException
+    //Same as warmUp(int), starting from the students of a Snapshot: only the students it does not have as they are in the table
+    //are read
+    public static int warmUp(List<Student> snapshotStudents) throws ClassNotFoundException, SQLException
     {
         readWriteLock.writeLock().lock();
 
         try
         {
-            if(getDataNoLock(student.getId()) == null)
-                throw new IllegalArgumentException("Trying to update a student that does not exist in the map or database.");
-
-            student.setName(name);
-            student.setPassword(password);
+            ArrayList<Student> loadedStudents = Snapshot.reconcile(snapshotStudents, StudentTDG.findVersions(), (student, row) -> student.getVersion() == row[1], StudentTDG::findByIds);
+            for(Student student : loadedStudents)
+                StudentIdentityMap.addStudent(student);
 
-            UnitOfWork.registerDirty(student);
-            UnitOfWork.commit();
+            return loadedStudents.size();
         }
         finally
         {
@@ -141,29 +127,37 @@ public class StudentMapper
         }
     }
 
-    public static void erase(Student s) throws ClassNotFoundException, SQLException
+    //Hands every student of the identity map to the consumer while no student can change, for the Snapshot
+    public static void forEachLoaded(Consumer<Student> consumer)
     {
-        readWriteLock.writeLock().lock();
+        readWriteLock.readLock().lock();
 
         try
         {
-            StudentIdentityMap.delete(s);
-            UnitOfWork.registerDelete(s);
-            UnitOfWork.commit();
+            StudentIdentityMap.getAll().forEach(consumer);
         }
         finally
         {
-            readWriteLock.writeLock().unlock();
+            readWriteLock.readLock().unlock();
         }
     }
 
-    public static void saveToDB(ArrayList<Student> newStudents) throws ClassNotFoundException, SQLException
+    public static void makeNew(int u, String n, String p) throws SQLException, ClassNotFoundException
     {
+        Student s = new Student(u, n, p);
+
         readWriteLock.writeLock().lock();
 
         try
         {
-            StudentTDG.insert(newStudents);
+            StudentIdentityMap.addStudent(s);
+            UnitOfWork.registerNew(s);
+            UnitOfWork.commit();
+        }
+        catch(Exception e)
+        {
+            discardChanges(s);
+            throw e;
         }
         finally
         {
@@ -171,13 +165,25 @@ public class StudentMapper
         }
     }
 
-    public static void deleteToDB(ArrayList<Student> removedStudents) throws ClassNotFoundException, SQLException
+    public static void set(Student student, String name, String password) throws ClassNotFoundException, SQLException
     {
         readWriteLock.writeLock().lock();
 
         try
         {
-            StudentTDG.delete(removedStudents);
+            if(getDataNoLock(student.getId()) == null)
+                throw new IllegalArgumentException("Trying to update a student that does not exist in the map or database.");
+
+            student.setName(name);
+            student.setPassword(password);
+
+            UnitOfWork.registerDirty(student);
+            UnitOfWork.commit();
+        }
+        catch(Exception e)
+        {
+            discardChanges(student);
+            throw e;
         }
         finally
         {
@@ -185,17 +191,46 @@ public class StudentMapper
         }
     }
 
-    public static void updateToDB(ArrayList<Student> dirtyStudents) throws ClassNotFoundException, SQLException
+    public static void erase(Student s) throws ClassNotFoundException, SQLException
     {
         readWriteLock.writeLock().lock();
 
         try
         {
-            StudentTDG.update(dirtyStudents);
+            StudentIdentityMap.delete(s);
+            UnitOfWork.registerDelete(s);
+            UnitOfWork.commit();
+        }
+        catch(Exception e)
+        {
+            discardChanges(s);
+            throw e;
         }
         finally
         {
             readWriteLock.writeLock().unlock();
         }
     }
+
+    //Drops the changes registered by a failed operation and evicts the student from the identity map so that it is reloaded from the database
+    private static void discardChanges(Student student)
+    {
+        if(UnitOfWork.rollback())
+            StudentIdentityMap.delete(student);
+    }
+
+    public static void saveToDB(Connection connection, ArrayList<Student> newStudents) throws SQLException
+    {
+        StudentTDG.insert(connection, newStudents);
+    }
+
+    public static void deleteToDB(Connection connection, ArrayList<Student> removedStudents) throws SQLException
+    {
+        StudentTDG.delete(connection, removedStudents);
+    }
+
+    public static void updateToDB(Connection connection, ArrayList<Student> dirtyStudents) throws SQLException
+    {
+        StudentTDG.update(connection, dirtyStudents);
+    }
 }
\ No newline at end of file
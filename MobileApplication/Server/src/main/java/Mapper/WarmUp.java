@@ -0,0 +1,70 @@
+package Mapper;
+
+import Config.ServerProperties;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+//Startup stage that fills the identity maps and the reservation indexes before the server accepts requests, so the first
+//requests after a deploy do not pay for loading them.
+//Rooms, students and reservations are each read once, in parallel, through a cursor of warm-up.fetch-size rows.
+//If snapshot.enabled is set and there is a usable Snapshot, they are taken from it instead, and only the ids and versions of
+//each table are read to find the rows that changed since it was written.
+public class WarmUp
+{
+    public static void run() throws ClassNotFoundException, SQLException
+    {
+        int fetchSize = ServerProperties.getInt("warm-up.fetch-size", 1000);
+        long start = System.nanoTime();
+
+        Snapshot.Contents snapshot = Snapshot.isEnabled() ? Snapshot.read(Snapshot.getFile()) : null;
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try
+        {
+            Future<Integer> rooms = executor.submit(() -> snapshot == null ? RoomMapper.warmUp(fetchSize) : RoomMapper.warmUp(snapshot.getRooms()));
+            Future<Integer> students = executor.submit(() -> snapshot == null ? StudentMapper.warmUp(fetchSize) : StudentMapper.warmUp(snapshot.getStudents()));
+            Future<Integer> reservations = executor.submit(() -> snapshot == null ? ReservationMapper.warmUp(fetchSize) : ReservationMapper.warmUp(snapshot.getReservations()));
+
+            System.out.println("Warm-up loaded " + await(rooms) + " rooms, " + await(students) + " students and "
+                    + await(reservations) + " reservations" + (snapshot == null ? "" : " from the snapshot of " + new Date(snapshot.getWrittenAt()))
+                    + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    //Waits for one of the loads and rethrows its failure as the exception the loader threw
+    private static int await(Future<Integer> load) throws ClassNotFoundException, SQLException
+    {
+        try
+        {
+            return load.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during the warm-up", e);
+        }
+        catch(ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+
+            if(cause instanceof SQLException)
+                throw (SQLException) cause;
+            if(cause instanceof ClassNotFoundException)
+                throw (ClassNotFoundException) cause;
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+
+            throw new IllegalStateException("Warm-up failed", cause);
+        }
+    }
+}
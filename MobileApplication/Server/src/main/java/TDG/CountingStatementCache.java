@@ -0,0 +1,36 @@
+package TDG;
+
+import org.apache.tomcat.jdbc.pool.interceptor.StatementCache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//Pool interceptor that keeps the prepared statements of each pooled connection open between borrows (see StatementCache)
+//and counts how often a prepareStatement call could be served from that cache. Registered by DatabaseUtils.
+public class CountingStatementCache extends StatementCache
+{
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    @Override
+    public CachedStatement isCached(String sql)
+    {
+        CachedStatement cachedStatement = super.isCached(sql);
+
+        if(cachedStatement != null)
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+
+        return cachedStatement;
+    }
+
+    public static long getHits()
+    {
+        return hits.get();
+    }
+
+    public static long getMisses()
+    {
+        return misses.get();
+    }
+}
@@ -1,20 +1,386 @@
 package TDG;
 
+import Config.ServerProperties;
+import Core.DomainObject;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.PoolExhaustedException;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 //Class with basic database related functions
+//All TDGs borrow their connections from a single pool configured through the spring.datasource.* keys of application.properties.
+//Closing a borrowed connection returns it to the pool.
 public class DatabaseUtils {
-    private final static String DATABASE_USERNAME = "root";
-    private final static String DATABASE_PASSWORD = "admin";
-    private final static String DATABASE_URL = "jdbc:mysql://localhost:3306/db343?characterEncoding=UTF-8&useSSL=false";
-    
+    private final static String DEFAULT_URL = "jdbc:mysql://localhost:3306/db343?characterEncoding=UTF-8&useSSL=false";
+    private final static String POOL_PREFIX = "spring.datasource.tomcat.";
+
+    private static final int ID_CHUNK_SIZE = 500;
+    //MySQL's ER_DUP_ENTRY
+    private static final int DUPLICATE_KEY_ERROR = 1062;
+    //MySQL's ER_LOCK_WAIT_TIMEOUT and ER_LOCK_DEADLOCK
+    private static final int LOCK_WAIT_TIMEOUT_ERROR = 1205;
+    private static final int DEADLOCK_ERROR = 1213;
+
+    private static final AtomicLong borrowCount = new AtomicLong();
+    private static final AtomicLong borrowFailureCount = new AtomicLong();
+    private static final AtomicLong totalWaitNanos = new AtomicLong();
+    private static final AtomicLong maxWaitNanos = new AtomicLong();
+    private static volatile boolean poolStarted = false;
+
+    //Holder idiom so the pool is only created the first time a connection is needed
+    private static class PoolHolder
+    {
+        private static final DataSource dataSource = createDataSource();
+    }
+
     public static Connection getConnection() throws ClassNotFoundException, SQLException
     {
-        Class.forName("com.mysql.jdbc.Driver");
-        Connection connection = DriverManager.getConnection(DATABASE_URL, DATABASE_USERNAME, DATABASE_PASSWORD);
+        long start = System.nanoTime();
+
+        try
+        {
+            Connection connection = PoolHolder.dataSource.getConnection();
+            borrowCount.incrementAndGet();
+            poolStarted = true;
+            return connection;
+        }
+        catch(SQLException e)
+        {
+            borrowFailureCount.incrementAndGet();
+            throw e;
+        }
+        finally
+        {
+            recordWait(System.nanoTime() - start);
+        }
+    }
+
+    //Runs the parameterized query, maps every row with the given mapper and releases the statement and connection before returning
+    public static <T> ArrayList<T> query(String sql, RowMapper<T> rowMapper, Object... parameters) throws ClassNotFoundException, SQLException
+    {
+        Connection connection = getConnection();
+
+        try
+        {
+            PreparedStatement statement = connection.prepareStatement(sql);
+
+            try
+            {
+                setParameters(statement, parameters);
+                ResultSet resultSet = statement.executeQuery();
+                ArrayList<T> results = new ArrayList<T>();
+
+                while(resultSet.next())
+                {
+                    results.add(rowMapper.mapRow(resultSet));
+                }
+                resultSet.close();
+
+                return results;
+            }
+            finally
+            {
+                statement.close();
+            }
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+
+    //Runs the query and hands each mapped row to the consumer as soon as it is read, instead of building the whole result first.
+    //With useCursorFetch=true in the connection properties, a positive fetch size makes the driver read the result through a
+    //server side cursor, fetchSize rows per round trip. Returns the number of rows read.
+    public static <T> int stream(String sql, int fetchSize, RowMapper<T> rowMapper, Consumer<T> consumer, Object... parameters) throws ClassNotFoundException, SQLException
+    {
+        Connection connection = getConnection();
+
+        try
+        {
+            PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+            try
+            {
+                statement.setFetchSize(fetchSize);
+                setParameters(statement, parameters);
+                ResultSet resultSet = statement.executeQuery();
+                int rows = 0;
+
+                while(resultSet.next())
+                {
+                    consumer.accept(rowMapper.mapRow(resultSet));
+                    rows++;
+                }
+                resultSet.close();
+
+                return rows;
+            }
+            finally
+            {
+                statement.close();
+            }
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+
+    //Runs the query for the given ids, replacing the %s of its IN list with one placeholder per id, in chunks of at most
+    //ID_CHUNK_SIZE ids so that the statement stays small
+    public static <T> ArrayList<T> queryByIds(String sql, RowMapper<T> rowMapper, List<Integer> ids) throws ClassNotFoundException, SQLException
+    {
+        ArrayList<T> results = new ArrayList<T>(ids.size());
+
+        for(int start = 0; start < ids.size(); start += ID_CHUNK_SIZE)
+        {
+            List<Integer> chunk = ids.subList(start, Math.min(start + ID_CHUNK_SIZE, ids.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+
+            results.addAll(query(String.format(sql, placeholders), rowMapper, chunk.toArray()));
+        }
+
+        return results;
+    }
+
+    //Same as query, but only returns the first mapped row, or null if there were none
+    public static <T> T queryForObject(String sql, RowMapper<T> rowMapper, Object... parameters) throws ClassNotFoundException, SQLException
+    {
+        ArrayList<T> results = query(sql, rowMapper, parameters);
+
+        if(results.isEmpty())
+            return null;
+
+        return results.get(0);
+    }
+
+    //Runs a single parameterized update and releases the statement and connection before returning
+    public static int update(String sql, Object... parameters) throws ClassNotFoundException, SQLException
+    {
+        Connection connection = getConnection();
+
+        try
+        {
+            PreparedStatement statement = connection.prepareStatement(sql);
+
+            try
+            {
+                setParameters(statement, parameters);
+                return statement.executeUpdate();
+            }
+            finally
+            {
+                statement.close();
+            }
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+
+    //Binds the parameters to the statement's placeholders in order
+    public static void setParameters(PreparedStatement statement, Object... parameters) throws SQLException
+    {
+        for(int i = 0; i < parameters.length; i++)
+        {
+            statement.setObject(i + 1, parameters[i]);
+        }
+    }
+
+    //Checks the update counts of a version-checked UPDATE or DELETE batch, one statement per object.
+    //A statement that matched no row means another request or server changed or removed the object since it was read.
+    //Drivers may report SUCCESS_NO_INFO for batched statements, which is accepted.
+    // @throws OptimisticLockingFailureException (a ConcurrencyFailureException) on the first conflicting object
+    public static void checkVersionedBatch(int[] updateCounts, ArrayList<? extends DomainObject> objects, String table)
+    {
+        for(int i = 0; i < updateCounts.length; i++)
+        {
+            if(updateCounts[i] == 0)
+            {
+                DomainObject object = objects.get(i);
+                throw new OptimisticLockingFailureException("Row " + object.getId() + " of " + table + " was changed or removed since version "
+                        + object.getVersion() + " was read");
+            }
+            if(updateCounts[i] != 1 && updateCounts[i] != Statement.SUCCESS_NO_INFO)
+                throw new IllegalStateException("Expected one row of " + table + " per statement but got " + updateCounts[i]);
+        }
+    }
+
+    //Rethrows a duplicate key error on a unique key of the table as a ConcurrencyFailureException: another server wrote the
+    //same key first, from an in-memory state that this one had not seen yet. Any other error is left to the caller.
+    public static void checkDuplicateKey(SQLException exception, String table)
+    {
+        for(Throwable cause = exception; cause != null; cause = cause.getCause())
+        {
+            if(cause instanceof SQLException && ((SQLException) cause).getErrorCode() == DUPLICATE_KEY_ERROR)
+                throw new ConcurrencyFailureException("Another server wrote the same key of " + table + " first: " + cause.getMessage(), exception);
+        }
+    }
+
+    //Whether the same statements may go through if tried again: a lost or refused connection (SQLState class 08), a deadlock or
+    //lock wait timeout, a rolled back transaction (class 40) or an empty pool. A version conflict, a constraint violation or
+    //bad data fail the same way every time.
+    public static boolean isTransient(Throwable exception)
+    {
+        for(Throwable cause = exception; cause != null; cause = cause.getCause())
+        {
+            if(cause instanceof SQLTransientException || cause instanceof SQLRecoverableException || cause instanceof PoolExhaustedException)
+                return true;
+
+            if(cause instanceof SQLException)
+            {
+                SQLException sqlException = (SQLException) cause;
+                String state = sqlException.getSQLState();
+                if(sqlException.getErrorCode() == DEADLOCK_ERROR || sqlException.getErrorCode() == LOCK_WAIT_TIMEOUT_ERROR
+                        || (state != null && (state.startsWith("08") || state.startsWith("40"))))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    //Records the version the rows were just updated to, once the batch went through
+    public static void incrementVersions(ArrayList<? extends DomainObject> objects)
+    {
+        for(DomainObject object : objects)
+            object.setVersion(object.getVersion() + 1);
+    }
+
+    private static void recordWait(long waitNanos)
+    {
+        totalWaitNanos.addAndGet(waitNanos);
+
+        long currentMax = maxWaitNanos.get();
+        while(waitNanos > currentMax && !maxWaitNanos.compareAndSet(currentMax, waitNanos))
+            currentMax = maxWaitNanos.get();
+    }
+
+    private static DataSource createDataSource()
+    {
+        PoolProperties poolProperties = new PoolProperties();
+        poolProperties.setName("skynet");
+        poolProperties.setDriverClassName(ServerProperties.getString("spring.datasource.driver-class-name", "com.mysql.jdbc.Driver"));
+        poolProperties.setUrl(ServerProperties.getString("spring.datasource.url", DEFAULT_URL));
+        poolProperties.setUsername(ServerProperties.getString("spring.datasource.username", "root"));
+        poolProperties.setPassword(ServerProperties.getString("spring.datasource.password", "admin"));
+
+        //Sizing
+        poolProperties.setInitialSize(ServerProperties.getInt(POOL_PREFIX + "initial-size", 5));
+        poolProperties.setMinIdle(ServerProperties.getInt(POOL_PREFIX + "min-idle", 5));
+        poolProperties.setMaxIdle(ServerProperties.getInt(POOL_PREFIX + "max-idle", 20));
+        poolProperties.setMaxActive(getMaxActiveConnections());
+        poolProperties.setMaxWait(ServerProperties.getInt(POOL_PREFIX + "max-wait", 10000));
+        poolProperties.setFairQueue(true);
+
+        //Idle eviction
+        poolProperties.setTimeBetweenEvictionRunsMillis(ServerProperties.getInt(POOL_PREFIX + "time-between-eviction-runs-millis", 30000));
+        poolProperties.setMinEvictableIdleTimeMillis(ServerProperties.getInt(POOL_PREFIX + "min-evictable-idle-time-millis", 60000));
+
+        //Validation
+        poolProperties.setValidationQuery(ServerProperties.getString(POOL_PREFIX + "validation-query", "SELECT 1"));
+        poolProperties.setValidationQueryTimeout(ServerProperties.getInt(POOL_PREFIX + "validation-query-timeout", 2));
+        poolProperties.setValidationInterval(ServerProperties.getLong(POOL_PREFIX + "validation-interval", 30000));
+        poolProperties.setTestOnBorrow(ServerProperties.getBoolean(POOL_PREFIX + "test-on-borrow", true));
+        poolProperties.setTestWhileIdle(ServerProperties.getBoolean(POOL_PREFIX + "test-while-idle", true));
+
+        //Leak detection: connections held longer than the timeout are logged and reclaimed
+        poolProperties.setRemoveAbandoned(ServerProperties.getBoolean(POOL_PREFIX + "remove-abandoned", true));
+        poolProperties.setRemoveAbandonedTimeout(ServerProperties.getInt(POOL_PREFIX + "remove-abandoned-timeout", 60));
+        poolProperties.setLogAbandoned(ServerProperties.getBoolean(POOL_PREFIX + "log-abandoned", true));
+        poolProperties.setSuspectTimeout(ServerProperties.getInt(POOL_PREFIX + "suspect-timeout", 10));
+
+        //Prepared statements: server-side preparation plus the driver's statement cache, and a per-connection cache in the pool
+        //so that each pooled connection only prepares a given TDG query once. rewriteBatchedStatements lets the driver send the
+        //UnitOfWork's JDBC batches as multi-row statements, and useCursorFetch lets stream() honour its fetch size.
+        poolProperties.setConnectionProperties(ServerProperties.getString(POOL_PREFIX + "connection-properties",
+                "useServerPrepStmts=true;cachePrepStmts=true;prepStmtCacheSize=250;prepStmtCacheSqlLimit=2048;rewriteBatchedStatements=true;useCursorFetch=true"));
+        poolProperties.setJdbcInterceptors(CountingStatementCache.class.getName() + "(prepared=true,callable=false,max="
+                + ServerProperties.getInt(POOL_PREFIX + "statement-cache-size", 100) + ")");
+
+        poolProperties.setJmxEnabled(true);
+
+        DataSource dataSource = new DataSource();
+        dataSource.setPoolProperties(poolProperties);
+        return dataSource;
+    }
+
+    //Pool statistics, exposed through the actuator /metrics endpoint by com.server.DatabasePoolMetrics
+    //The getters below never open the pool themselves, so reading the metrics before the first query is harmless
+
+    public static boolean isPoolStarted()
+    {
+        return poolStarted;
+    }
+
+    public static int getPoolSize()
+    {
+        return poolStarted ? PoolHolder.dataSource.getSize() : 0;
+    }
+
+    public static int getActiveConnections()
+    {
+        return poolStarted ? PoolHolder.dataSource.getActive() : 0;
+    }
+
+    public static int getIdleConnections()
+    {
+        return poolStarted ? PoolHolder.dataSource.getIdle() : 0;
+    }
+
+    public static int getMaxActiveConnections()
+    {
+        return ServerProperties.getInt(POOL_PREFIX + "max-active", 50);
+    }
+
+    //Number of threads currently blocked waiting for a connection
+    public static int getWaitingThreads()
+    {
+        return poolStarted ? PoolHolder.dataSource.getWaitCount() : 0;
+    }
+
+    public static long getBorrowCount()
+    {
+        return borrowCount.get();
+    }
 
-        return connection;
+    public static long getBorrowFailureCount()
+    {
+        return borrowFailureCount.get();
+    }
+
+    public static long getTotalWaitMillis()
+    {
+        return totalWaitNanos.get() / 1000000;
+    }
+
+    public static long getMaxWaitMillis()
+    {
+        return maxWaitNanos.get() / 1000000;
+    }
+
+    public static long getStatementCacheHits()
+    {
+        return CountingStatementCache.getHits();
+    }
+
+    public static long getStatementCacheMisses()
+    {
+        return CountingStatementCache.getMisses();
     }
 }
@@ -1,13 +1,15 @@
 package TDG;
 
+import Core.Day;
 import Core.Reservation;
-import IdentityMap.ReservationIdentityMap;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Created by dias on 2016-10-25.
@@ -15,171 +17,381 @@ import java.util.ArrayList;
 
 public class ReservationTDG
 {
-    public static ResultSet findAll() throws ClassNotFoundException, SQLException
+    public static final String FIND_ALL_SQL = "SELECT * FROM reservations";
+    private static final String FIND_VERSIONS_SQL = "SELECT reservationId, version, weekId FROM reservations";
+    private static final String FIND_BY_IDS_SQL = "SELECT * FROM reservations WHERE reservationId IN (%s)";
+    public static final String FIND_SQL = "SELECT * FROM reservations WHERE reservationId = ?";
+    public static final String FIND_PROCEEDING_WAITLIST_SQL = "SELECT * FROM reservations WHERE roomId = ? AND weekDay = ? AND startTime = ? AND endTime = ? AND position > ?";
+    public static final String FIND_IN_RANGE_SQL = "SELECT * FROM reservations WHERE roomId = ? AND weekDay = ? AND startTime = ? AND endTime = ?";
+    public static final String FIND_BY_STUDENT_SQL = "SELECT * FROM reservations WHERE studentId = ?";
+    public static final String FIND_FULL_FOR_DAY_SQL = "SELECT * FROM reservations WHERE weekDay = ? AND position = 0";
+    private static final String INSERT_SQL = "INSERT INTO reservations (reservationId, roomId, studentId, weekDay, startTime, endTime, position, version, weekId) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    public static final String UPDATE_SQL = "UPDATE reservations SET roomId = ?, studentId = ?, weekDay = ?, startTime = ?, endTime = ?, position = ?, version = version + 1 WHERE reservationId = ? AND version = ?";
+    public static final String SHIFT_WAITLIST_SQL = "UPDATE reservations SET position = position - 1, version = version + 1 WHERE roomId = ? AND weekDay = ? AND startTime = ? AND endTime = ? AND position > ? ORDER BY position";
+    public static final String DELETE_SQL = "DELETE FROM reservations WHERE reservationId = ? AND version = ?";
+
+    //Weekly reset: the week's rows are swapped out with a rename, then handed to reservations_history, which has the same
+    //structure but one RANGE partition per weekId (plus pfuture for anything newer). A single week is moved by exchanging the
+    //swapped out table with a new empty partition, a metadata change; anything else falls back to copying in chunks.
+    //Expired weeks are removed by dropping their partitions.
+    private static final String DROP_NEXT_WEEK_SQL = "DROP TABLE IF EXISTS reservations_next";
+    private static final String CREATE_NEXT_WEEK_SQL = "CREATE TABLE reservations_next LIKE reservations";
+    private static final String SWAP_WEEK_SQL = "RENAME TABLE reservations TO reservations_archiving, reservations_next TO reservations";
+    private static final String FIND_ARCHIVING_SQL = "SHOW TABLES LIKE 'reservations_archiving'";
+    private static final String ARCHIVE_CHUNK_END_SQL = "SELECT MAX(reservationId) FROM (SELECT reservationId FROM reservations_archiving ORDER BY reservationId LIMIT ?) chunk";
+    private static final String FIND_ARCHIVING_WEEKS_SQL = "SELECT MIN(weekId), MAX(weekId), COUNT(*) FROM reservations_archiving";
+    private static final String FIND_HISTORY_PARTITIONS_SQL = "SELECT PARTITION_NAME, CAST(PARTITION_DESCRIPTION AS SIGNED) FROM information_schema.PARTITIONS "
+            + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'reservations_history' AND PARTITION_DESCRIPTION <> 'MAXVALUE' ORDER BY PARTITION_ORDINAL_POSITION";
+    private static final String ADD_HISTORY_PARTITION_SQL = "ALTER TABLE reservations_history REORGANIZE PARTITION pfuture INTO "
+            + "(PARTITION p%1$d VALUES LESS THAN (%2$d), PARTITION pfuture VALUES LESS THAN MAXVALUE)";
+    private static final String EXCHANGE_HISTORY_PARTITION_SQL = "ALTER TABLE reservations_history EXCHANGE PARTITION p%d WITH TABLE reservations_archiving";
+    private static final String DROP_HISTORY_PARTITIONS_SQL = "ALTER TABLE reservations_history DROP PARTITION %s";
+    private static final String ARCHIVE_CHUNK_SQL = "INSERT INTO reservations_history (reservationId, roomId, studentId, weekDay, startTime, endTime, position, version, weekId) "
+            + "SELECT reservationId, roomId, studentId, weekDay, startTime, endTime, position, version, weekId FROM reservations_archiving WHERE reservationId <= ?";
+    private static final String DELETE_ARCHIVED_CHUNK_SQL = "DELETE FROM reservations_archiving WHERE reservationId <= ?";
+    private static final String DROP_ARCHIVING_SQL = "DROP TABLE reservations_archiving";
+
+    //Maps a row of the reservations table to a Reservation
+    public static Reservation mapRow(ResultSet resultSet) throws SQLException
     {
-        Connection connection = DatabaseUtils.getConnection();
-        Statement statement = connection.createStatement();
-
-        ResultSet resultSet = statement.executeQuery("SELECT * FROM reservations");
-
-        return resultSet;
+        int reservationId = resultSet.getInt("reservationId");
+        int roomId = resultSet.getInt("roomId");
+        int studentId = resultSet.getInt("studentId");
+        Day weekDay = Day.fromCode(resultSet.getInt("weekDay"));
+        int startTime = resultSet.getInt("startTime");
+        int endTime = resultSet.getInt("endTime");
+        int position = resultSet.getInt("position");
+
+        Reservation reservation = new Reservation(reservationId, roomId, studentId, weekDay, startTime, endTime, position);
+        reservation.setVersion(resultSet.getInt("version"));
+        reservation.setWeekId(resultSet.getInt("weekId"));
+        return reservation;
     }
 
-    public static ResultSet find(int reservationId) throws ClassNotFoundException, SQLException
+    public static ArrayList<Reservation> findAll() throws ClassNotFoundException, SQLException
     {
-        Connection connection = DatabaseUtils.getConnection();
-        Statement statement = connection.createStatement();
-
-        ResultSet resultSet = statement.executeQuery("SELECT * FROM reservations WHERE reservationId = " + reservationId);
-
-        return resultSet;
+        return DatabaseUtils.query(FIND_ALL_SQL, ReservationTDG::mapRow);
     }
 
-    public static ResultSet findProceedingWaitlist(Reservation reservation) throws ClassNotFoundException, SQLException
+    //Reads the whole table through a cursor, handing each row to the consumer as it arrives. Returns the number of rows.
+    public static int streamAll(int fetchSize, Consumer<Reservation> consumer) throws ClassNotFoundException, SQLException
     {
-        Connection connection = DatabaseUtils.getConnection();
-        Statement statement = connection.createStatement();
-
-        ResultSet resultSet = statement.executeQuery("SELECT * FROM reservations WHERE roomId = " + reservation.getRoomId() + " && weekDay = \"" + reservation.getDay() + "\" && startTime = " + reservation.getStartTime() + " && endTime = " + reservation.getEndTime() + " && position > " + reservation.getPosition());
-
-        return resultSet;
+        return DatabaseUtils.stream(FIND_ALL_SQL, fetchSize, ReservationTDG::mapRow, consumer);
     }
 
-    public static ResultSet findInRange(String day, int startTime, int endTime, int roomId) throws ClassNotFoundException, SQLException
+    //Id, version and week of every row, without reading the other columns
+    public static ArrayList<int[]> findVersions() throws ClassNotFoundException, SQLException
     {
-        Connection connection = DatabaseUtils.getConnection();
-        Statement statement = connection.createStatement();
-
-        ResultSet resultSet = statement.executeQuery("SELECT * FROM reservations WHERE roomId = " + roomId + " && weekDay = \"" + day + "\" && startTime = " + startTime + " && endTime = " + endTime);
-
-        return resultSet;
+        return DatabaseUtils.query(FIND_VERSIONS_SQL, resultSet -> new int[]{resultSet.getInt(1), resultSet.getInt(2), resultSet.getInt(3)});
     }
 
-    public static void intitializeIdCounter() throws ClassNotFoundException, SQLException
+    public static ArrayList<Reservation> findByIds(List<Integer> ids) throws ClassNotFoundException, SQLException
     {
-        Connection connection = DatabaseUtils.getConnection();
-        Statement statement = connection.createStatement();
-
-        ResultSet results = statement.executeQuery("SELECT * FROM reservations");
-        int id = getMaxId(results) + 1;
+        return DatabaseUtils.queryByIds(FIND_BY_IDS_SQL, ReservationTDG::mapRow, ids);
+    }
 
-        Reservation.setIdCounter(id);
+    public static Reservation find(int reservationId) throws ClassNotFoundException, SQLException
+    {
+        return DatabaseUtils.queryForObject(FIND_SQL, ReservationTDG::mapRow, reservationId);
+    }
 
-        statement.close();
-        connection.close();
-        results.close();
+    public static ArrayList<Reservation> findProceedingWaitlist(Reservation reservation) throws ClassNotFoundException, SQLException
+    {
+        return DatabaseUtils.query(FIND_PROCEEDING_WAITLIST_SQL, ReservationTDG::mapRow, reservation.getRoomId(), reservation.getDayOfWeek().getCode(), reservation.getStartTime(), reservation.getEndTime(), reservation.getPosition());
     }
 
-    private static int getMaxId(ResultSet results) throws SQLException
+    public static ArrayList<Reservation> findInRange(Day day, int startTime, int endTime, int roomId) throws ClassNotFoundException, SQLException
     {
-        int max = 0;
-        while(results.next())
-        {
-            int resId = results.getInt("reservationId");
-            int resRoomId = results.getInt("roomId");
-            int studentId = results.getInt("studentId");
-            String weekDay = results.getString("weekDay");
-            int startTime = results.getInt("startTime");
-            int endTime = results.getInt("endTime");
-            int position = results.getInt("position");
-
-            ReservationIdentityMap.addRes(new Reservation(resId, resRoomId, studentId, weekDay, startTime, endTime, position));
-
-            if(resId > max)
-                max = resId;
-        }
-        return max;
+        return DatabaseUtils.query(FIND_IN_RANGE_SQL, ReservationTDG::mapRow, roomId, day.getCode(), startTime, endTime);
     }
 
-    public static void insert(ArrayList<Reservation> newReservations) throws ClassNotFoundException, SQLException
+    //The write methods below run on the caller's connection so that the UnitOfWork can commit them in one transaction.
+    //Each list is sent as a single JDBC batch.
+
+    public static void insert(Connection connection, ArrayList<Reservation> newReservations) throws SQLException
     {
         if(newReservations.size() > 0)
         {
-            Connection connection = DatabaseUtils.getConnection();
-            Statement statement = connection.createStatement();
+            PreparedStatement statement = connection.prepareStatement(INSERT_SQL);
 
             try
             {
                 for(Reservation reservation : newReservations)
                 {
-                    statement.executeUpdate("INSERT INTO reservations " + "VALUES ( " + reservation.getId() + "," + reservation.getRoomId() + "," + reservation.getStudentId() + ", '" + reservation.getDay() + "','" + reservation.getStartTime() + "','" + reservation.getEndTime() + "'," + reservation.getPosition() + ")");
+                    DatabaseUtils.setParameters(statement, reservation.getId(), reservation.getRoomId(), reservation.getStudentId(), reservation.getDayOfWeek().getCode(), reservation.getStartTime(), reservation.getEndTime(), reservation.getPosition(), reservation.getVersion(), reservation.getWeekId());
+                    statement.addBatch();
                 }
+                executeBatch(statement);
             }
             finally
             {
                 statement.close();
-                connection.close();
             }
         }
     }
 
-    public static void update(ArrayList<Reservation> dirtyReservations) throws ClassNotFoundException, SQLException
+    public static void update(Connection connection, ArrayList<Reservation> dirtyReservations) throws SQLException
     {
         if(dirtyReservations.size() > 0)
         {
-            Connection connection = DatabaseUtils.getConnection();
-            Statement statement = connection.createStatement();
+            PreparedStatement statement = connection.prepareStatement(UPDATE_SQL);
             try
             {
                 for(Reservation reservation : dirtyReservations)
                 {
-                    statement.executeUpdate("UPDATE reservations " + "SET roomId = " + reservation.getRoomId() + ", studentId = " + reservation.getStudentId() + ", weekDay = '" + reservation.getDay() + "', startTime = '" + reservation.getStartTime() + "', endTime = '" + reservation.getEndTime() + "', position = " + reservation.getPosition() + " WHERE reservationId = " + reservation.getId());
+                    DatabaseUtils.setParameters(statement, reservation.getRoomId(), reservation.getStudentId(), reservation.getDayOfWeek().getCode(), reservation.getStartTime(), reservation.getEndTime(), reservation.getPosition(), reservation.getId(), reservation.getVersion());
+                    statement.addBatch();
                 }
+                DatabaseUtils.checkVersionedBatch(executeBatch(statement), dirtyReservations, "reservations");
+                DatabaseUtils.incrementVersions(dirtyReservations);
             }
             finally
             {
                 statement.close();
-                connection.close();
             }
         }
     }
 
-    public static void delete(ArrayList<Reservation> removedReservations) throws ClassNotFoundException, SQLException
+    //Moves everyone behind each removed reservation up one spot in its waitlist with one set-based UPDATE per removed reservation,
+    //instead of one UPDATE per waitlisted row. The shifts must run in the order the reservations were removed, each one after
+    //the DELETE of its reservation: the rows move up in position order, one at a time, into the position it freed, since the
+    //(roomId, weekDay, startTime, position, weekId) key is unique.
+    //Each shifted row gets a new version; ReservationMapper bumps the versions of the instances it moved in memory the same way.
+    //The shift itself is not version checked: the version-checked DELETE of the removed reservation in the same transaction is.
+    public static void shiftWaitlists(Connection connection, ArrayList<Reservation> removedReservations) throws SQLException
     {
         if(removedReservations.size() > 0)
         {
-            Connection connection = DatabaseUtils.getConnection();
-            Statement statement = connection.createStatement();
+            PreparedStatement statement = connection.prepareStatement(SHIFT_WAITLIST_SQL);
             try
             {
                 for(Reservation reservation : removedReservations)
                 {
-                    statement.executeUpdate("DELETE FROM reservations " + "WHERE reservationId = " + reservation.getId());
+                    DatabaseUtils.setParameters(statement, reservation.getRoomId(), reservation.getDayOfWeek().getCode(), reservation.getStartTime(), reservation.getEndTime(), reservation.getPosition());
+                    statement.addBatch();
                 }
+                executeBatch(statement);
             }
             finally
             {
                 statement.close();
-                connection.close();
             }
         }
     }
 
-    public static ResultSet getAllResOfStudent(int studID) throws ClassNotFoundException, SQLException
+    public static void delete(Connection connection, ArrayList<Reservation> removedReservations) throws SQLException
     {
-        Connection connection = DatabaseUtils.getConnection();
-        Statement statement = connection.createStatement();
+        if(removedReservations.size() > 0)
+        {
+            PreparedStatement statement = connection.prepareStatement(DELETE_SQL);
+            try
+            {
+                for(Reservation reservation : removedReservations)
+                {
+                    DatabaseUtils.setParameters(statement, reservation.getId(), reservation.getVersion());
+                    statement.addBatch();
+                }
+                DatabaseUtils.checkVersionedBatch(statement.executeBatch(), removedReservations, "reservations");
+            }
+            finally
+            {
+                statement.close();
+            }
+        }
+    }
 
-        ResultSet resultSet = statement.executeQuery("SELECT * FROM reservations WHERE studentId = " + studID);
+    public static ArrayList<Reservation> getAllResOfStudent(int studID) throws ClassNotFoundException, SQLException
+    {
+        return DatabaseUtils.query(FIND_BY_STUDENT_SQL, ReservationTDG::mapRow, studID);
+    }
 
-        return resultSet;
+    public static ArrayList<Reservation> getFullReservationsForDay(Day weekDay) throws ClassNotFoundException, SQLException
+    {
+        return DatabaseUtils.query(FIND_FULL_FOR_DAY_SQL, ReservationTDG::mapRow, weekDay.getCode());
+    }
+
+    //Replaces the reservations table with an empty copy and keeps the old one as reservations_archiving.
+    //RENAME TABLE swaps both names in one atomic step, so no statement ever sees a missing or half emptied table, and unlike a
+    //DELETE of the whole table it does not hold row locks on every reservation while it runs.
+    public static void swapInEmptyWeek() throws ClassNotFoundException, SQLException
+    {
+        //Left behind if a previous swap failed between the two statements
+        DatabaseUtils.update(DROP_NEXT_WEEK_SQL);
+        DatabaseUtils.update(CREATE_NEXT_WEEK_SQL);
+        DatabaseUtils.update(SWAP_WEEK_SQL);
+    }
+
+    //True if a swapped out week still has to be archived, which is also the case when an earlier archival stopped halfway
+    public static boolean hasWeekToArchive() throws ClassNotFoundException, SQLException
+    {
+        return !DatabaseUtils.query(FIND_ARCHIVING_SQL, resultSet -> resultSet.getString(1)).isEmpty();
     }
 
-    public static ResultSet getFullReservationsForDay(String weekDay) throws ClassNotFoundException, SQLException
+    //Moves the chunkSize lowest reservation ids of the swapped out week to reservations_history in one short transaction.
+    //Returns the number of reservations moved, 0 once the week is fully archived. Moved rows are deleted from
+    //reservations_archiving in the same transaction, so an archival that fails can resume from where it stopped.
+    public static int archiveChunk(int chunkSize) throws ClassNotFoundException, SQLException
     {
         Connection connection = DatabaseUtils.getConnection();
-        Statement statement = connection.createStatement();
 
-        ResultSet resultSet = statement.executeQuery("SELECT * FROM reservations WHERE weekDay = \"" + weekDay + "\" && position = 0");
+        try
+        {
+            connection.setAutoCommit(false);
+
+            try
+            {
+                Integer chunkEnd = findArchiveChunkEnd(connection, chunkSize);
+                if(chunkEnd == null)
+                {
+                    connection.commit();
+                    return 0;
+                }
+
+                executeUpdate(connection, ARCHIVE_CHUNK_SQL, chunkEnd);
+                int moved = executeUpdate(connection, DELETE_ARCHIVED_CHUNK_SQL, chunkEnd);
+
+                connection.commit();
+                return moved;
+            }
+            catch(SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+
+    public static void dropArchivedWeek() throws ClassNotFoundException, SQLException
+    {
+        DatabaseUtils.update(DROP_ARCHIVING_SQL);
+    }
 
-        return resultSet;
+    //Lowest weekId, highest weekId and number of rows of the swapped out week, or null if it has no rows
+    public static int[] findArchivingWeeks() throws ClassNotFoundException, SQLException
+    {
+        return DatabaseUtils.queryForObject(FIND_ARCHIVING_WEEKS_SQL, resultSet ->
+        {
+            int rows = resultSet.getInt(3);
+            return rows == 0 ? null : new int[]{resultSet.getInt(1), resultSet.getInt(2), rows};
+        });
     }
 
-    public static void reset() throws ClassNotFoundException, SQLException
+    //The weekly partitions of reservations_history, in ascending order
+    private static ArrayList<HistoryPartition> findHistoryPartitions() throws ClassNotFoundException, SQLException
     {
-        Connection connection = DatabaseUtils.getConnection();
-        Statement statement = connection.createStatement();
+        return DatabaseUtils.query(FIND_HISTORY_PARTITIONS_SQL, resultSet -> new HistoryPartition(resultSet.getString(1), resultSet.getInt(2)));
+    }
+
+    //True if the week can get a partition of its own: every existing weekly partition only holds older weeks
+    public static boolean canExchangeIntoHistory(int weekId) throws ClassNotFoundException, SQLException
+    {
+        ArrayList<HistoryPartition> partitions = findHistoryPartitions();
+        return partitions.isEmpty() || partitions.get(partitions.size() - 1).endWeekId <= weekId;
+    }
+
+    //Makes the swapped out table the week's partition of reservations_history, without copying any row. The table must only
+    //hold rows of that week and canExchangeIntoHistory must be true. The partition is split off pfuture, which the
+    //chunked fallback is the only one to ever fill, so the split is normally free.
+    //Afterwards reservations_archiving holds the new partition's previous content, which is empty.
+    public static void exchangeIntoHistory(int weekId) throws ClassNotFoundException, SQLException
+    {
+        DatabaseUtils.update(String.format(ADD_HISTORY_PARTITION_SQL, weekId, weekId + 1));
+        DatabaseUtils.update(String.format(EXCHANGE_HISTORY_PARTITION_SQL, weekId));
+    }
+
+    //Drops the history of every week before the given one that has a partition of its own. Returns the number of partitions dropped.
+    public static int dropHistoryBefore(int weekId) throws ClassNotFoundException, SQLException
+    {
+        ArrayList<String> expired = new ArrayList<String>();
+        for(HistoryPartition partition : findHistoryPartitions())
+        {
+            if(partition.endWeekId <= weekId)
+                expired.add(partition.name);
+        }
 
-        statement.executeUpdate("DELETE FROM reservations");
+        if(!expired.isEmpty())
+            DatabaseUtils.update(String.format(DROP_HISTORY_PARTITIONS_SQL, String.join(", ", expired)));
+
+        return expired.size();
+    }
+
+    //Highest id among the next chunkSize reservations to archive, or null if none are left
+    private static Integer findArchiveChunkEnd(Connection connection, int chunkSize) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement(ARCHIVE_CHUNK_END_SQL);
+
+        try
+        {
+            statement.setInt(1, chunkSize);
+            ResultSet resultSet = statement.executeQuery();
+
+            try
+            {
+                resultSet.next();
+                int chunkEnd = resultSet.getInt(1);
+
+                return resultSet.wasNull() ? null : chunkEnd;
+            }
+            finally
+            {
+                resultSet.close();
+            }
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    //A duplicate (roomId, weekDay, startTime, position, weekId) means another server gave the same position in the slot from
+    //its own occupancy index
+    // @throws ConcurrencyFailureException if a statement of the batch hit the unique slot position key
+    private static int[] executeBatch(PreparedStatement statement) throws SQLException
+    {
+        try
+        {
+            return statement.executeBatch();
+        }
+        catch(SQLException e)
+        {
+            DatabaseUtils.checkDuplicateKey(e, "reservations");
+            throw e;
+        }
+    }
+
+    private static int executeUpdate(Connection connection, String sql, Object... parameters) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement(sql);
+
+        try
+        {
+            DatabaseUtils.setParameters(statement, parameters);
+            return statement.executeUpdate();
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    //A partition of reservations_history, holding the weeks before endWeekId
+    private static class HistoryPartition
+    {
+        private final String name;
+        private final int endWeekId;
+
+        private HistoryPartition(String name, int endWeekId)
+        {
+            this.name = name;
+            this.endWeekId = endWeekId;
+        }
     }
-}
\ No newline at end of file
+}
@@ -3,10 +3,12 @@ package TDG;
 import Core.Room;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Created by dias on 2016-10-26.
@@ -14,87 +16,119 @@ import java.util.ArrayList;
 
 public class RoomsTDG
 {
-    public static ResultSet findAll() throws ClassNotFoundException, SQLException
+    public static final String FIND_ALL_SQL = "SELECT * FROM rooms";
+    private static final String FIND_VERSIONS_SQL = "SELECT roomId, version FROM rooms";
+    private static final String FIND_BY_IDS_SQL = "SELECT * FROM rooms WHERE roomId IN (%s)";
+    public static final String FIND_SQL = "SELECT * FROM rooms WHERE roomId = ?";
+    private static final String INSERT_SQL = "INSERT INTO rooms (roomId, roomNumber, description, roomSize, version) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE rooms SET roomNumber = ?, description = ?, roomSize = ?, version = version + 1 WHERE roomId = ? AND version = ?";
+    private static final String DELETE_SQL = "DELETE FROM rooms WHERE roomNumber = ? AND version = ?";
+
+    //Maps a row of the rooms table to a Room
+    public static Room mapRow(ResultSet resultSet) throws SQLException
     {
-        Connection connection = DatabaseUtils.getConnection();
-        Statement statement = connection.createStatement();
+        int roomId = resultSet.getInt("roomId");
+        String roomNumber = resultSet.getString("roomNumber");
+        String description = resultSet.getString("description");
+        int roomSize = resultSet.getInt("roomSize");
 
-        ResultSet resultSet = statement.executeQuery("SELECT * FROM rooms");
+        Room room = new Room(roomId, roomNumber, description, roomSize);
+        room.setVersion(resultSet.getInt("version"));
+        return room;
+    }
 
-        return resultSet;
+    public static ArrayList<Room> findAll() throws ClassNotFoundException, SQLException
+    {
+        return DatabaseUtils.query(FIND_ALL_SQL, RoomsTDG::mapRow);
     }
 
-    public static ResultSet find(int roomId) throws ClassNotFoundException, SQLException
+    //Reads the whole table through a cursor, handing each row to the consumer as it arrives. Returns the number of rows.
+    public static int streamAll(int fetchSize, Consumer<Room> consumer) throws ClassNotFoundException, SQLException
     {
-        Connection connection = DatabaseUtils.getConnection();
-        Statement statement = connection.createStatement();
+        return DatabaseUtils.stream(FIND_ALL_SQL, fetchSize, RoomsTDG::mapRow, consumer);
+    }
 
-        ResultSet resultSet = statement.executeQuery("SELECT * FROM rooms WHERE roomId = " + roomId);
+    //Id and version of every row, without reading the other columns
+    public static ArrayList<int[]> findVersions() throws ClassNotFoundException, SQLException
+    {
+        return DatabaseUtils.query(FIND_VERSIONS_SQL, resultSet -> new int[]{resultSet.getInt(1), resultSet.getInt(2)});
+    }
 
-        return resultSet;
+    public static ArrayList<Room> findByIds(List<Integer> ids) throws ClassNotFoundException, SQLException
+    {
+        return DatabaseUtils.queryByIds(FIND_BY_IDS_SQL, RoomsTDG::mapRow, ids);
     }
 
-    public static void insert(ArrayList<Room> newRooms) throws ClassNotFoundException, SQLException
+    public static Room find(int roomId) throws ClassNotFoundException, SQLException
+    {
+        return DatabaseUtils.queryForObject(FIND_SQL, RoomsTDG::mapRow, roomId);
+    }
+
+    //The write methods below run on the caller's connection so that the UnitOfWork can commit them in one transaction.
+    //Each list is sent as a single JDBC batch.
+
+    public static void insert(Connection connection, ArrayList<Room> newRooms) throws SQLException
     {
         if(newRooms.size() > 0)
         {
-            Connection connection = DatabaseUtils.getConnection();
-            Statement statement = connection.createStatement();
+            PreparedStatement statement = connection.prepareStatement(INSERT_SQL);
             try
             {
                 for(Room room : newRooms)
                 {
-                    statement.executeUpdate("INSERT INTO rooms " + "VALUES ( " + room.getId() + ", '" + room.getRoomNumber() + "', '" + room.getDescription() + "'," + room.getRoomSize() + ")");
+                    DatabaseUtils.setParameters(statement, room.getId(), room.getRoomNumber(), room.getDescription(), room.getRoomSize(), room.getVersion());
+                    statement.addBatch();
                 }
+                statement.executeBatch();
             }
             finally
             {
                 statement.close();
-                connection.close();
             }
         }
     }
 
-    public static void update(ArrayList<Room> dirtyRooms) throws ClassNotFoundException, SQLException
+    public static void update(Connection connection, ArrayList<Room> dirtyRooms) throws SQLException
     {
         if(dirtyRooms.size() > 0)
         {
-            Connection connection = DatabaseUtils.getConnection();
-            Statement statement = connection.createStatement();
+            PreparedStatement statement = connection.prepareStatement(UPDATE_SQL);
 
             try
             {
                 for(Room room : dirtyRooms)
                 {
-                    statement.executeUpdate("UPDATE rooms " + "SET roomNumber = '" + room.getRoomNumber() + "', description = '" + room.getDescription() + "', roomSize = " + room.getRoomSize() + " WHERE roomId = " + room.getId());
+                    DatabaseUtils.setParameters(statement, room.getRoomNumber(), room.getDescription(), room.getRoomSize(), room.getId(), room.getVersion());
+                    statement.addBatch();
                 }
+                DatabaseUtils.checkVersionedBatch(statement.executeBatch(), dirtyRooms, "rooms");
+                DatabaseUtils.incrementVersions(dirtyRooms);
             }
             finally
             {
                 statement.close();
-                connection.close();
             }
         }
     }
 
-    public static void delete(ArrayList<Room> removedRooms) throws ClassNotFoundException, SQLException
+    public static void delete(Connection connection, ArrayList<Room> removedRooms) throws SQLException
     {
         if(removedRooms.size()>0)
         {
-            Connection connection = DatabaseUtils.getConnection();
-            Statement statement = connection.createStatement();
+            PreparedStatement statement = connection.prepareStatement(DELETE_SQL);
 
             try
             {
                 for(Room room : removedRooms)
                 {
-                    statement.executeUpdate("DELETE FROM rooms " + "WHERE roomNumber = '" + room.getRoomNumber() + "'");
+                    DatabaseUtils.setParameters(statement, room.getRoomNumber(), room.getVersion());
+                    statement.addBatch();
                 }
+                DatabaseUtils.checkVersionedBatch(statement.executeBatch(), removedRooms, "rooms");
             }
             finally
             {
                 statement.close();
-                connection.close();
             }
         }
     }
@@ -0,0 +1,11 @@
+package TDG;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+//Converts the current row of a ResultSet into an object. Used by DatabaseUtils.query so that the TDGs can
+//map their rows and close the statement and connection before handing the results to the Mappers.
+public interface RowMapper<T>
+{
+    T mapRow(ResultSet resultSet) throws SQLException;
+}
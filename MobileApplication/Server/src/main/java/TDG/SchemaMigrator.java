@@ -0,0 +1,249 @@
+package TDG;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Brings a database created from db343.sql up to date with the schema the TDGs expect. db343.sql keeps the original schema:
+//every change made to it since is a migration, so that databases created before the change are upgraded the same way.
+//Migrations are the classpath scripts db/migration/V<version>__<description>.sql, applied once each in version order and
+//recorded in the schema_version table. A script is a list of statements, each ending with a semicolon at the end of a line;
+//lines starting with -- are comments.
+//MySQL commits every DDL statement on its own, so a script that fails halfway is not rolled back: scripts should only hold
+//statements that can be fixed up by hand, and a failed script is retried from its first statement on the next start.
+public class SchemaMigrator
+{
+    private static final String MIGRATIONS = "classpath*:db/migration/V*.sql";
+    private static final Pattern MIGRATION_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    private static final String CREATE_VERSION_TABLE_SQL = "CREATE TABLE IF NOT EXISTS schema_version (version int(10) unsigned NOT NULL, "
+            + "description varchar(255) NOT NULL, appliedAt timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (version))";
+    private static final String FIND_APPLIED_SQL = "SELECT version FROM schema_version";
+    private static final String RECORD_APPLIED_SQL = "INSERT INTO schema_version (version, description) VALUES (?, ?)";
+    //Keeps servers started together from applying the same script twice
+    private static final String LOCK_SQL = "SELECT GET_LOCK('schema_migration', 60)";
+    private static final String UNLOCK_SQL = "SELECT RELEASE_LOCK('schema_migration')";
+    //Scripts run in strict mode, so that a value that does not fit its column fails the script instead of being truncated.
+    //The pooled connection gets its previous mode back afterwards.
+    private static final String SAVE_SQL_MODE_SQL = "SET @sql_mode_before_migration = @@SESSION.sql_mode";
+    private static final String STRICT_SQL_MODE_SQL = "SET SESSION sql_mode = CONCAT_WS(',', NULLIF(@@SESSION.sql_mode, ''), 'STRICT_ALL_TABLES')";
+    private static final String RESTORE_SQL_MODE_SQL = "SET SESSION sql_mode = @sql_mode_before_migration";
+
+    //Applies every migration that was not applied yet and returns how many were
+    public static int migrate() throws ClassNotFoundException, SQLException
+    {
+        ArrayList<Migration> migrations = findMigrations();
+        Connection connection = DatabaseUtils.getConnection();
+
+        try
+        {
+            if(!isTrue(connection, LOCK_SQL))
+                throw new SQLException("Timed out waiting for another server to finish migrating the schema");
+
+            execute(connection, SAVE_SQL_MODE_SQL);
+
+            try
+            {
+                execute(connection, STRICT_SQL_MODE_SQL);
+                execute(connection, CREATE_VERSION_TABLE_SQL);
+                Set<Integer> applied = findApplied(connection);
+
+                int count = 0;
+                for(Migration migration : migrations)
+                {
+                    if(applied.contains(migration.version))
+                        continue;
+
+                    apply(connection, migration);
+                    count++;
+                }
+
+                return count;
+            }
+            finally
+            {
+                execute(connection, RESTORE_SQL_MODE_SQL);
+                isTrue(connection, UNLOCK_SQL);
+            }
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+
+    private static void apply(Connection connection, Migration migration) throws SQLException
+    {
+        long start = System.nanoTime();
+
+        for(String statement : migration.statements)
+            execute(connection, statement);
+
+        PreparedStatement record = connection.prepareStatement(RECORD_APPLIED_SQL);
+
+        try
+        {
+            DatabaseUtils.setParameters(record, migration.version, migration.description);
+            record.executeUpdate();
+        }
+        finally
+        {
+            record.close();
+        }
+
+        System.out.println("Applied schema migration " + migration.version + " (" + migration.description + ") in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    private static Set<Integer> findApplied(Connection connection) throws SQLException
+    {
+        Set<Integer> applied = new HashSet<Integer>();
+        Statement statement = connection.createStatement();
+
+        try
+        {
+            ResultSet resultSet = statement.executeQuery(FIND_APPLIED_SQL);
+            while(resultSet.next())
+                applied.add(resultSet.getInt(1));
+            resultSet.close();
+        }
+        finally
+        {
+            statement.close();
+        }
+
+        return applied;
+    }
+
+    //Every migration script on the classpath, in version order
+    private static ArrayList<Migration> findMigrations() throws SQLException
+    {
+        ArrayList<Migration> migrations = new ArrayList<Migration>();
+
+        try
+        {
+            for(Resource resource : new PathMatchingResourcePatternResolver().getResources(MIGRATIONS))
+            {
+                Matcher name = MIGRATION_NAME.matcher(resource.getFilename());
+                if(!name.matches())
+                    throw new SQLException("Badly named schema migration " + resource.getFilename());
+
+                InputStream script = resource.getInputStream();
+                try
+                {
+                    String content = StreamUtils.copyToString(script, StandardCharsets.UTF_8);
+                    migrations.add(new Migration(Integer.parseInt(name.group(1)), name.group(2).replace('_', ' '), splitStatements(content)));
+                }
+                finally
+                {
+                    script.close();
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            throw new SQLException("Could not read the schema migrations", e);
+        }
+
+        migrations.sort(Comparator.comparingInt(migration -> migration.version));
+
+        for(int i = 1; i < migrations.size(); i++)
+        {
+            if(migrations.get(i).version == migrations.get(i - 1).version)
+                throw new SQLException("Two schema migrations have version " + migrations.get(i).version);
+        }
+
+        return migrations;
+    }
+
+    private static ArrayList<String> splitStatements(String script)
+    {
+        ArrayList<String> statements = new ArrayList<String>();
+        StringBuilder current = new StringBuilder();
+
+        for(String line : script.split("\\r?\\n"))
+        {
+            String trimmed = line.trim();
+            if(trimmed.isEmpty() || trimmed.startsWith("--"))
+                continue;
+
+            if(current.length() > 0)
+                current.append('\n');
+            current.append(line);
+
+            if(trimmed.endsWith(";"))
+            {
+                statements.add(current.substring(0, current.lastIndexOf(";")).trim());
+                current.setLength(0);
+            }
+        }
+
+        if(current.toString().trim().length() > 0)
+            statements.add(current.toString().trim());
+
+        return statements;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException
+    {
+        Statement statement = connection.createStatement();
+
+        try
+        {
+            statement.execute(sql);
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    //Runs a query returning a single flag, such as GET_LOCK, and tells whether it was 1
+    private static boolean isTrue(Connection connection, String sql) throws SQLException
+    {
+        Statement statement = connection.createStatement();
+
+        try
+        {
+            ResultSet resultSet = statement.executeQuery(sql);
+            boolean result = resultSet.next() && resultSet.getInt(1) == 1;
+            resultSet.close();
+
+            return result;
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    private static class Migration
+    {
+        private final int version;
+        private final String description;
+        private final ArrayList<String> statements;
+
+        private Migration(int version, String description, ArrayList<String> statements)
+        {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package TDG;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+//Table data gateway for id_sequences, the shared counters used by Mapper.BlockIdAllocator
+public class SequenceTDG
+{
+    //LAST_INSERT_ID(expr) stores the incremented value for this connection, so the end of the block is read back without a
+    //second query and without another server being able to move the counter in between
+    private static final String RESERVE_BLOCK_SQL = "UPDATE id_sequences SET nextId = LAST_INSERT_ID(nextId + ?) WHERE name = ?";
+    private static final String LAST_INSERT_ID_SQL = "SELECT LAST_INSERT_ID()";
+    private static final String RAISE_SQL = "INSERT INTO id_sequences (name, nextId) VALUES (?, ?) ON DUPLICATE KEY UPDATE nextId = GREATEST(nextId, VALUES(nextId))";
+
+    //Moves the sequence forward by blockSize and returns its new value: the caller owns the ids [value - blockSize, value)
+    public static int reserveBlock(String name, int blockSize) throws ClassNotFoundException, SQLException
+    {
+        Connection connection = DatabaseUtils.getConnection();
+
+        try
+        {
+            PreparedStatement statement = connection.prepareStatement(RESERVE_BLOCK_SQL, Statement.RETURN_GENERATED_KEYS);
+
+            try
+            {
+                DatabaseUtils.setParameters(statement, blockSize, name);
+                if(statement.executeUpdate() == 0)
+                    throw new SQLException("No id sequence named " + name);
+
+                //The driver reports the LAST_INSERT_ID of the update as its generated key
+                ResultSet generatedKeys = statement.getGeneratedKeys();
+                try
+                {
+                    if(generatedKeys.next())
+                        return generatedKeys.getInt(1);
+                }
+                finally
+                {
+                    generatedKeys.close();
+                }
+            }
+            finally
+            {
+                statement.close();
+            }
+
+            return readLastInsertId(connection);
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+
+    private static int readLastInsertId(Connection connection) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement(LAST_INSERT_ID_SQL);
+
+        try
+        {
+            ResultSet resultSet = statement.executeQuery();
+            resultSet.next();
+            int value = resultSet.getInt(1);
+            resultSet.close();
+
+            return value;
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    //Creates the sequence if needed and makes sure its next value is at least minimum. Never moves it back.
+    public static void raiseTo(String name, int minimum) throws ClassNotFoundException, SQLException
+    {
+        DatabaseUtils.update(RAISE_SQL, name, minimum);
+    }
+}
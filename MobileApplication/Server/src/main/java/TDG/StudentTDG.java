@@ -3,10 +3,12 @@ package TDG;
 import Core.Student;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Created by dias on 2016-10-25.
@@ -14,89 +16,120 @@ import java.util.ArrayList;
 
 public class StudentTDG
 {
-    public static ResultSet findAll() throws SQLException, ClassNotFoundException
+    public static final String FIND_ALL_SQL = "SELECT * FROM students";
+    private static final String FIND_VERSIONS_SQL = "SELECT username, version FROM students";
+    private static final String FIND_BY_IDS_SQL = "SELECT * FROM students WHERE username IN (%s)";
+    public static final String FIND_SQL = "SELECT * FROM students WHERE username = ?";
+    private static final String INSERT_SQL = "INSERT INTO students (username, FullName, password, version) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE students SET FullName = ?, password = ?, version = version + 1 WHERE username = ? AND version = ?";
+    private static final String DELETE_SQL = "DELETE FROM students WHERE username = ? AND version = ?";
+
+    //Maps a row of the students table to a Student
+    public static Student mapRow(ResultSet resultSet) throws SQLException
     {
-        Connection connection = DatabaseUtils.getConnection();
-        Statement statement = connection.createStatement();
+        int username = resultSet.getInt("username");
+        String name = resultSet.getString("FullName");
+        String password = resultSet.getString("password");
 
-        ResultSet resultSet = statement.executeQuery("SELECT * FROM students");
+        Student student = new Student(username, name, password);
+        student.setVersion(resultSet.getInt("version"));
+        return student;
+    }
 
-        return resultSet;
+    public static ArrayList<Student> findAll() throws SQLException, ClassNotFoundException
+    {
+        return DatabaseUtils.query(FIND_ALL_SQL, StudentTDG::mapRow);
     }
 
-    public static ResultSet find(int studentId) throws SQLException, ClassNotFoundException
+    //Reads the whole table through a cursor, handing each row to the consumer as it arrives. Returns the number of rows.
+    public static int streamAll(int fetchSize, Consumer<Student> consumer) throws ClassNotFoundException, SQLException
     {
-        Connection connection = DatabaseUtils.getConnection();
-        Statement statement = connection.createStatement();
+        return DatabaseUtils.stream(FIND_ALL_SQL, fetchSize, StudentTDG::mapRow, consumer);
+    }
 
-        ResultSet resultSet = statement.executeQuery("SELECT * FROM students WHERE username = " + studentId);
+    //Id and version of every row, without reading the other columns
+    public static ArrayList<int[]> findVersions() throws ClassNotFoundException, SQLException
+    {
+        return DatabaseUtils.query(FIND_VERSIONS_SQL, resultSet -> new int[]{resultSet.getInt(1), resultSet.getInt(2)});
+    }
 
-        return resultSet;
+    public static ArrayList<Student> findByIds(List<Integer> ids) throws ClassNotFoundException, SQLException
+    {
+        return DatabaseUtils.queryByIds(FIND_BY_IDS_SQL, StudentTDG::mapRow, ids);
     }
 
-    public static void insert(ArrayList<Student> newStudents) throws SQLException, ClassNotFoundException
+    public static Student find(int studentId) throws SQLException, ClassNotFoundException
+    {
+        return DatabaseUtils.queryForObject(FIND_SQL, StudentTDG::mapRow, studentId);
+    }
+
+    //The write methods below run on the caller's connection so that the UnitOfWork can commit them in one transaction.
+    //Each list is sent as a single JDBC batch.
+
+    public static void insert(Connection connection, ArrayList<Student> newStudents) throws SQLException
     {
         if(newStudents.size() > 0)
         {
-            Connection connection = DatabaseUtils.getConnection();
-            Statement statement = connection.createStatement();
+            PreparedStatement statement = connection.prepareStatement(INSERT_SQL);
 
             try
             {
                 for(Student student : newStudents)
                 {
-                    statement.executeUpdate("INSERT INTO students(username, FullName, password) VALUES (" + student.getId() + ",'" + student.getName() + "', '" + student.getPassword() + "');");
+                    DatabaseUtils.setParameters(statement, student.getId(), student.getName(), student.getPassword(), student.getVersion());
+                    statement.addBatch();
                 }
+                statement.executeBatch();
             }
             finally
             {
                 statement.close();
-                connection.close();
             }
         }
     }
 
-    public static void update(ArrayList<Student> dirtyStudents) throws SQLException, ClassNotFoundException
+    public static void update(Connection connection, ArrayList<Student> dirtyStudents) throws SQLException
     {
         if(dirtyStudents.size() > 0)
         {
-            Connection connection = DatabaseUtils.getConnection();
-            Statement statement = connection.createStatement();
+            PreparedStatement statement = connection.prepareStatement(UPDATE_SQL);
 
             try
             {
                 for(Student student : dirtyStudents)
                 {
-                    statement.executeUpdate("UPDATE students SET FullName = '" + student.getName() + "', password = '" + student.getPassword() + "' WHERE username = " + student.getId() + "");
+                    DatabaseUtils.setParameters(statement, student.getName(), student.getPassword(), student.getId(), student.getVersion());
+                    statement.addBatch();
                 }
+                DatabaseUtils.checkVersionedBatch(statement.executeBatch(), dirtyStudents, "students");
+                DatabaseUtils.incrementVersions(dirtyStudents);
             }
             finally
             {
                 statement.close();
-                connection.close();
             }
         }
     }
 
-    public static void delete(ArrayList<Student> removedStudents) throws SQLException, ClassNotFoundException
+    public static void delete(Connection connection, ArrayList<Student> removedStudents) throws SQLException
     {
         if(removedStudents.size() > 0)
         {
-            Connection connection = DatabaseUtils.getConnection();
-            Statement statement = connection.createStatement();
+            PreparedStatement statement = connection.prepareStatement(DELETE_SQL);
 
             try
             {
                 for(Student student : removedStudents)
                 {
-                    statement.executeUpdate("DELETE FROM students WHERE username = " + student.getId());
+                    DatabaseUtils.setParameters(statement, student.getId(), student.getVersion());
+                    statement.addBatch();
                 }
+                DatabaseUtils.checkVersionedBatch(statement.executeBatch(), removedStudents, "students");
             }
             finally
             {
                 statement.close();
-                connection.close();
             }
         }
     }
-}
+}
\ No newline at end of file
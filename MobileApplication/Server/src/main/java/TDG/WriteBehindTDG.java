@@ -0,0 +1,38 @@
+package TDG;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+//Table data gateway for write_behind_checkpoint, the sequence number of the last commit of UnitOfWork.WriteBehind's log that
+//was written to the database
+public class WriteBehindTDG
+{
+    private static final String FIND_SQL = "SELECT flushedSequence FROM write_behind_checkpoint WHERE id = 1";
+    private static final String UPDATE_SQL = "UPDATE write_behind_checkpoint SET flushedSequence = ? WHERE id = 1";
+
+    public static long findFlushedSequence() throws ClassNotFoundException, SQLException
+    {
+        Long sequence = DatabaseUtils.queryForObject(FIND_SQL, resultSet -> resultSet.getLong(1));
+        if(sequence == null)
+            throw new SQLException("The write_behind_checkpoint table has no row");
+
+        return sequence;
+    }
+
+    //Runs on the connection of the transaction writing the commits, so that the checkpoint moves only if they are written
+    public static void setFlushedSequence(Connection connection, long sequence) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement(UPDATE_SQL);
+
+        try
+        {
+            DatabaseUtils.setParameters(statement, sequence);
+            statement.executeUpdate();
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+}
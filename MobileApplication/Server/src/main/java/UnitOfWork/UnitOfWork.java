@@ -4,9 +4,9 @@ package UnitOfWork;
  * Created by Emili on 2016-10-26.
  */
 
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Iterator;
 
 import Core.DomainObject;
 import Core.Reservation;
@@ -16,59 +16,184 @@ import Core.Student;
 import Mapper.RoomMapper;
 import Mapper.ReservationMapper;
 import Mapper.StudentMapper;
+import TDG.DatabaseUtils;
 
 public class UnitOfWork
 {
+    //Every thread (so every request) records its changes in its own UnitOfWork. Concurrent requests never see or
+    //commit each other's pending changes, so the lists do not need to be protected by the Mapper locks.
+    private static final ThreadLocal<UnitOfWork> currentUnitOfWork = new ThreadLocal<UnitOfWork>();
 
-    private static ArrayList<DomainObject> newObjects = new ArrayList();
-    private static ArrayList<DomainObject> dirtyObjects = new ArrayList();
-    private static ArrayList<DomainObject> removedObjects = new ArrayList();
+    private final ArrayList<DomainObject> newObjects = new ArrayList<DomainObject>();
+    private final ArrayList<DomainObject> dirtyObjects = new ArrayList<DomainObject>();
+    private final ArrayList<DomainObject> removedObjects = new ArrayList<DomainObject>();
+    private final ArrayList<Reservation> waitlistShifts = new ArrayList<Reservation>();
 
+    //Returns the UnitOfWork bound to the calling thread, starting a new one if there is none
+    public static UnitOfWork getCurrent()
+    {
+        UnitOfWork unitOfWork = currentUnitOfWork.get();
+        if(unitOfWork == null)
+        {
+            unitOfWork = new UnitOfWork();
+            currentUnitOfWork.set(unitOfWork);
+        }
+        return unitOfWork;
+    }
 
     public static void registerNew(DomainObject client)
     {
-        if(existsInLists(client))
+        UnitOfWork unitOfWork = getCurrent();
+
+        if(unitOfWork.existsInLists(client))
             throw new IllegalArgumentException("Object already exists in one or more of the UnitOfWork lists");
 
-        newObjects.add(client);
+        unitOfWork.newObjects.add(client);
     }
 
-    private static boolean existsInLists(DomainObject client)
+    private boolean existsInLists(DomainObject client)
     {
         return (dirtyObjects.contains(client) || removedObjects.contains(client) || newObjects.contains(client));
     }
 
     public static void registerDirty(DomainObject obj)
     {
-        if(removedObjects.contains(obj))
+        UnitOfWork unitOfWork = getCurrent();
+
+        if(unitOfWork.removedObjects.contains(obj))
             throw new IllegalArgumentException("Object already exists in the removed objects list");
 
-        if(!dirtyObjects.contains(obj) && !newObjects.contains(obj))
+        if(!unitOfWork.dirtyObjects.contains(obj) && !unitOfWork.newObjects.contains(obj))
         {
-            dirtyObjects.add(obj);
+            unitOfWork.dirtyObjects.add(obj);
         }
     }
 
     public static void registerDelete(DomainObject obj)
     {
-        if(newObjects.remove(obj))
+        UnitOfWork unitOfWork = getCurrent();
+
+        if(unitOfWork.newObjects.remove(obj))
             return;
-        dirtyObjects.remove(obj);
+        unitOfWork.dirtyObjects.remove(obj);
 
-        if(!removedObjects.contains(obj))
+        if(!unitOfWork.removedObjects.contains(obj))
         {
-            removedObjects.add(obj);
+            unitOfWork.removedObjects.add(obj);
         }
     }
 
+    //Registers a reservation that is being removed from its waitlist, so that every reservation behind it moves up one position on commit
+    public static void registerWaitlistShift(Reservation removedReservation)
+    {
+        getCurrent().waitlistShifts.add(removedReservation);
+    }
+
+    public boolean hasPendingChanges()
+    {
+        return !(newObjects.isEmpty() && dirtyObjects.isEmpty() && removedObjects.isEmpty() && waitlistShifts.isEmpty());
+    }
+
+    //Writes every change registered by the calling thread in a single transaction, one JDBC batch per table and phase, and ends its UnitOfWork.
+    //In write-behind mode, changes to reservations only are appended to the WriteBehind log instead, and written later.
+    //If the transaction fails it is rolled back and the changes stay pending, so the caller can decide how to recover and then call rollback().
     public static void commit() throws ClassNotFoundException, SQLException
     {
-        newSave();
-        updateDirty();
-        deleteRemoved();
+        UnitOfWork unitOfWork = currentUnitOfWork.get();
+        if(unitOfWork == null)
+            return;
+
+        if(unitOfWork.hasPendingChanges())
+        {
+            if(WriteBehind.isEnabled() && unitOfWork.onlyReservations())
+            {
+                WriteBehind.commit(unitOfWork.waitlistShifts, reservations(unitOfWork.newObjects), reservations(unitOfWork.dirtyObjects), reservations(unitOfWork.removedObjects));
+            }
+            else
+            {
+                //Written after the logged reservation changes, which the transaction may depend on
+                WriteBehind.awaitFlushed();
+                unitOfWork.writeChanges();
+            }
+        }
+
+        currentUnitOfWork.remove();
+    }
+
+    //Ends the calling thread's UnitOfWork without writing anything.
+    //Returns true if there were pending changes, meaning that the in-memory objects they touched no longer match the database.
+    public static boolean rollback()
+    {
+        UnitOfWork unitOfWork = currentUnitOfWork.get();
+        currentUnitOfWork.remove();
+
+        return unitOfWork != null && unitOfWork.hasPendingChanges();
+    }
+
+    private boolean onlyReservations()
+    {
+        return reservations(newObjects).size() == newObjects.size() && reservations(dirtyObjects).size() == dirtyObjects.size()
+                && reservations(removedObjects).size() == removedObjects.size();
+    }
+
+    private static ArrayList<Reservation> reservations(ArrayList<DomainObject> objects)
+    {
+        ArrayList<Reservation> reservations = new ArrayList<Reservation>(objects.size());
+        for(DomainObject object : objects)
+        {
+            if(object instanceof Reservation)
+                reservations.add((Reservation) object);
+        }
+
+        return reservations;
     }
 
-    public static void newSave() throws ClassNotFoundException, SQLException
+    //Reservations are removed and their waitlists shifted first, so that the absolute positions written for new and dirty
+    //reservations are not shifted again and never meet a row still holding them
+    private void writeChanges() throws ClassNotFoundException, SQLException
+    {
+        Connection connection = DatabaseUtils.getConnection();
+
+        try
+        {
+            connection.setAutoCommit(false);
+
+            try
+            {
+                removeReservations(connection);
+                newSave(connection);
+                updateDirty(connection);
+                deleteRemoved(connection);
+
+                connection.commit();
+            }
+            catch(SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            catch(RuntimeException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+
+    private void removeReservations(Connection connection) throws SQLException
+    {
+        ReservationMapper.removeFromDB(connection, waitlistShifts, reservations(removedObjects));
+    }
+
+    private void newSave(Connection connection) throws SQLException
     {
         ArrayList<Room> newRooms = new ArrayList<Room>();
         ArrayList<Student> newStudents = new ArrayList<Student>();
@@ -88,14 +213,12 @@ public class UnitOfWork
                 newStudents.add((Student) object);
             }
         }
-        RoomMapper.saveToDB(newRooms);
-        ReservationMapper.saveToDB(newReservations);
-        StudentMapper.saveToDB(newStudents);
-
-        newObjects.clear();
+        RoomMapper.saveToDB(connection, newRooms);
+        ReservationMapper.saveToDB(connection, newReservations);
+        StudentMapper.saveToDB(connection, newStudents);
     }
 
-    public static void updateDirty() throws ClassNotFoundException, SQLException
+    private void updateDirty(Connection connection) throws SQLException
     {
         ArrayList<Room> dirtyRooms = new ArrayList<Room>();
         ArrayList<Student> dirtyStudents = new ArrayList<Student>();
@@ -116,39 +239,29 @@ public class UnitOfWork
             }
         }
 
-        RoomMapper.updateToDB(dirtyRooms);
-        ReservationMapper.updateToDB(dirtyReservations);
-        StudentMapper.updateToDB(dirtyStudents);
-
-        dirtyObjects.clear();
+        RoomMapper.updateToDB(connection, dirtyRooms);
+        ReservationMapper.updateToDB(connection, dirtyReservations);
+        StudentMapper.updateToDB(connection, dirtyStudents);
     }
 
-    public static void deleteRemoved() throws ClassNotFoundException, SQLException
+    private void deleteRemoved(Connection connection) throws SQLException
     {
         ArrayList<Room> removedRooms = new ArrayList<Room>();
         ArrayList<Student> removedStudents = new ArrayList<Student>();
-        ArrayList<Reservation> removedReservations = new ArrayList<Reservation>();
         for(DomainObject object : removedObjects)
         {
             if(object instanceof Room)
             {
                 removedRooms.add((Room) object);
             }
-            else if(object instanceof Reservation)
-            {
-                removedReservations.add((Reservation) object);
-            }
             else if(object instanceof Student)
             {
                 removedStudents.add((Student) object);
             }
         }
 
-        RoomMapper.deleteToDB(removedRooms);
-        ReservationMapper.deleteToDB(removedReservations);
-        StudentMapper.deleteToDB(removedStudents);
-
-        removedObjects.clear();
+        RoomMapper.deleteToDB(connection, removedRooms);
+        StudentMapper.deleteToDB(connection, removedStudents);
     }
 
 }
@@ -0,0 +1,248 @@
+package UnitOfWork;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+
+//Append-only log of numbered records in memory-mapped segment files of segmentSize bytes, used by WriteBehind.
+//A record is its payload length, its sequence number, the CRC32 of its payload and the payload. Segments are named after the
+//sequence number of their first record. Reading stops at the first record that is empty, fails its checksum or is out of
+//sequence, which is where a crash cut the log short.
+//append() only copies the record into the mapped segment; sync() forces it to disk, and one force covers every record appended
+//before it, so commits running at the same time share the cost of the flush.
+public class WriteAheadLog
+{
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_SIZE = 4 + 8 + 4;
+
+    private final File directory;
+    private final int segmentSize;
+    private final Deque<Segment> segments = new ArrayDeque<Segment>();
+
+    private MappedByteBuffer current;
+    private long lastSequence;
+
+    //Guarded by syncLock; the buffer and sequence to force are read under the log's own lock
+    private final Object syncLock = new Object();
+    private volatile long syncedSequence;
+
+    public static class Entry
+    {
+        private final long sequence;
+        private final byte[] payload;
+
+        private Entry(long sequence, byte[] payload)
+        {
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+
+        public long getSequence()
+        {
+            return sequence;
+        }
+
+        public byte[] getPayload()
+        {
+            return payload;
+        }
+    }
+
+    private static class Segment
+    {
+        private final File file;
+        private final long firstSequence;
+
+        private Segment(File file, long firstSequence)
+        {
+            this.file = file;
+            this.firstSequence = firstSequence;
+        }
+    }
+
+    //Opens the log in the directory, creating it if needed. Records already there are kept for read() until restartAfter().
+    public WriteAheadLog(File directory, int segmentSize) throws IOException
+    {
+        if(!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Could not create the write-ahead log directory " + directory);
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        Arrays.sort(files);
+
+        for(File file : files)
+        {
+            long firstSequence = Long.parseLong(file.getName().substring(PREFIX.length(), file.getName().length() - SUFFIX.length()));
+            segments.add(new Segment(file, firstSequence));
+        }
+
+        for(Entry entry : read(0))
+            lastSequence = entry.sequence;
+        syncedSequence = lastSequence;
+    }
+
+    //Sequence number of the last record, 0 if there is none
+    public synchronized long getLastSequence()
+    {
+        return lastSequence;
+    }
+
+    //Deletes every segment and numbers the next records from the given sequence number + 1, or from the last record's if that
+    //is higher. Called once every record in the log is in the database.
+    public synchronized void restartAfter(long sequence) throws IOException
+    {
+        while(!segments.isEmpty())
+        {
+            File file = segments.removeFirst().file;
+            if(!file.delete())
+                throw new IOException("Could not delete the write-ahead log segment " + file);
+        }
+
+        lastSequence = Math.max(lastSequence, sequence);
+        syncedSequence = lastSequence;
+        current = null;
+    }
+
+    //Records with a sequence number above the given one, oldest first
+    public synchronized List<Entry> read(long afterSequence) throws IOException
+    {
+        List<Entry> entries = new ArrayList<Entry>();
+        long expected = -1;
+
+        for(Segment segment : segments)
+        {
+            if(expected >= 0 && segment.firstSequence != expected)
+                break;
+
+            ByteBuffer buffer = map(segment.file, FileChannel.MapMode.READ_ONLY, segment.file.length());
+            expected = segment.firstSequence;
+
+            while(buffer.remaining() >= HEADER_SIZE)
+            {
+                int length = buffer.getInt();
+                long sequence = buffer.getLong();
+                int checksum = buffer.getInt();
+
+                if(length <= 0 || length > buffer.remaining() || sequence != expected)
+                    break;
+
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                if(checksum != checksum(payload))
+                    break;
+
+                if(sequence > afterSequence)
+                    entries.add(new Entry(sequence, payload));
+                expected++;
+            }
+        }
+
+        return entries;
+    }
+
+    //Copies the record into the log and returns its sequence number. It is only durable once sync() returns for that number.
+    public synchronized long append(byte[] payload) throws IOException
+    {
+        if(HEADER_SIZE + payload.length > segmentSize)
+            throw new IOException("A record of " + payload.length + " bytes does not fit in a segment of " + segmentSize + " bytes");
+
+        long sequence = lastSequence + 1;
+
+        if(current == null || current.remaining() < HEADER_SIZE + payload.length)
+        {
+            //Forced before it is dropped, so that forcing the newest segment is enough to make every record durable
+            if(current != null)
+                current.force();
+            current = createSegment(sequence);
+        }
+
+        current.putInt(payload.length);
+        current.putLong(sequence);
+        current.putInt(checksum(payload));
+        current.put(payload);
+
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    //Forces the records up to the given sequence number to disk, if another call did not already
+    public void sync(long sequence)
+    {
+        synchronized(syncLock)
+        {
+            if(syncedSequence >= sequence)
+                return;
+
+            MappedByteBuffer buffer;
+            long upTo;
+            synchronized(this)
+            {
+                buffer = current;
+                upTo = lastSequence;
+            }
+
+            if(buffer != null)
+                buffer.force();
+            syncedSequence = upTo;
+        }
+    }
+
+    //Deletes the segments whose records all have a sequence number up to the given one. The newest segment is kept.
+    public synchronized void truncate(long upToSequence) throws IOException
+    {
+        while(segments.size() > 1)
+        {
+            Segment oldest = segments.removeFirst();
+            if(segments.peekFirst().firstSequence > upToSequence + 1)
+            {
+                segments.addFirst(oldest);
+                return;
+            }
+
+            if(!oldest.file.delete())
+                throw new IOException("Could not delete the write-ahead log segment " + oldest.file);
+        }
+    }
+
+    private MappedByteBuffer createSegment(long firstSequence) throws IOException
+    {
+        File file = new File(directory, String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+        MappedByteBuffer buffer = map(file, FileChannel.MapMode.READ_WRITE, segmentSize);
+
+        segments.addLast(new Segment(file, firstSequence));
+        return buffer;
+    }
+
+    //The mapping stays valid once the channel is closed
+    private static MappedByteBuffer map(File file, FileChannel.MapMode mode, long size) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw");
+        try
+        {
+            return randomAccessFile.getChannel().map(mode, 0, size);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    private static int checksum(byte[] payload)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,410 @@
+package UnitOfWork;
+
+import Config.ServerProperties;
+import Core.Day;
+import Core.Reservation;
+import Mapper.ReservationMapper;
+import TDG.DatabaseUtils;
+import TDG.WriteBehindTDG;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+//Opt-in write-behind mode (write-behind.enabled) in which the in-memory reservations are the reference: a UnitOfWork holding
+//only reservation changes is committed as soon as they are appended to the WriteAheadLog in write-behind.directory and forced to
+//disk. A background thread then writes the logged commits to MySQL in order, up to write-behind.batch-size of them per
+//transaction, and moves the write_behind_checkpoint to the last one in that same transaction, so each commit is written exactly
+//once. On startup, recover() writes the commits logged after the checkpoint before anything is loaded from the database.
+//Readers of the reservations table call awaitFlushed() first so that they never see it behind memory.
+//It assumes a single server (id-allocator.strategy=local) and an identity map that holds every reservation of the week.
+//A batch failing on a transient error (lost connection, deadlock) is retried. Any other failure, such as a version conflict or a
+//constraint violation, would fail the same way forever, so it stops write-behind: the commits stay in the log, new commits and
+//readers waiting for the flush fail, and the next start retries them in recover() once the cause is fixed.
+public class WriteBehind
+{
+    private static final int DEFAULT_SEGMENT_SIZE_MB = 16;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int DEFAULT_MAX_PENDING = 100000;
+    private static final int DEFAULT_FLUSH_TIMEOUT_SECONDS = 30;
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final boolean enabled = ServerProperties.getBoolean("write-behind.enabled", false);
+    private static final int batchSize = Math.max(1, ServerProperties.getInt("write-behind.batch-size", DEFAULT_BATCH_SIZE));
+    private static final long flushTimeoutMillis = TimeUnit.SECONDS.toMillis(ServerProperties.getInt("write-behind.flush-timeout-seconds", DEFAULT_FLUSH_TIMEOUT_SECONDS));
+
+    //Set by recover() when enabled; null means commits are written directly
+    private static volatile WriteAheadLog log;
+
+    //Logged commits in sequence order, each holding a permit until it is written, so that at most write-behind.max-pending wait
+    private static final BlockingQueue<LoggedCommit> pending = new LinkedBlockingQueue<LoggedCommit>();
+    private static final Semaphore pendingPermits = new Semaphore(ServerProperties.getInt("write-behind.max-pending", DEFAULT_MAX_PENDING));
+
+    //Guards the two sequence numbers below and is notified every time flushedSequence moves
+    private static final Object flushLock = new Object();
+    private static long loggedSequence;
+    private static long flushedSequence;
+    //Set when a batch failed for good; the flusher has stopped
+    private static volatile Exception flushFailure;
+
+    //The changes of one UnitOfWork, in the order they are written
+    private static class LoggedCommit
+    {
+        private final long sequence;
+        private final ArrayList<Reservation> shifts;
+        private final ArrayList<Reservation> created;
+        private final ArrayList<Reservation> updated;
+        private final ArrayList<Reservation> removed;
+
+        private LoggedCommit(long sequence, ArrayList<Reservation> shifts, ArrayList<Reservation> created, ArrayList<Reservation> updated, ArrayList<Reservation> removed)
+        {
+            this.sequence = sequence;
+            this.shifts = shifts;
+            this.created = created;
+            this.updated = updated;
+            this.removed = removed;
+        }
+    }
+
+    public static boolean isEnabled()
+    {
+        return log != null;
+    }
+
+    //Writes the commits logged after the database's checkpoint, left by a previous run that stopped before writing them, then
+    //starts logging new commits if write-behind is enabled. Must run before the reservations are loaded from the database.
+    public static synchronized void recover() throws ClassNotFoundException, SQLException, IOException
+    {
+        String idStrategy = ServerProperties.getString("id-allocator.strategy", "local");
+        if(enabled && !idStrategy.equals("local"))
+            throw new IllegalArgumentException("write-behind.enabled needs id-allocator.strategy=local but it is " + idStrategy
+                    + ": another server would not see the reservations waiting in this server's log");
+
+        File directory = new File(ServerProperties.getString("write-behind.directory", "wal"));
+        if(log != null || (!enabled && !directory.isDirectory()))
+            return;
+
+        WriteAheadLog recoveredLog = new WriteAheadLog(directory, ServerProperties.getInt("write-behind.segment-size-mb", DEFAULT_SEGMENT_SIZE_MB) << 20);
+        long checkpoint = WriteBehindTDG.findFlushedSequence();
+
+        List<LoggedCommit> batch = new ArrayList<LoggedCommit>(batchSize);
+        int recovered = 0;
+        for(WriteAheadLog.Entry entry : recoveredLog.read(checkpoint))
+        {
+            batch.add(decode(entry.getSequence(), entry.getPayload()));
+            if(batch.size() == batchSize)
+            {
+                write(batch);
+                recovered += batch.size();
+                batch.clear();
+            }
+        }
+        if(!batch.isEmpty())
+        {
+            write(batch);
+            recovered += batch.size();
+        }
+
+        if(recovered > 0)
+            System.out.println("Write-behind recovery wrote " + recovered + " logged commits to the database.");
+
+        recoveredLog.restartAfter(checkpoint);
+
+        if(!enabled)
+            return;
+
+        synchronized(flushLock)
+        {
+            loggedSequence = recoveredLog.getLastSequence();
+            flushedSequence = loggedSequence;
+        }
+        log = recoveredLog;
+
+        Thread flusher = new Thread(WriteBehind::flushLoop, "write-behind-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    //Appends the reservation changes to the log and returns once they are on disk. The database versions of the updated
+    //reservations are bumped in memory as the UPDATE will do it.
+    static void commit(ArrayList<Reservation> shifts, ArrayList<Reservation> created, ArrayList<Reservation> updated, ArrayList<Reservation> removed) throws SQLException
+    {
+        checkFlushing();
+        byte[] payload = encode(shifts, created, updated, removed);
+
+        try
+        {
+            if(!pendingPermits.tryAcquire(flushTimeoutMillis, TimeUnit.MILLISECONDS))
+                throw new SQLException("Too many commits are waiting to be written to the database.");
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for room in the write-behind log", e);
+        }
+
+        long sequence;
+        try
+        {
+            //Appended and queued together so that the queue keeps the order of the log
+            synchronized(flushLock)
+            {
+                sequence = log.append(payload);
+                loggedSequence = sequence;
+                pending.add(decode(sequence, payload));
+            }
+        }
+        catch(IOException e)
+        {
+            pendingPermits.release();
+            throw new SQLException("Could not append to the write-behind log", e);
+        }
+
+        log.sync(sequence);
+        DatabaseUtils.incrementVersions(updated);
+    }
+
+    //Waits until every commit logged so far is in the database
+    // @throws SQLException if they are not written within write-behind.flush-timeout-seconds
+    public static void awaitFlushed() throws SQLException
+    {
+        if(log == null)
+            return;
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushTimeoutMillis);
+
+        synchronized(flushLock)
+        {
+            long target = loggedSequence;
+
+            try
+            {
+                while(flushedSequence < target)
+                {
+                    checkFlushing();
+
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if(remaining <= 0)
+                        throw new SQLException("Timed out waiting for the write-behind log to be written to the database.");
+
+                    flushLock.wait(remaining);
+                }
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for the write-behind log", e);
+            }
+        }
+    }
+
+    //Commits appended to the log that are not in the database yet
+    public static int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    public static long getFlushedSequence()
+    {
+        synchronized(flushLock)
+        {
+            return flushedSequence;
+        }
+    }
+
+    // @throws SQLException if the flusher stopped on a batch that cannot be written
+    private static void checkFlushing() throws SQLException
+    {
+        Exception failure = flushFailure;
+        if(failure != null)
+            throw new SQLException("Write-behind stopped after failing to write a logged commit: " + failure.getMessage(), failure);
+    }
+
+    //Writes the queued commits batch by batch for as long as the server runs. A batch failing on a transient error is retried,
+    //waiting longer each time, since the ones after it cannot be written before it. Any other failure stops the flusher.
+    private static void flushLoop()
+    {
+        List<LoggedCommit> batch = new ArrayList<LoggedCommit>(batchSize);
+
+        while(true)
+        {
+            try
+            {
+                batch.add(pending.take());
+                pending.drainTo(batch, batchSize - 1);
+            }
+            catch(InterruptedException e)
+            {
+                return;
+            }
+
+            long retryDelay = 100;
+            while(true)
+            {
+                try
+                {
+                    write(batch);
+                    break;
+                }
+                catch(Exception e)
+                {
+                    String commits = "commits " + batch.get(0).sequence + " to " + batch.get(batch.size() - 1).sequence;
+                    if(!DatabaseUtils.isTransient(e))
+                    {
+                        System.out.println("Error: write-behind stopped, " + commits + " cannot be written to the database: " + e
+                                + ". They stay in the log and are retried at the next start; reservation changes fail until then.");
+                        synchronized(flushLock)
+                        {
+                            flushFailure = e;
+                            flushLock.notifyAll();
+                        }
+                        return;
+                    }
+
+                    System.out.println("Error: write-behind could not write " + commits + ", retrying: " + e.getMessage());
+                }
+
+                try
+                {
+                    Thread.sleep(retryDelay);
+                }
+                catch(InterruptedException e)
+                {
+                    return;
+                }
+                retryDelay = Math.min(2 * retryDelay, MAX_RETRY_DELAY_MILLIS);
+            }
+
+            long sequence = batch.get(batch.size() - 1).sequence;
+            synchronized(flushLock)
+            {
+                flushedSequence = sequence;
+                flushLock.notifyAll();
+            }
+            pendingPermits.release(batch.size());
+            batch.clear();
+
+            try
+            {
+                log.truncate(sequence);
+            }
+            catch(IOException e)
+            {
+                System.out.println("Error: write-behind could not delete a log segment: " + e.getMessage());
+            }
+        }
+    }
+
+    //Writes the commits and moves the checkpoint in one transaction, each commit in the order UnitOfWork uses
+    private static void write(List<LoggedCommit> commits) throws ClassNotFoundException, SQLException
+    {
+        Connection connection = DatabaseUtils.getConnection();
+
+        try
+        {
+            connection.setAutoCommit(false);
+
+            try
+            {
+                for(LoggedCommit commit : commits)
+                {
+                    ReservationMapper.removeFromDB(connection, commit.shifts, commit.removed);
+                    ReservationMapper.saveToDB(connection, commit.created);
+                    ReservationMapper.updateToDB(connection, commit.updated);
+                }
+                WriteBehindTDG.setFlushedSequence(connection, commits.get(commits.size() - 1).sequence);
+
+                connection.commit();
+            }
+            catch(SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            catch(RuntimeException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+
+    //Each list is its size followed by its reservations, with every column of the reservations table
+    private static byte[] encode(ArrayList<Reservation> shifts, ArrayList<Reservation> created, ArrayList<Reservation> updated, ArrayList<Reservation> removed)
+    {
+        int count = shifts.size() + created.size() + updated.size() + removed.size();
+        ByteBuffer buffer = ByteBuffer.allocate(4 * 4 + count * (8 * 4 + 1));
+
+        encodeList(buffer, shifts);
+        encodeList(buffer, created);
+        encodeList(buffer, updated);
+        encodeList(buffer, removed);
+
+        return buffer.array();
+    }
+
+    private static void encodeList(ByteBuffer buffer, ArrayList<Reservation> reservations)
+    {
+        buffer.putInt(reservations.size());
+
+        for(Reservation reservation : reservations)
+        {
+            buffer.putInt(reservation.getId());
+            buffer.putInt(reservation.getRoomId());
+            buffer.putInt(reservation.getStudentId());
+            buffer.put(reservation.getDayOfWeek().getCode());
+            buffer.putInt(reservation.getStartTime());
+            buffer.putInt(reservation.getEndTime());
+            buffer.putInt(reservation.getPosition());
+            buffer.putInt(reservation.getVersion());
+            buffer.putInt(reservation.getWeekId());
+        }
+    }
+
+    //New instances, never the ones of the identity map, so the flusher writes the values as they were logged
+    private static LoggedCommit decode(long sequence, byte[] payload)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        return new LoggedCommit(sequence, decodeList(buffer), decodeList(buffer), decodeList(buffer), decodeList(buffer));
+    }
+
+    private static ArrayList<Reservation> decodeList(ByteBuffer buffer)
+    {
+        int size = buffer.getInt();
+        ArrayList<Reservation> reservations = new ArrayList<Reservation>(size);
+
+        for(int i = 0; i < size; i++)
+        {
+            int id = buffer.getInt();
+            int roomId = buffer.getInt();
+            int studentId = buffer.getInt();
+            Day day = Day.fromCode(buffer.get());
+            int startTime = buffer.getInt();
+            int endTime = buffer.getInt();
+            int position = buffer.getInt();
+
+            Reservation reservation = new Reservation(id, roomId, studentId, day, startTime, endTime, position);
+            reservation.setVersion(buffer.getInt());
+            reservation.setWeekId(buffer.getInt());
+            reservations.add(reservation);
+        }
+
+        return reservations;
+    }
+}
@@ -1,11 +1,13 @@
 package com.server;
 
+import Mapper.ResourceVersions;
 import Mapper.RoomMapper;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.WebRequest;
 
-import java.sql.SQLException;
 
 /**
  * Created by dias on 16-10-28.
@@ -15,11 +17,17 @@ import java.sql.SQLException;
 @RestController
 public class AllRoomsController {
 
+    private static final DatabaseExecutor.Bulkhead bulkhead = DatabaseExecutor.bulkhead("rooms");
+
+    //Answers 304 Not Modified, without reading the rooms, when the client sends the ETag of the current list in If-None-Match
     @RequestMapping(value = "/rooms", method = RequestMethod.GET,produces = "application/json")
-    public Object[] getAllRooms() throws SQLException, ClassNotFoundException
+    public DeferredResult<Object[]> getAllRooms(WebRequest request)
     {
+        if(request.checkNotModified(ResourceVersions.roomsTag()))
+            return null;
+
         //I don't like working with arrays, but it works much better with JSON.
         //This should be converted back to an ArrayList on the front end.
-        return RoomMapper.getAllData().toArray();
+        return DatabaseExecutor.submit(bulkhead, () -> RoomMapper.getAllData().toArray());
     }
 }
@@ -8,28 +8,33 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
-import java.sql.SQLException;
 
 @RestController
 public class AuthenticationController {
 
+    private static final DatabaseExecutor.Bulkhead bulkhead = DatabaseExecutor.bulkhead("login");
+
     @RequestMapping(value = "/login", method = RequestMethod.GET,produces = "application/json")
-    public boolean login(@RequestParam(value="username", defaultValue="") String username, @RequestParam(value="password", defaultValue="") String password) throws ClassNotFoundException, SQLException
+    public DeferredResult<Boolean> login(@RequestParam(value="username", defaultValue="") String username, @RequestParam(value="password", defaultValue="") String password)
     {
         if(!areValidFormat(username, password))
-            return false;
+            return DatabaseExecutor.completed(false);
 
-        password = Student.encryptPassword(password);
+        String encryptedPassword = Student.encryptPassword(password);
 
         //if log in info correct
         int studentId = Integer.parseInt(username);
-        Student student = StudentMapper.getData(studentId);
-        if(!isValidPassword(student, password))
-            return false;
-
-        //SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, password));
-        return true;
+        return DatabaseExecutor.submit(bulkhead, () ->
+        {
+            Student student = StudentMapper.getData(studentId);
+            if(!isValidPassword(student, encryptedPassword))
+                return false;
+
+            //SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, password));
+            return true;
+        });
     }
 
     /**
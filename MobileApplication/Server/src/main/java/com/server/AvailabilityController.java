@@ -0,0 +1,88 @@
+package com.server;
+
+import Core.Day;
+import Core.Reservation;
+import Mapper.ReservationMapper;
+import Mapper.RoomMapper;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.sql.SQLException;
+
+//End points answering which rooms and hours are still free, so that clients do not have to fetch every reservation of a day
+//and work it out themselves.
+//The parameters are checked on the request thread. Once the reservation and room indexes are in memory the searches are
+//answered there as well; only a search that has to load them from the database first is run on the DatabaseExecutor.
+@RestController
+public class AvailabilityController
+{
+    private static final DatabaseExecutor.Bulkhead bulkhead = DatabaseExecutor.bulkhead("availability");
+
+    //A search reading only the in-memory indexes once they are loaded
+    private interface Search
+    {
+        int[] run() throws ClassNotFoundException, SQLException;
+    }
+
+    //End point that returns the ids of the rooms with no reservation from startTime up to endTime on the given day
+    // @throws IllegalArgumentException if the day or the time range is invalid
+    @RequestMapping(value = "/availableRooms", method = RequestMethod.GET, produces = "application/json")
+    public DeferredResult<int[]> getAvailableRooms(@RequestParam(value="day", defaultValue="") String day, @RequestParam(value="startTime", defaultValue="0") int startTime, @RequestParam(value="endTime", defaultValue="0") int endTime) throws SQLException, ClassNotFoundException, IllegalArgumentException
+    {
+        Day weekDay = Day.parse(day);
+        if(weekDay == null || !Reservation.validTime(startTime) || !Reservation.validTime(endTime) || endTime <= startTime)
+            throw new IllegalArgumentException("One of more of the parameters are invalid.");
+
+        return answer(() -> ReservationMapper.findFreeRooms(weekDay, startTime, endTime));
+    }
+
+    //End point that returns the ids of the rooms free from startTime up to endTime on the given day that hold at least
+    //minSize people, optionally only those of one library ("LB" or "VL", the prefix of the room number)
+    // @throws IllegalArgumentException if the day, the time range or the size is invalid
+    @RequestMapping(value = "/rooms/available", method = RequestMethod.GET, produces = "application/json")
+    public DeferredResult<int[]> searchAvailableRooms(@RequestParam(value="day", defaultValue="") String day, @RequestParam(value="startTime", defaultValue="0") int startTime, @RequestParam(value="endTime", defaultValue="0") int endTime, @RequestParam(value="minSize", defaultValue="0") int minSize, @RequestParam(value="library", defaultValue="") String library) throws SQLException, ClassNotFoundException, IllegalArgumentException
+    {
+        Day weekDay = Day.parse(day);
+        if(weekDay == null || !Reservation.validTime(startTime) || !Reservation.validTime(endTime) || endTime <= startTime || minSize < 0)
+            throw new IllegalArgumentException("One of more of the parameters are invalid.");
+
+        return answer(() -> ReservationMapper.findFreeRooms(weekDay, startTime, endTime, library.isEmpty() ? null : library, minSize));
+    }
+
+    //End point that returns the start times of the hours the given room is free on the given day
+    // @throws IllegalArgumentException if the room or the day is invalid
+    @RequestMapping(value = "/roomAvailability", method = RequestMethod.GET, produces = "application/json")
+    public DeferredResult<int[]> getRoomAvailability(@RequestParam(value="roomId", defaultValue="") int roomId, @RequestParam(value="day", defaultValue="") String day) throws SQLException, ClassNotFoundException, IllegalArgumentException
+    {
+        Day weekDay = Day.parse(day);
+        if(weekDay == null)
+            throw new IllegalArgumentException("One of more of the parameters are invalid.");
+
+        //The room is looked up in the room search index, so an unknown room fails on the request thread once it is loaded
+        return answer(() ->
+        {
+            if(!RoomMapper.hasRoom(roomId))
+                throw new IllegalArgumentException("One of more of the parameters are invalid.");
+
+            return ReservationMapper.findFreeHours(roomId, weekDay);
+        });
+    }
+
+    private static boolean indexesLoaded()
+    {
+        return ReservationMapper.indexesLoaded() && RoomMapper.searchIndexLoaded();
+    }
+
+    //Runs the search on the request thread when the indexes are loaded, otherwise on the executor since it reads the database.
+    //In the rare case a write invalidates an index in between, the search reloads it itself on the request thread.
+    private static DeferredResult<int[]> answer(Search search) throws ClassNotFoundException, SQLException
+    {
+        if(indexesLoaded())
+            return DatabaseExecutor.completed(search.run());
+
+        return DatabaseExecutor.submit(bulkhead, search::run);
+    }
+}
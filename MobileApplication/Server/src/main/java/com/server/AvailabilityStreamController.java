@@ -0,0 +1,214 @@
+package com.server;
+
+import Config.ServerProperties;
+import Mapper.ReservationChangeFeed;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Server-sent events end point streaming the slot changes of Mapper.ReservationChangeFeed, so that clients update
+//the rooms and reservations they show instead of fetching them again every time a screen opens.
+//Connections are asynchronous and hold no thread while idle. They are spread over changes.stream-threads shards, each
+//written by one thread of a pool of that size when the feed has new changes, and receive a comment every
+//changes.heartbeat-seconds so that connections closed by the client are noticed and dropped.
+//Event ids are "epoch:sequence"; a client reconnecting with Last-Event-ID gets the changes it missed, or a "resync" event
+//if they are no longer available (the server restarted or the client was away too long) and it must reload everything.
+@RestController
+public class AvailabilityStreamController
+{
+    private static final int DEFAULT_STREAM_THREADS = 2;
+    private static final int DEFAULT_HEARTBEAT_SECONDS = 25;
+    private static final int DEFAULT_STREAM_TIMEOUT_SECONDS = 1800;
+    private static final String START = "start";
+    private static final String RESYNC = "resync";
+
+    private final Shard[] shards = new Shard[Math.max(1, ServerProperties.getInt("changes.stream-threads", DEFAULT_STREAM_THREADS))];
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final Runnable feedListener = this::dispatchAll;
+
+    private ExecutorService dispatchers;
+    private ScheduledExecutorService heartbeat;
+
+    @PostConstruct
+    public void start()
+    {
+        for(int i = 0; i < shards.length; i++)
+            shards[i] = new Shard();
+
+        dispatchers = Executors.newFixedThreadPool(shards.length);
+        heartbeat = Executors.newSingleThreadScheduledExecutor();
+
+        int heartbeatSeconds = ServerProperties.getInt("changes.heartbeat-seconds", DEFAULT_HEARTBEAT_SECONDS);
+        heartbeat.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+
+        ReservationChangeFeed.addListener(feedListener);
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        ReservationChangeFeed.removeListener(feedListener);
+        heartbeat.shutdownNow();
+        dispatchers.shutdownNow();
+
+        for(Shard shard : shards)
+        {
+            for(Subscriber subscriber : shard.subscribers)
+                subscriber.emitter.complete();
+        }
+    }
+
+    //End point that streams every slot change from the one after lastEventId, or from now on if there is none.
+    //The Last-Event-ID header sent by EventSource clients when reconnecting takes precedence over the parameter.
+    @RequestMapping(value = "/availabilityStream", method = RequestMethod.GET, produces = "text/event-stream")
+    public SseEmitter streamAvailability(@RequestHeader(value="Last-Event-ID", required=false) String lastEventIdHeader, @RequestParam(value="lastEventId", defaultValue="") String lastEventId)
+    {
+        SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(ServerProperties.getInt("changes.stream-timeout-seconds", DEFAULT_STREAM_TIMEOUT_SECONDS)));
+        Shard shard = shards[(nextShard.getAndIncrement() & Integer.MAX_VALUE) % shards.length];
+
+        String resumeFrom = lastEventIdHeader != null ? lastEventIdHeader : lastEventId;
+        long resumeAfter = parseSequence(resumeFrom);
+        Subscriber subscriber = new Subscriber(emitter, resumeAfter < 0 ? ReservationChangeFeed.getLastSequence() : resumeAfter);
+
+        emitter.onCompletion(() -> shard.subscribers.remove(subscriber));
+        emitter.onTimeout(() -> shard.subscribers.remove(subscriber));
+        shard.subscribers.add(subscriber);
+
+        //Tells the client where it starts, so that it can resume from there even if nothing changes before it reconnects,
+        //and whether the changes it asked for are lost
+        if(resumeAfter < 0)
+            subscriber.send(SseEmitter.event().id(eventId(subscriber.lastSent)).name(resumeFrom.isEmpty() ? START : RESYNC).data(""), shard);
+
+        subscriber.sendPending(shard);
+        return emitter;
+    }
+
+    //Sequence number of an event id of this run of the server, or -1 if there is none
+    private static long parseSequence(String eventId)
+    {
+        String prefix = ReservationChangeFeed.getEpoch() + ":";
+        if(eventId == null || !eventId.startsWith(prefix))
+            return -1;
+
+        try
+        {
+            return Long.parseLong(eventId.substring(prefix.length()));
+        }
+        catch(NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    private static String eventId(long sequence)
+    {
+        return ReservationChangeFeed.getEpoch() + ":" + sequence;
+    }
+
+    //Runs on the writer's thread: only schedules the shards that are not already scheduled
+    private void dispatchAll()
+    {
+        for(Shard shard : shards)
+        {
+            if(shard.scheduled.compareAndSet(false, true))
+                dispatchers.execute(shard::dispatch);
+        }
+    }
+
+    private void sendHeartbeats()
+    {
+        for(Shard shard : shards)
+        {
+            for(Subscriber subscriber : shard.subscribers)
+                subscriber.send(SseEmitter.event().comment(""), shard);
+        }
+    }
+
+    private static class Shard
+    {
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<Subscriber>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private void dispatch()
+        {
+            //Cleared first, so that changes appended while this runs schedule another pass
+            scheduled.set(false);
+
+            for(Subscriber subscriber : subscribers)
+                subscriber.sendPending(this);
+        }
+    }
+
+    private static class Subscriber
+    {
+        private final SseEmitter emitter;
+        private long lastSent;
+
+        private Subscriber(SseEmitter emitter, long lastSent)
+        {
+            this.emitter = emitter;
+            this.lastSent = lastSent;
+        }
+
+        //Sends the changes after the last one sent. Synchronized since the request thread, a dispatcher and the heartbeat may
+        //all write to the same connection.
+        private synchronized void sendPending(Shard shard)
+        {
+            List<ReservationChangeFeed.Change> changes = ReservationChangeFeed.changesAfter(lastSent);
+
+            if(changes == null)
+            {
+                lastSent = ReservationChangeFeed.getLastSequence();
+                send(SseEmitter.event().id(eventId(lastSent)).name(RESYNC).data(""), shard);
+                return;
+            }
+
+            for(ReservationChangeFeed.Change change : changes)
+            {
+                if(!send(SseEmitter.event().id(eventId(change.getSequence())).name(change.getType()).data(change, MediaType.APPLICATION_JSON), shard))
+                    return;
+                lastSent = change.getSequence();
+            }
+        }
+
+        //Returns false, and drops the subscriber, if the connection is gone
+        private synchronized boolean send(SseEmitter.SseEventBuilder event, Shard shard)
+        {
+            try
+            {
+                emitter.send(event);
+                return true;
+            }
+            //IllegalStateException: the emitter already completed or timed out
+            catch(IOException | IllegalStateException e)
+            {
+                shard.subscribers.remove(this);
+                try
+                {
+                    emitter.completeWithError(e);
+                }
+                catch(IllegalStateException alreadyCompleted)
+                {
+                    //Nothing left to close
+                }
+                return false;
+            }
+        }
+    }
+}
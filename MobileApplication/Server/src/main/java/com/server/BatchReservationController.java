@@ -0,0 +1,63 @@
+package com.server;
+
+import Core.Reservation;
+import Mapper.ReservationMapper;
+import Mapper.ReservationOperation;
+import Mapper.RoomMapper;
+import Mapper.StudentMapper;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.sql.SQLException;
+import java.util.List;
+
+@RestController
+public class BatchReservationController
+{
+    //A student holds at most 3 reservations and 3 waitlist entries, so a longer batch cannot be meaningful
+    private static final int MAX_OPERATIONS = 10;
+
+    private static final DatabaseExecutor.Bulkhead bulkhead = DatabaseExecutor.bulkhead("batch");
+
+    //End point that applies a list of create, modify and delete operations for the given student, in order and all at once,
+    //so that swapping slots takes one request and never leaves the student with only half of the swap.
+    //Takes a JSON array such as [{"type":"delete","reservationId":4},{"type":"create","roomId":2,"day":"monday","startTime":9,"endTime":10}]
+    //and returns the position of each created or modified reservation, 0 for the deletions.
+    // @throws IllegalArgumentException if an operation is invalid or fails, in which case none of them is applied
+    // @throws ConcurrencyFailureException if a modification expecting a reservation could only get on the waitlist
+    @RequestMapping(value = "/reservations/batch", method = RequestMethod.POST, consumes = "application/json", produces = "application/json")
+    public DeferredResult<int[]> applyBatch(@RequestParam(value="studentId", defaultValue="") int studentId, @RequestBody List<ReservationOperation> operations) throws IllegalArgumentException, ConcurrencyFailureException
+    {
+        if(operations.isEmpty() || operations.size() > MAX_OPERATIONS)
+            throw new IllegalArgumentException("One of more of the parameters are invalid.");
+
+        return DatabaseExecutor.submit(bulkhead, () ->
+        {
+            if(!StudentMapper.validStudent(studentId))
+                throw new IllegalArgumentException("One of more of the parameters are invalid.");
+
+            for(ReservationOperation operation : operations)
+            {
+                if(!validOperation(operation))
+                    throw new IllegalArgumentException("One of more of the parameters are invalid.");
+            }
+
+            return ReservationMapper.applyBatch(studentId, operations);
+        });
+    }
+
+    private boolean validOperation(ReservationOperation operation) throws ClassNotFoundException, SQLException
+    {
+        if(operation == null || operation.getType() == null)
+            return false;
+        if(operation.getType() == ReservationOperation.Type.DELETE)
+            return true;
+
+        return RoomMapper.validRoom(operation.getRoomId()) && Reservation.validDay(operation.getDay()) && Reservation.validTime(operation.getStartTime()) && Reservation.validTime(operation.getEndTime()) && operation.getEndTime() == operation.getStartTime()+1;
+    }
+}
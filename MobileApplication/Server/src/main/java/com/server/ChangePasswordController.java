@@ -8,31 +8,36 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
-import java.sql.SQLException;
 
 @RestController
 public class ChangePasswordController
 {
+    private static final DatabaseExecutor.Bulkhead bulkhead = DatabaseExecutor.bulkhead("changePassword");
+
     /**
      * End point that changes the password of the given user to the given password
      * @throws IllegalArgumentException if username or password are in an invalid format
      */
     @RequestMapping(value = "/changePassword", method = RequestMethod.POST,produces = "application/json")
-    public boolean changePassword(@RequestParam(value="username", defaultValue="") String username, @RequestParam(value="newPassword", defaultValue="") String newPassword) throws ClassNotFoundException, SQLException
+    public DeferredResult<Boolean> changePassword(@RequestParam(value="username", defaultValue="") String username, @RequestParam(value="newPassword", defaultValue="") String newPassword)
     {
         if(!areValidFormat(username, newPassword))
             throw new IllegalArgumentException("Student id or password were in an invalid format.");
 
-        newPassword = Student.encryptPassword(newPassword);
+        String encryptedPassword = Student.encryptPassword(newPassword);
 
         //if log in info correct
         int studentId = Integer.parseInt(username);
 
-        Student student = StudentMapper.getData(studentId);
+        return DatabaseExecutor.submit(bulkhead, () ->
+        {
+            Student student = StudentMapper.getData(studentId);
 
-        StudentMapper.set(student, student.getName(), newPassword);
-        return true;
+            StudentMapper.set(student, student.getName(), encryptedPassword);
+            return true;
+        });
     }
 
     /**
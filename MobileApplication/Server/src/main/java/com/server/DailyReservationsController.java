@@ -1,13 +1,15 @@
 package com.server;
 
-import Core.Reservation;
+import Core.Day;
 import Mapper.ReservationMapper;
+import Mapper.ResourceVersions;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.WebRequest;
 
-import java.sql.SQLException;
 
 /**
  * Created by dias on 16-10-28.
@@ -17,18 +19,23 @@ import java.sql.SQLException;
 @RestController
 public class DailyReservationsController {
 
+    private static final DatabaseExecutor.Bulkhead bulkhead = DatabaseExecutor.bulkhead("dailyReservations");
+
     //End point to return all reservations at position 0 on the given day
+    //Answers 304 Not Modified, without reading the reservations, when the client sends the ETag of the day in If-None-Match
     // @throws IllegalArgumentException if the week day sent is invalid
     @RequestMapping(value = "/dailyReservations", method = RequestMethod.GET,produces = "application/json")
-    public Object[] getDailyReservations(@RequestParam(value="weekDay", defaultValue="") String weekDay) throws SQLException, ClassNotFoundException, IllegalArgumentException
+    public DeferredResult<Object[]> getDailyReservations(@RequestParam(value="weekDay", defaultValue="") String weekDay, WebRequest request) throws IllegalArgumentException
     {
-        if(!Reservation.validDay(weekDay))
+        Day day = Day.parse(weekDay);
+        if(day == null)
             throw new IllegalArgumentException("Invalid day " + weekDay);
 
-        weekDay = weekDay.toLowerCase();
+        if(request.checkNotModified(ResourceVersions.dayTag(day)))
+            return null;
 
         //I don't like working with arrays, but it works much better with JSON.
         //This should be converted back to an ArrayList on the front end.
-        return ReservationMapper.getFullReservationsForDay(weekDay).toArray();
+        return DatabaseExecutor.submit(bulkhead, () -> ReservationMapper.getFullReservationsForDay(day).toArray());
     }
 }
@@ -0,0 +1,162 @@
+package com.server;
+
+import Config.ServerProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Runs the Mapper calls of the controllers off the Tomcat request threads, so that slow queries cannot use up the servlet pool
+//and requests answered from memory (304s, validation errors, availability searches once their indexes are loaded) are never
+//queued behind them.
+//Every task runs on one executor of async.db-threads threads, fewer than the connections of the pool, with at most
+//async.db-queue tasks waiting. On top of it each end point has its own Bulkhead, which bounds the requests of that end point
+//running or waiting at once (async.<end point>.max-concurrent), so one slow end point cannot take the whole executor.
+//A request turned away by either answers 503 Service Unavailable right away.
+public class DatabaseExecutor
+{
+    private static final int DEFAULT_THREADS = 40;
+    private static final int DEFAULT_QUEUE = 500;
+    private static final int DEFAULT_MAX_CONCURRENT = 20;
+    private static final int DEFAULT_TIMEOUT_SECONDS = 30;
+
+    private static final ThreadPoolExecutor executor = createExecutor();
+    private static final long timeoutMillis = TimeUnit.SECONDS.toMillis(ServerProperties.getInt("async.timeout-seconds", DEFAULT_TIMEOUT_SECONDS));
+    private static final List<Bulkhead> bulkheads = new CopyOnWriteArrayList<Bulkhead>();
+
+    //Answered with 503 when an end point or the executor has no room left for the request
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public static class BusyException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        public BusyException(String message)
+        {
+            super(message);
+        }
+    }
+
+    public static class Bulkhead
+    {
+        private final String name;
+        private final Semaphore permits;
+
+        private final int maxConcurrent;
+
+        private Bulkhead(String name, int maxConcurrent)
+        {
+            this.name = name;
+            this.permits = new Semaphore(maxConcurrent);
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public int getInProgress()
+        {
+            return maxConcurrent - permits.availablePermits();
+        }
+
+        public int getMaxConcurrent()
+        {
+            return maxConcurrent;
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor()
+    {
+        int threads = ServerProperties.getInt("async.db-threads", DEFAULT_THREADS);
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = task ->
+        {
+            Thread thread = new Thread(task, "db-executor-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(ServerProperties.getInt("async.db-queue", DEFAULT_QUEUE)), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static Bulkhead bulkhead(String endPoint)
+    {
+        Bulkhead bulkhead = new Bulkhead(endPoint, ServerProperties.getInt("async." + endPoint + ".max-concurrent", DEFAULT_MAX_CONCURRENT));
+        bulkheads.add(bulkhead);
+        return bulkhead;
+    }
+
+    public static List<Bulkhead> getBulkheads()
+    {
+        return bulkheads;
+    }
+
+    //A result that is already known, for the requests answered without the database
+    public static <T> DeferredResult<T> completed(T value)
+    {
+        DeferredResult<T> result = new DeferredResult<T>();
+        result.setResult(value);
+        return result;
+    }
+
+    //Runs the task on the executor within the end point's bulkhead. The result, or the exception the task threw, is sent
+    //once it completes; the request thread returns right away.
+    public static <T> DeferredResult<T> submit(Bulkhead bulkhead, Callable<T> task)
+    {
+        DeferredResult<T> result = new DeferredResult<T>(timeoutMillis);
+
+        if(!bulkhead.permits.tryAcquire())
+        {
+            result.setErrorResult(new BusyException("Too many " + bulkhead.name + " requests in progress."));
+            return result;
+        }
+
+        try
+        {
+            executor.execute(() ->
+            {
+                try
+                {
+                    result.setResult(task.call());
+                }
+                catch(Exception e)
+                {
+                    result.setErrorResult(e);
+                }
+                finally
+                {
+                    bulkhead.permits.release();
+                }
+            });
+        }
+        catch(RejectedExecutionException e)
+        {
+            bulkhead.permits.release();
+            result.setErrorResult(new BusyException("Too many requests waiting for the database."));
+        }
+
+        return result;
+    }
+
+    public static int getActiveCount()
+    {
+        return executor.getActiveCount();
+    }
+
+    public static int getQueueSize()
+    {
+        return executor.getQueue().size();
+    }
+}
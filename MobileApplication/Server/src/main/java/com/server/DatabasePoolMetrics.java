@@ -0,0 +1,53 @@
+package com.server;
+
+import TDG.DatabaseUtils;
+import UnitOfWork.WriteBehind;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+//Publishes the state of the TDG connection pool, of the DatabaseExecutor and of the write-behind log on the actuator /metrics endpoint
+@Component
+public class DatabasePoolMetrics implements PublicMetrics
+{
+    @Override
+    public Collection<Metric<?>> metrics()
+    {
+        Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+
+        metrics.add(new Metric<Integer>("datasource.pool.size", DatabaseUtils.getPoolSize()));
+        metrics.add(new Metric<Integer>("datasource.pool.active", DatabaseUtils.getActiveConnections()));
+        metrics.add(new Metric<Integer>("datasource.pool.idle", DatabaseUtils.getIdleConnections()));
+        metrics.add(new Metric<Integer>("datasource.pool.max", DatabaseUtils.getMaxActiveConnections()));
+        metrics.add(new Metric<Integer>("datasource.pool.waiting", DatabaseUtils.getWaitingThreads()));
+        metrics.add(new Metric<Long>("datasource.pool.borrowed", DatabaseUtils.getBorrowCount()));
+        metrics.add(new Metric<Long>("datasource.pool.borrowFailures", DatabaseUtils.getBorrowFailureCount()));
+        metrics.add(new Metric<Long>("datasource.pool.wait.totalMillis", DatabaseUtils.getTotalWaitMillis()));
+        metrics.add(new Metric<Long>("datasource.pool.wait.maxMillis", DatabaseUtils.getMaxWaitMillis()));
+
+        long hits = DatabaseUtils.getStatementCacheHits();
+        long misses = DatabaseUtils.getStatementCacheMisses();
+        metrics.add(new Metric<Long>("datasource.statementCache.hits", hits));
+        metrics.add(new Metric<Long>("datasource.statementCache.misses", misses));
+        metrics.add(new Metric<Double>("datasource.statementCache.hitRate", (hits + misses) == 0 ? 0.0 : (double) hits / (hits + misses)));
+
+        metrics.add(new Metric<Integer>("datasource.executor.active", DatabaseExecutor.getActiveCount()));
+        metrics.add(new Metric<Integer>("datasource.executor.queued", DatabaseExecutor.getQueueSize()));
+        for(DatabaseExecutor.Bulkhead bulkhead : DatabaseExecutor.getBulkheads())
+        {
+            metrics.add(new Metric<Integer>("datasource.executor.bulkhead." + bulkhead.getName() + ".inProgress", bulkhead.getInProgress()));
+            metrics.add(new Metric<Integer>("datasource.executor.bulkhead." + bulkhead.getName() + ".max", bulkhead.getMaxConcurrent()));
+        }
+
+        if(WriteBehind.isEnabled())
+        {
+            metrics.add(new Metric<Integer>("datasource.writeBehind.pending", WriteBehind.getPendingCount()));
+            metrics.add(new Metric<Long>("datasource.writeBehind.flushedSequence", WriteBehind.getFlushedSequence()));
+        }
+
+        return metrics;
+    }
+}
@@ -6,36 +6,26 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
-import java.sql.SQLException;
-import java.util.ArrayList;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @RestController
 public class DeleteReservationController {
 
+    private static final DatabaseExecutor.Bulkhead bulkhead = DatabaseExecutor.bulkhead("deleteReservation");
+
     //End point that deletes the given reservation belonging to the given student
     // @throws IllegalArgumentException if the given reservation id does not belong to the given student
     @RequestMapping(value = "/deleteReservation", method = RequestMethod.POST,produces = "application/json")
-    public boolean deleteReservation(@RequestParam(value="studentId", defaultValue="") int studentId, @RequestParam(value="reservationId", defaultValue="") int reservationId) throws ClassNotFoundException, SQLException, IllegalArgumentException
+    public DeferredResult<Boolean> deleteReservation(@RequestParam(value="studentId", defaultValue="") int studentId, @RequestParam(value="reservationId", defaultValue="") int reservationId) throws IllegalArgumentException
     {
-        Reservation reservation = getStudentReservation(studentId, reservationId);
-        if(reservation == null)
-            throw new IllegalArgumentException("Student " + studentId + " does not have the reservation " + reservationId);
-
-        ReservationMapper.erase(reservation);
-        return true;
-    }
-
-    private Reservation getStudentReservation(int studentId, int reservationId) throws ClassNotFoundException, SQLException
-    {
-        ArrayList<Reservation> reservations = ReservationMapper.getAllResOfStudent(studentId);
-
-        for(Reservation reservation: reservations)
+        return DatabaseExecutor.submit(bulkhead, () ->
         {
-            if(reservation.getId() == reservationId)
-                return reservation;
-        }
+            Reservation reservation = ReservationMapper.getResOfStudent(studentId, reservationId);
+            if(reservation == null)
+                throw new IllegalArgumentException("Student " + studentId + " does not have the reservation " + reservationId);
 
-        return null;
+            ReservationMapper.erase(reservation);
+            return true;
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.server;
+
+import IdentityMap.IdentityMapCache;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+//Publishes the size and hit rate of every identity map on the actuator /metrics endpoint
+@Component
+public class IdentityMapMetrics implements PublicMetrics
+{
+    @Override
+    public Collection<Metric<?>> metrics()
+    {
+        Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+
+        for(IdentityMapCache<?> cache : IdentityMapCache.getCaches())
+        {
+            String prefix = "identityMap." + cache.getName() + ".";
+            long hits = cache.getHits();
+            long misses = cache.getMisses();
+
+            metrics.add(new Metric<Integer>(prefix + "size", cache.size()));
+            metrics.add(new Metric<Integer>(prefix + "capacity", cache.getCapacity()));
+            metrics.add(new Metric<Long>(prefix + "hits", hits));
+            metrics.add(new Metric<Long>(prefix + "misses", misses));
+            metrics.add(new Metric<Double>(prefix + "hitRate", (hits + misses) == 0 ? 0.0 : (double) hits / (hits + misses)));
+            metrics.add(new Metric<Long>(prefix + "evictions", cache.getEvictions()));
+            metrics.add(new Metric<Long>(prefix + "expirations", cache.getExpirations()));
+        }
+
+        return metrics;
+    }
+}
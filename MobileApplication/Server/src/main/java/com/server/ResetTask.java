@@ -1,26 +1,54 @@
 package com.server;
 
+import Config.ServerProperties;
 import Mapper.ReservationMapper;
 
-import java.sql.SQLException;
 import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Sean on 2016-11-18.
  */
+//Weekly reset: swaps in an empty week, archives the old one into reservations_history (in chunks of
+//reset.archive-chunk-size reservations when it cannot be moved as a whole) and drops the history older than
+//reset.history-retention-weeks
 public class ResetTask extends TimerTask {
+    private static final int DEFAULT_ARCHIVE_CHUNK_SIZE = 1000;
+    private static final int DEFAULT_HISTORY_RETENTION_WEEKS = 52;
+
     public void run()
     {
+        int chunkSize = ServerProperties.getInt("reset.archive-chunk-size", DEFAULT_ARCHIVE_CHUNK_SIZE);
+        long start = System.nanoTime();
+
         try
         {
-            ReservationMapper.resetReservations();
-            System.out.println("Reservations reset.");
+            ReservationMapper.resetReservations(chunkSize);
+        }
+        //The swap and the in-memory reset only happen together, so the server keeps serving the current week
+        catch(Exception e)
+        {
+            System.out.println("Error: reservations could not be reset: " + e.getMessage());
+            return;
+        }
+
+        long swapped = System.nanoTime();
+        System.out.println("Reservations reset in " + TimeUnit.NANOSECONDS.toMillis(swapped - start) + " ms.");
+
+        try
+        {
+            int archived = ReservationMapper.archivePreviousWeek(chunkSize);
+            System.out.println("Archived " + archived + " reservations in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - swapped) + " ms.");
+
+            int retentionWeeks = ServerProperties.getInt("reset.history-retention-weeks", DEFAULT_HISTORY_RETENTION_WEEKS);
+            int dropped = ReservationMapper.dropExpiredHistory(retentionWeeks);
+            if(dropped > 0)
+                System.out.println("Dropped the history of " + dropped + " expired weeks.");
         }
-        //If the reset is unsuccessful, then nothing can work right, so just crash
+        //Bookings are unaffected; whatever is left is archived before the next reset swaps
         catch(Exception e)
         {
-            System.out.println("Error: " + e.getMessage());
-            System.exit(0);
+            System.out.println("Error: archiving last week's reservations stopped: " + e.getMessage());
         }
     }
 }
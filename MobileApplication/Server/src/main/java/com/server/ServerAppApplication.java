@@ -1,11 +1,16 @@
 package com.server;
 
-import TDG.ReservationTDG;
+import Config.ServerProperties;
+import Mapper.Snapshot;
+import Mapper.WarmUp;
+import TDG.SchemaMigrator;
+import UnitOfWork.WriteBehind;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Calendar;
 import java.util.Timer;
@@ -15,13 +20,29 @@ import java.util.concurrent.TimeUnit;
 @EnableAutoConfiguration(exclude={DataSourceAutoConfiguration.class})
 public class ServerAppApplication {
 
-	public static void main(String[] args) throws ClassNotFoundException, SQLException
+	public static void main(String[] args) throws ClassNotFoundException, SQLException, IOException
 	{
-		ReservationTDG.intitializeIdCounter();
+		SchemaMigrator.migrate();
+		//Commits logged but not written by the previous run must be in the database before it is loaded
+		WriteBehind.recover();
+		WarmUp.run();
 		scheduleReset();
+		scheduleSnapshots();
 		SpringApplication.run(ServerAppApplication.class, args);
 	}
 
+	private static void scheduleSnapshots()
+	{
+		if(!Snapshot.isEnabled())
+			return;
+
+		long interval = TimeUnit.MINUTES.toMillis(ServerProperties.getInt("snapshot.interval-minutes", 10));
+		new Timer("snapshot", true).schedule(new SnapshotTask(), interval, interval);
+
+		// One last snapshot when the server stops, so that a restart starts from the state it left
+		Runtime.getRuntime().addShutdownHook(new Thread(new SnapshotTask(), "snapshot-on-exit"));
+	}
+
 	private static void scheduleReset()
 	{
 		Calendar calendar = Calendar.getInstance();
@@ -0,0 +1,26 @@
+package com.server;
+
+import Mapper.Snapshot;
+
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+//Writes a Mapper.Snapshot of the identity maps to snapshot.file, every snapshot.interval-minutes and once more on shutdown
+public class SnapshotTask extends TimerTask {
+
+    public void run()
+    {
+        long start = System.nanoTime();
+
+        try
+        {
+            long size = Snapshot.write(Snapshot.getFile());
+            System.out.println("Snapshot of " + size + " bytes written in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+        }
+        //The previous snapshot stays in place, and a restart reconciles whichever one it finds
+        catch(Exception e)
+        {
+            System.out.println("Error: the snapshot could not be written: " + e.getMessage());
+        }
+    }
+}
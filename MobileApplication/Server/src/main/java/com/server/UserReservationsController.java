@@ -3,13 +3,15 @@ package com.server;
 import Core.Room;
 import Core.Student;
 import Mapper.ReservationMapper;
+import Mapper.ResourceVersions;
 import Mapper.StudentMapper;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.WebRequest;
 
-import java.sql.SQLException;
 
 /**
  * Created by dias on 16-10-28.
@@ -19,19 +21,29 @@ import java.sql.SQLException;
 @RestController
 public class UserReservationsController
 {
+    private static final DatabaseExecutor.Bulkhead bulkhead = DatabaseExecutor.bulkhead("userReservations");
+
+    //Answers 304 Not Modified, without reading the reservations, when the client sends the ETag of the student's list in If-None-Match
     @RequestMapping(value = "/userReservations", method = RequestMethod.GET,produces = "application/json")
-    public Object[] getUserReservations(@RequestParam(value="studentId", defaultValue="") String username) throws SQLException, ClassNotFoundException
+    public DeferredResult<Object[]> getUserReservations(@RequestParam(value="studentId", defaultValue="") String username, WebRequest request)
     {
         if(!Student.isValidUsername(username))
             throw new IllegalArgumentException("Invalid format of student id.");
 
         int studentId = Integer.parseInt(username);
 
-        if(!StudentMapper.validStudent(studentId))
-            throw new IllegalArgumentException("Student id " + studentId + " does not exist in the database.");
+        //Only an existing student can have been given the tag
+        if(request.checkNotModified(ResourceVersions.studentTag(studentId)))
+            return null;
+
+        return DatabaseExecutor.submit(bulkhead, () ->
+        {
+            if(!StudentMapper.validStudent(studentId))
+                throw new IllegalArgumentException("Student id " + studentId + " does not exist in the database.");
 
-        //I don't like working with arrays, but it works much better with JSON.
-        //This should be converted back to an ArrayList on the front end.
-        return ReservationMapper.getAllResOfStudent(studentId).toArray();
+            //I don't like working with arrays, but it works much better with JSON.
+            //This should be converted back to an ArrayList on the front end.
+            return ReservationMapper.getAllResOfStudent(studentId).toArray();
+        });
     }
 }
@@ -0,0 +1,11 @@
+-- Shared id counters: each server reserves blocks of ids from them (see Mapper.BlockIdAllocator).
+-- The reservations row starts after the highest existing id, so blocks never hand out an id already in use.
+
+CREATE TABLE IF NOT EXISTS id_sequences (
+  name varchar(64) COLLATE utf8_unicode_ci NOT NULL,
+  nextId int(10) unsigned NOT NULL,
+  PRIMARY KEY (name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_unicode_ci;
+
+INSERT IGNORE INTO id_sequences (name, nextId)
+  SELECT 'reservations', COALESCE(MAX(reservationId), 0) + 1 FROM reservations;
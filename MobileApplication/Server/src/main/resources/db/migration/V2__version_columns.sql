@@ -0,0 +1,11 @@
+-- Version of every row, read along with it and checked by the UPDATE and DELETE statements of the TDGs, which only match the
+-- row while it is unchanged. Existing rows start at version 0.
+
+ALTER TABLE rooms
+  ADD COLUMN version int(10) unsigned NOT NULL DEFAULT 0;
+
+ALTER TABLE students
+  ADD COLUMN version int(10) unsigned NOT NULL DEFAULT 0;
+
+ALTER TABLE reservations
+  ADD COLUMN version int(10) unsigned NOT NULL DEFAULT 0;
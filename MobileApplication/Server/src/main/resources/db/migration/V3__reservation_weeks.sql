@@ -0,0 +1,23 @@
+-- Week of every reservation, counted in sunday to saturday weeks since 1970-01-04 (see Core.Reservation.weekId), which becomes
+-- part of the primary key. Existing reservations are for the current week.
+-- reservations_history keeps the weeks taken out of reservations by the weekly reset, one RANGE partition per week plus
+-- pfuture for anything newer. It is created LIKE reservations, since a week can only be exchanged with one of its partitions
+-- while both tables have the same structure, and every later change to reservations is made to it as well.
+
+ALTER TABLE reservations
+  ADD COLUMN weekId int(10) unsigned NOT NULL DEFAULT 0;
+
+UPDATE reservations
+  SET weekId = FLOOR(DATEDIFF(CURDATE(), '1970-01-04') / 7);
+
+ALTER TABLE reservations
+  ALTER COLUMN weekId DROP DEFAULT,
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (reservationId, weekId);
+
+CREATE TABLE IF NOT EXISTS reservations_history LIKE reservations;
+
+ALTER TABLE reservations_history
+  PARTITION BY RANGE (weekId) (
+    PARTITION pfuture VALUES LESS THAN MAXVALUE
+  );
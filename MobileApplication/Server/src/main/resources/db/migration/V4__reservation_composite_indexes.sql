@@ -0,0 +1,21 @@
+-- Composite indexes for every access path of TDG.ReservationTDG. Together with the primary key (reservationId, weekId), which
+-- InnoDB stores in every secondary index, each one holds all the columns of the table, so the SELECT * queries are answered
+-- from the index alone.
+--
+-- slot_position: findInRange (roomId, weekDay, startTime, endTime), findProceedingWaitlist and the waitlist shift (the same
+-- plus a range on position). It starts with roomId, which makes roomid_foreign redundant.
+-- day_position: getFullReservationsForDay (weekDay, position = 0).
+-- studentid_foreign already serves getAllResOfStudent.
+--
+-- reservations_history gets the same indexes: a week can only be exchanged with one of its partitions while both tables
+-- have the same structure, and the next week's table is created LIKE reservations.
+
+ALTER TABLE reservations
+  ADD KEY slot_position (roomId, weekDay, startTime, endTime, position, studentId, version),
+  ADD KEY day_position (weekDay, position, roomId, startTime, endTime, studentId, version),
+  DROP KEY roomid_foreign;
+
+ALTER TABLE reservations_history
+  ADD KEY slot_position (roomId, weekDay, startTime, endTime, position, studentId, version),
+  ADD KEY day_position (weekDay, position, roomId, startTime, endTime, studentId, version),
+  DROP KEY roomid_foreign;
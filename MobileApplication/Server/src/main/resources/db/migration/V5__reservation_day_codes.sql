@@ -0,0 +1,38 @@
+-- Stores the day of every reservation as the code of its Core.Day (saturday = 0 through friday = 6) instead of its name.
+-- The new column keeps the name weekDay, so the TDG statements do not change, and takes the place of the old one in both
+-- tables so that reservations and reservations_history keep the same structure for partition exchanges.
+-- The composite indexes of V4 are rebuilt around it.
+-- A weekDay that is not the name of a day stops the migration: FIELD gives it 0, NULLIF turns that into NULL, and the NOT NULL
+-- column refuses it since SchemaMigrator runs in strict mode. Such rows have to be fixed or removed by hand before retrying.
+
+ALTER TABLE reservations
+  DROP KEY slot_position,
+  DROP KEY day_position,
+  ADD COLUMN dayCode tinyint(3) unsigned NOT NULL DEFAULT 0 AFTER studentId;
+
+UPDATE reservations
+  SET dayCode = NULLIF(FIELD(LOWER(weekDay), 'saturday', 'sunday', 'monday', 'tuesday', 'wednesday', 'thursday', 'friday'), 0) - 1;
+
+ALTER TABLE reservations
+  DROP COLUMN weekDay;
+
+ALTER TABLE reservations
+  CHANGE dayCode weekDay tinyint(3) unsigned NOT NULL,
+  ADD KEY slot_position (roomId, weekDay, startTime, endTime, position, studentId, version),
+  ADD KEY day_position (weekDay, position, roomId, startTime, endTime, studentId, version);
+
+ALTER TABLE reservations_history
+  DROP KEY slot_position,
+  DROP KEY day_position,
+  ADD COLUMN dayCode tinyint(3) unsigned NOT NULL DEFAULT 0 AFTER studentId;
+
+UPDATE reservations_history
+  SET dayCode = NULLIF(FIELD(LOWER(weekDay), 'saturday', 'sunday', 'monday', 'tuesday', 'wednesday', 'thursday', 'friday'), 0) - 1;
+
+ALTER TABLE reservations_history
+  DROP COLUMN weekDay;
+
+ALTER TABLE reservations_history
+  CHANGE dayCode weekDay tinyint(3) unsigned NOT NULL,
+  ADD KEY slot_position (roomId, weekDay, startTime, endTime, position, studentId, version),
+  ADD KEY day_position (weekDay, position, roomId, startTime, endTime, studentId, version);
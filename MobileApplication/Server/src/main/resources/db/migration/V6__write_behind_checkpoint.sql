@@ -0,0 +1,10 @@
+-- Sequence number of the last commit of the write-behind log (see UnitOfWork.WriteBehind) that is in the reservations table.
+-- It is updated in the same transaction as the commits it covers, so that replaying the log on startup skips exactly those.
+
+CREATE TABLE IF NOT EXISTS write_behind_checkpoint (
+  id tinyint(3) unsigned NOT NULL,
+  flushedSequence bigint(20) unsigned NOT NULL,
+  PRIMARY KEY (id)
+);
+
+INSERT IGNORE INTO write_behind_checkpoint (id, flushedSequence) VALUES (1, 0);
@@ -0,0 +1,11 @@
+-- One reservation per position of a slot and week. Each server gives positions from its own SlotOccupancyIndex, so two
+-- servers booking the same slot at the same time would otherwise both insert position 0; the second insert now fails with a
+-- duplicate key, which TDG.ReservationTDG reports as a ConcurrencyFailureException.
+-- The waitlist shift moves rows in position order, after the DELETE of the reservation whose position they take, so it never
+-- meets the key halfway. weekId is part of the key because reservations_history, partitioned on it, must have the same keys.
+
+ALTER TABLE reservations
+  ADD UNIQUE KEY slot_position_unique (roomId, weekDay, startTime, position, weekId);
+
+ALTER TABLE reservations_history
+  ADD UNIQUE KEY slot_position_unique (roomId, weekDay, startTime, position, weekId);
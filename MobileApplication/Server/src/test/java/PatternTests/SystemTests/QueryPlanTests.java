@@ -0,0 +1,74 @@
+package PatternTests.SystemTests;
+
+import Core.Day;
+import TDG.DatabaseUtils;
+import TDG.ReservationTDG;
+import TDG.RoomsTDG;
+import TDG.SchemaMigrator;
+import TDG.StudentTDG;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertFalse;
+
+//Runs EXPLAIN on every keyed TDG statement against the local db343 database, once the schema migrations are applied, and
+//fails if MySQL would read a whole table ("ALL") or a whole index ("index") to answer it
+public class QueryPlanTests {
+
+    @BeforeClass
+    public static void migrate() throws SQLException, ClassNotFoundException {
+        SchemaMigrator.migrate();
+    }
+
+    @Test
+    public void testReservationQueries() throws SQLException, ClassNotFoundException {
+        assertNoFullScan(ReservationTDG.FIND_SQL, 1);
+        assertNoFullScan(ReservationTDG.FIND_PROCEEDING_WAITLIST_SQL, 34, Day.MONDAY.getCode(), 9, 10, 0);
+        assertNoFullScan(ReservationTDG.FIND_IN_RANGE_SQL, 34, Day.MONDAY.getCode(), 9, 10);
+        assertNoFullScan(ReservationTDG.FIND_BY_STUDENT_SQL, 27526766);
+        assertNoFullScan(ReservationTDG.FIND_FULL_FOR_DAY_SQL, Day.MONDAY.getCode());
+    }
+
+    @Test
+    public void testReservationWrites() throws SQLException, ClassNotFoundException {
+        assertNoFullScan(ReservationTDG.UPDATE_SQL, 34, 27526766, Day.MONDAY.getCode(), 9, 10, 0, 1, 0);
+        assertNoFullScan(ReservationTDG.SHIFT_WAITLIST_SQL, 34, Day.MONDAY.getCode(), 9, 10, 0);
+        assertNoFullScan(ReservationTDG.DELETE_SQL, 1, 0);
+    }
+
+    @Test
+    public void testRoomAndStudentQueries() throws SQLException, ClassNotFoundException {
+        assertNoFullScan(RoomsTDG.FIND_SQL, 34);
+        assertNoFullScan(StudentTDG.FIND_SQL, 27526766);
+    }
+
+    private static void assertNoFullScan(String sql, Object... parameters) throws SQLException, ClassNotFoundException {
+        Connection connection = DatabaseUtils.getConnection();
+
+        try {
+            PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+
+            try {
+                DatabaseUtils.setParameters(statement, parameters);
+                ResultSet plan = statement.executeQuery();
+
+                while (plan.next()) {
+                    String access = plan.getString("type");
+                    assertFalse(sql + " scans all of " + plan.getString("table"), "ALL".equals(access) || "index".equals(access));
+                }
+                plan.close();
+            }
+            finally {
+                statement.close();
+            }
+        }
+        finally {
+            connection.close();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package PatternTests.SystemTests;
 
+import Core.Day;
 import Core.Reservation;
 import Core.Room;
 import Core.Student;
@@ -65,14 +66,14 @@ public class ReservationMapperTests {
 
         Student s3 = StudentMapper.getData(27526711);
 
-        ReservationMapper.makeNew(r.getId(), s1.getId(), "Friday", 15, 16);
-        ReservationMapper.makeNew(53, s1.getId(), "Monday", 11, 12);
-        ReservationMapper.makeNew(11, s2.getId(), "Tuesday", 18, 19);
-        ReservationMapper.makeNew(11, s3.getId(), "Tuesday", 19, 20);
+        ReservationMapper.makeNew(r.getId(), s1.getId(), Day.FRIDAY, 15, 16);
+        ReservationMapper.makeNew(53, s1.getId(), Day.MONDAY, 11, 12);
+        ReservationMapper.makeNew(11, s2.getId(), Day.TUESDAY, 18, 19);
+        ReservationMapper.makeNew(11, s3.getId(), Day.TUESDAY, 19, 20);
 
         Reservation res = ReservationMapper.getData(1);
 
-        ReservationMapper.set(res, r.getId(), s1.getId(), "Wednesday", 14, 15, 2);
+        ReservationMapper.set(res, r.getId(), s1.getId(), Day.WEDNESDAY, 14, 15, 2);
 
         ReservationMapper.getAllData();
         ReservationMapper.getAllResOfStudent(s1.getId());
@@ -89,7 +90,7 @@ public class ReservationMapperTests {
     @Test
     public void returnReservation() throws Exception {
 
-        Reservation r = new Reservation(2,2,1,"Monday", 11, 12, 0);
+        Reservation r = new Reservation(2,2,1,Day.MONDAY, 11, 12, 0);
         PowerMockito.mockStatic(ReservationMapper.class);
 
 
@@ -107,9 +108,9 @@ public class ReservationMapperTests {
 
         ArrayList<Reservation> reservations = new ArrayList<Reservation>();
 
-        reservations.add(new Reservation(1,1,123123123,"Monday", 12, 13, 0));
-        reservations.add(new Reservation(4,1,123123123,"Tuesday", 14, 15, 0));
-        reservations.add(new Reservation(5,1,123123123,"Wednesday", 16, 17, 0));
+        reservations.add(new Reservation(1,1,123123123,Day.MONDAY, 12, 13, 0));
+        reservations.add(new Reservation(4,1,123123123,Day.TUESDAY, 14, 15, 0));
+        reservations.add(new Reservation(5,1,123123123,Day.WEDNESDAY, 16, 17, 0));
 
         when(ReservationMapper.getAllData()).thenReturn(reservations);
 
@@ -132,7 +133,7 @@ public class ReservationMapperTests {
 
     @Test
     public void returnReservationError() throws Exception {
-        Reservation r = new Reservation(3,2,1,"Monday", 11, 12, 0);
+        Reservation r = new Reservation(3,2,1,Day.MONDAY, 11, 12, 0);
         PowerMockito.mockStatic(ReservationMapper.class);
 
 
@@ -0,0 +1,69 @@
+package PatternTests.UnitTests;
+
+import Core.Room;
+import IdentityMap.IdentityMapCache;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class IdentityMapCacheUnitTests {
+
+    @Test
+    public void testHitsAndMisses() {
+        IdentityMapCache<Room> cache = new IdentityMapCache<Room>("test-hits", 10, 0);
+        Room room = new Room(1, "H-101", "Room", 4);
+        cache.put(room);
+
+        assertSame(room, cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testEvictsObjectsNotReadSinceLastSweep() {
+        IdentityMapCache<Room> cache = new IdentityMapCache<Room>("test-clock", 2, 0);
+        cache.put(new Room(1, "H-101", "Room", 4));
+        cache.put(new Room(2, "H-102", "Room", 4));
+
+        //Reading room 1 gives it a second chance, so room 2 is evicted
+        cache.get(1);
+        cache.put(new Room(3, "H-103", "Room", 4));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(2));
+        assertEquals(1, cache.get(1).getId());
+        assertEquals(3, cache.get(3).getId());
+    }
+
+    @Test
+    public void testRemoveAndReinsertManyIds() {
+        IdentityMapCache<Room> cache = new IdentityMapCache<Room>("test-churn", 100, 0);
+
+        //Leaves plenty of tombstones behind, which forces the table to be rehashed several times
+        for (int id = 0; id < 10000; id++) {
+            cache.put(new Room(id, "H-" + id, "Room", 4));
+            if (id % 2 == 0)
+                cache.remove(id);
+        }
+
+        assertEquals(100, cache.size());
+        assertEquals(9999, cache.get(9999).getId());
+        assertNull(cache.get(9998));
+    }
+
+    @Test
+    public void testExpiresAfterTtl() throws InterruptedException {
+        IdentityMapCache<Room> cache = new IdentityMapCache<Room>("test-ttl", 10, 20);
+        cache.put(new Room(1, "H-101", "Room", 4));
+
+        Thread.sleep(50);
+
+        assertNull(cache.get(1));
+        assertEquals(1, cache.getExpirations());
+        assertEquals(0, cache.size());
+    }
+}
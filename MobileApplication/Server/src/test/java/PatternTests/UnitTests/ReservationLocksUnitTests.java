@@ -0,0 +1,66 @@
+package PatternTests.UnitTests;
+
+import Core.Day;
+import Core.Reservation;
+import Mapper.ReservationLocks;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReservationLocksUnitTests {
+
+    @Test
+    public void testSameSlotSameStripe() {
+        assertEquals(ReservationLocks.slotStripe(1, Day.MONDAY, 9), ReservationLocks.slotStripe(new Reservation(1, 1, 10, Day.MONDAY, 9, 10, 0)));
+    }
+
+    @Test
+    public void testStudentStripesDoNotOverlapSlotStripes() {
+        for (int id = 0; id < 1000; id++)
+            assertTrue(ReservationLocks.studentStripe(id) > ReservationLocks.slotStripe(id, Day.FRIDAY, 15));
+    }
+
+    @Test
+    public void testLockReturnsSortedStripes() {
+        int[] held = ReservationLocks.lock(Arrays.asList(40, 3, 17, 3));
+
+        try {
+            assertArrayEquals(new int[]{3, 17, 40}, held);
+            assertTrue(ReservationLocks.holds(held, Arrays.asList(17, 40)));
+            assertFalse(ReservationLocks.holds(held, Arrays.asList(17, 41)));
+        }
+        finally {
+            ReservationLocks.unlock(held);
+        }
+    }
+
+    @Test
+    public void testOppositeOrdersDoNotDeadlock() throws InterruptedException {
+        final int first = ReservationLocks.slotStripe(1, Day.MONDAY, 9);
+        final int second = ReservationLocks.slotStripe(2, Day.FRIDAY, 15);
+        final CountDownLatch done = new CountDownLatch(2);
+
+        Runnable forward = () -> {
+            for (int i = 0; i < 10000; i++)
+                ReservationLocks.unlock(ReservationLocks.lock(Arrays.asList(first, second)));
+            done.countDown();
+        };
+        Runnable backward = () -> {
+            for (int i = 0; i < 10000; i++)
+                ReservationLocks.unlock(ReservationLocks.lock(Arrays.asList(second, first)));
+            done.countDown();
+        };
+
+        new Thread(forward).start();
+        new Thread(backward).start();
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+    }
+}
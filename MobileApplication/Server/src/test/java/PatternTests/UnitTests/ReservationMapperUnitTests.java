@@ -0,0 +1,177 @@
+package PatternTests.UnitTests;
+
+import Core.Day;
+import Core.Reservation;
+import IdentityMap.ReservationIdentityMap;
+import IdentityMap.SlotOccupancyIndex;
+import IdentityMap.StudentReservationIndex;
+import Mapper.ReservationMapper;
+import Mapper.ReservationOperation;
+import TDG.DatabaseUtils;
+import TDG.ReservationTDG;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+//Runs ReservationMapper against an in-memory reservations table standing in for the database: the reads of ReservationTDG
+//answer from it and its writes change it, so the tests see exactly what a commit would leave in the database.
+@PrepareForTest({ReservationTDG.class, DatabaseUtils.class})
+@RunWith(PowerMockRunner.class)
+public class ReservationMapperUnitTests {
+
+    private static final int STUDENT = 27526741;
+
+    private final Map<Integer, Reservation> table = new TreeMap<Integer, Reservation>();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        //The student holds position 0 of room 1 on monday at 9, with two other students waiting behind, and room 2 on tuesday at 10
+        addRow(1, 1, STUDENT, Day.MONDAY, 9, 0);
+        addRow(2, 1, 27526766, Day.MONDAY, 9, 1);
+        addRow(3, 1, 27526711, Day.MONDAY, 9, 2);
+        addRow(4, 2, STUDENT, Day.TUESDAY, 10, 0);
+
+        ReservationIdentityMap.reset();
+        SlotOccupancyIndex.invalidate();
+        StudentReservationIndex.invalidate();
+
+        PowerMockito.mockStatic(DatabaseUtils.class);
+        when(DatabaseUtils.getConnection()).thenReturn(mock(Connection.class));
+
+        PowerMockito.mockStatic(ReservationTDG.class);
+        when(ReservationTDG.findAll()).thenAnswer(invocation -> rows(null));
+        when(ReservationTDG.streamAll(anyInt(), any(Consumer.class))).thenAnswer(invocation -> {
+            ArrayList<Reservation> rows = rows(null);
+            rows.forEach((Consumer<Reservation>) invocation.getArguments()[1]);
+            return rows.size();
+        });
+        when(ReservationTDG.find(anyInt())).thenAnswer(invocation -> copy(table.get((Integer) invocation.getArguments()[0])));
+        when(ReservationTDG.getAllResOfStudent(anyInt())).thenAnswer(invocation -> rows(row -> row.getStudentId() == (Integer) invocation.getArguments()[0]));
+        when(ReservationTDG.findProceedingWaitlist(any(Reservation.class))).thenAnswer(invocation -> {
+            Reservation removed = (Reservation) invocation.getArguments()[0];
+            return rows(row -> sameSlot(row, removed) && row.getPosition() > removed.getPosition());
+        });
+
+        PowerMockito.doAnswer(invocation -> forEachArgument(invocation, row -> table.put(row.getId(), copy(row))))
+                .when(ReservationTDG.class, "insert", any(Connection.class), any(ArrayList.class));
+        PowerMockito.doAnswer(invocation -> forEachArgument(invocation, row -> table.put(row.getId(), copy(row))))
+                .when(ReservationTDG.class, "update", any(Connection.class), any(ArrayList.class));
+        PowerMockito.doAnswer(invocation -> forEachArgument(invocation, row -> table.remove(row.getId())))
+                .when(ReservationTDG.class, "delete", any(Connection.class), any(ArrayList.class));
+        PowerMockito.doAnswer(invocation -> forEachArgument(invocation, removed -> {
+            for (Reservation row : table.values()) {
+                if (sameSlot(row, removed) && row.getPosition() > removed.getPosition())
+                    row.setPosition(row.getPosition() - 1);
+            }
+        })).when(ReservationTDG.class, "shiftWaitlists", any(Connection.class), any(ArrayList.class));
+
+        ReservationMapper.warmUp(100);
+    }
+
+    @Test
+    public void testBatchIsAppliedWhenEveryOperationSucceeds() throws Exception {
+        int[] positions = ReservationMapper.applyBatch(STUDENT, operations(
+                "{\"type\":\"delete\",\"reservationId\":1}",
+                "{\"type\":\"create\",\"roomId\":3,\"day\":\"wednesday\",\"startTime\":11,\"endTime\":12}"));
+
+        assertEquals(0, positions[0]);
+        assertEquals(0, positions[1]);
+        assertNull(table.get(1));
+        assertEquals(0, table.get(2).getPosition());
+        assertEquals(1, table.get(3).getPosition());
+        assertEquals(4, table.size());
+        assertEquals(Day.WEDNESDAY, table.get(5).getDayOfWeek());
+    }
+
+    @Test
+    public void testFailingOperationUndoesTheEarlierOnes() throws Exception {
+        try {
+            //The delete goes through, then the create conflicts with the student's reservation on tuesday at 10
+            ReservationMapper.applyBatch(STUDENT, operations(
+                    "{\"type\":\"delete\",\"reservationId\":1}",
+                    "{\"type\":\"create\",\"roomId\":3,\"day\":\"tuesday\",\"startTime\":10,\"endTime\":11}"));
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+        }
+
+        //Nothing was written
+        assertNotNull(table.get(1));
+        assertEquals(0, table.get(1).getPosition());
+        assertEquals(1, table.get(2).getPosition());
+        assertEquals(2, table.get(3).getPosition());
+        assertEquals(4, table.size());
+
+        //and memory was thrown away, so the mapper reads the reservations as they are in the database again
+        assertEquals(0, ReservationMapper.getData(1).getPosition());
+        assertEquals(1, ReservationMapper.getData(2).getPosition());
+        assertEquals(2, ReservationMapper.getData(3).getPosition());
+        assertEquals(2, ReservationMapper.getAllResOfStudent(STUDENT).size());
+    }
+
+    private void addRow(int id, int roomId, int studentId, Day day, int startTime, int position) {
+        table.put(id, new Reservation(id, roomId, studentId, day, startTime, startTime + 1, position));
+    }
+
+    //Copies of the rows matching the filter (every row if null), as a query would return new objects
+    private ArrayList<Reservation> rows(Predicate<Reservation> filter) {
+        ArrayList<Reservation> rows = new ArrayList<Reservation>();
+        for (Reservation row : table.values()) {
+            if (filter == null || filter.test(row))
+                rows.add(copy(row));
+        }
+        return rows;
+    }
+
+    private static Reservation copy(Reservation row) {
+        if (row == null)
+            return null;
+
+        Reservation copy = new Reservation(row.getId(), row.getRoomId(), row.getStudentId(), row.getDayOfWeek(), row.getStartTime(), row.getEndTime(), row.getPosition());
+        copy.setVersion(row.getVersion());
+        copy.setWeekId(row.getWeekId());
+        return copy;
+    }
+
+    private static boolean sameSlot(Reservation row, Reservation other) {
+        return row.getRoomId() == other.getRoomId() && row.getSlot() == other.getSlot() && row.getEndTime() == other.getEndTime();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object forEachArgument(InvocationOnMock invocation, Consumer<Reservation> action) {
+        for (Reservation reservation : (List<Reservation>) invocation.getArguments()[1])
+            action.accept(reservation);
+        return null;
+    }
+
+    private static List<ReservationOperation> operations(String... json) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ArrayList<ReservationOperation> operations = new ArrayList<ReservationOperation>();
+        for (String operation : json)
+            operations.add(objectMapper.readValue(operation, ReservationOperation.class));
+        return operations;
+    }
+}
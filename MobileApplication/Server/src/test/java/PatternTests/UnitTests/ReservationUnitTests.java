@@ -0,0 +1,47 @@
+package PatternTests.UnitTests;
+
+import Core.Day;
+import Core.Reservation;
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class ReservationUnitTests {
+
+    @Test
+    public void testFirstWeek() {
+        assertEquals(0, Reservation.weekId(LocalDate.of(1970, 1, 4)));
+        assertEquals(0, Reservation.weekId(LocalDate.of(1970, 1, 10)));
+        assertEquals(-1, Reservation.weekId(LocalDate.of(1970, 1, 3)));
+    }
+
+    @Test
+    public void testWeekRunsFromSundayToSaturday() {
+        int week = Reservation.weekId(LocalDate.of(2016, 11, 20));
+
+        assertEquals(week, Reservation.weekId(LocalDate.of(2016, 11, 23)));
+        assertEquals(week, Reservation.weekId(LocalDate.of(2016, 11, 26)));
+        assertEquals(week + 1, Reservation.weekId(LocalDate.of(2016, 11, 27)));
+        assertEquals(week - 1, Reservation.weekId(LocalDate.of(2016, 11, 19)));
+    }
+
+    @Test
+    public void testParseDay() {
+        assertEquals(Day.SATURDAY, Day.parse("Saturday"));
+        assertEquals(Day.FRIDAY, Day.parse("friday"));
+        assertNull(Day.parse("someday"));
+        assertNull(Day.parse(null));
+        assertEquals(Day.MONDAY, Day.fromCode(Day.MONDAY.getCode()));
+    }
+
+    @Test
+    public void testSlotsOfDifferentDaysDiffer() {
+        assertEquals(Reservation.slot(Day.MONDAY, 9), new Reservation(1, 1, 10, Day.MONDAY, 9, 10, 0).getSlot());
+        assertNotEquals(Reservation.slot(Day.MONDAY, 23), Reservation.slot(Day.TUESDAY, 7));
+        assertNotEquals(Reservation.slot(Day.MONDAY, 9), Reservation.slot(Day.TUESDAY, 9));
+    }
+}
@@ -0,0 +1,67 @@
+package PatternTests.UnitTests;
+
+import Core.Day;
+import Core.Reservation;
+import IdentityMap.RoomAvailabilityIndex;
+import IdentityMap.SlotOccupancyIndex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RoomAvailabilityIndexUnitTests {
+
+    private static final int[] ROOMS = {1, 2, 3, 70};
+
+    @Before
+    public void setUp() {
+        SlotOccupancyIndex.load(new ArrayList<Reservation>());
+    }
+
+    @Test
+    public void testFreeRoomsOverRange() {
+        SlotOccupancyIndex.load(Arrays.asList(
+                new Reservation(1, 1, 10, Day.MONDAY, 14, 15, 0),
+                new Reservation(2, 3, 11, Day.MONDAY, 15, 16, 0),
+                new Reservation(3, 70, 12, Day.TUESDAY, 14, 15, 0)));
+
+        assertArrayEquals(new int[]{2, 3, 70}, RoomAvailabilityIndex.findFreeRooms(ROOMS, Day.MONDAY, 14, 15));
+        assertArrayEquals(new int[]{2, 70}, RoomAvailabilityIndex.findFreeRooms(ROOMS, Day.MONDAY, 14, 16));
+        assertArrayEquals(new int[]{1, 2, 3}, RoomAvailabilityIndex.findFreeRooms(ROOMS, Day.TUESDAY, 7, 24));
+    }
+
+    @Test
+    public void testSlotStaysTakenWhileWaitlisted() {
+        Reservation head = new Reservation(1, 2, 10, Day.FRIDAY, 23, 24, 0);
+        Reservation waitlisted = new Reservation(2, 2, 11, Day.FRIDAY, 23, 24, 1);
+        SlotOccupancyIndex.add(head);
+        SlotOccupancyIndex.add(waitlisted);
+
+        SlotOccupancyIndex.remove(head);
+        assertArrayEquals(new int[]{1, 3, 70}, RoomAvailabilityIndex.findFreeRooms(ROOMS, Day.FRIDAY, 23, 24));
+
+        SlotOccupancyIndex.remove(waitlisted);
+        assertArrayEquals(ROOMS, RoomAvailabilityIndex.findFreeRooms(ROOMS, Day.FRIDAY, 23, 24));
+    }
+
+    @Test
+    public void testFreeHours() {
+        SlotOccupancyIndex.add(new Reservation(1, 3, 10, Day.SATURDAY, 7, 8, 0));
+        SlotOccupancyIndex.add(new Reservation(2, 3, 10, Day.SATURDAY, 12, 13, 0));
+
+        int[] freeHours = RoomAvailabilityIndex.findFreeHours(3, Day.SATURDAY);
+        assertEquals(15, freeHours.length);
+        assertEquals(8, freeHours[0]);
+        assertEquals(23, freeHours[freeHours.length - 1]);
+        assertEquals(17, RoomAvailabilityIndex.findFreeHours(3, Day.SUNDAY).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange() {
+        RoomAvailabilityIndex.findFreeRooms(ROOMS, Day.MONDAY, 15, 15);
+    }
+}
@@ -0,0 +1,66 @@
+package PatternTests.UnitTests;
+
+import Core.Room;
+import IdentityMap.RoomSearchIndex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RoomSearchIndexUnitTests {
+
+    @Before
+    public void setUp() {
+        //Room numbers as db343.sql names them
+        RoomSearchIndex.load(Arrays.asList(
+                new Room(4, "LB-447", "", 6),
+                new Room(1, "LB-351", "", 4),
+                new Room(2, "VL 301-10", "", 8),
+                new Room(3, "LB-359", "", 10),
+                new Room(5, "VL 301-11", "", 4),
+                new Room(6, "B.101", "", 6),
+                new Room(7, "B.102", "", 6),
+                new Room(8, "H961-1", "", 2)));
+    }
+
+    @Test
+    public void testRoomIdsAreSorted() {
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6, 7, 8}, RoomSearchIndex.getRoomIds());
+    }
+
+    @Test
+    public void testMinimumSize() {
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6, 7, 8}, RoomSearchIndex.findRooms(null, 0));
+        assertArrayEquals(new int[]{2, 3, 4, 6, 7}, RoomSearchIndex.findRooms(null, 6));
+        assertArrayEquals(new int[]{3}, RoomSearchIndex.findRooms(null, 9));
+        assertEquals(0, RoomSearchIndex.findRooms(null, 11).length);
+    }
+
+    @Test
+    public void testLibrary() {
+        assertArrayEquals(new int[]{1, 3, 4}, RoomSearchIndex.findRooms("LB", 0));
+        assertArrayEquals(new int[]{2, 5}, RoomSearchIndex.findRooms("VL", 0));
+        assertArrayEquals(new int[]{2}, RoomSearchIndex.findRooms("vl", 5));
+        assertArrayEquals(new int[]{6, 7}, RoomSearchIndex.findRooms("B", 0));
+        assertArrayEquals(new int[]{8}, RoomSearchIndex.findRooms("H", 0));
+        assertEquals(0, RoomSearchIndex.findRooms("MB", 0).length);
+    }
+
+    @Test
+    public void testLibraryOfSeededRoomNumbers() {
+        assertEquals("LB", new Room(1, "LB-351", "", 6).getLibrary());
+        assertEquals("VL", new Room(12, "VL 301-10", "", 6).getLibrary());
+        assertEquals("B", new Room(21, "B.101", "", 6).getLibrary());
+        assertEquals("H", new Room(35, "H961-1", "", 2).getLibrary());
+    }
+
+    @Test
+    public void testInvalidatedIndexAnswersNothing() {
+        RoomSearchIndex.invalidate();
+        assertEquals(null, RoomSearchIndex.findRooms("LB", 0));
+        assertEquals(null, RoomSearchIndex.getRoomIds());
+    }
+}
@@ -0,0 +1,93 @@
+package PatternTests.UnitTests;
+
+import Core.Day;
+import Core.Reservation;
+import IdentityMap.SlotOccupancyIndex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SlotOccupancyIndexUnitTests {
+
+    @Before
+    public void setUp() {
+        SlotOccupancyIndex.load(new ArrayList<Reservation>());
+    }
+
+    @Test
+    public void testLoad() {
+        Reservation head = new Reservation(1, 3, 10, Day.MONDAY, 9, 10, 0);
+        Reservation waitlisted = new Reservation(2, 3, 11, Day.MONDAY, 9, 10, 1);
+        SlotOccupancyIndex.load(Arrays.asList(head, waitlisted));
+
+        assertTrue(SlotOccupancyIndex.isLoaded());
+        assertEquals(2, SlotOccupancyIndex.getDepth(3, Day.MONDAY, 9));
+        assertEquals(1, SlotOccupancyIndex.getHeadReservationId(3, Day.MONDAY, 9));
+        assertEquals(0, SlotOccupancyIndex.getDepth(3, Day.MONDAY, 10));
+        assertEquals(0, SlotOccupancyIndex.getDepth(3, Day.TUESDAY, 9));
+    }
+
+    @Test
+    public void testRemoveHeadAndPromote() {
+        Reservation head = new Reservation(1, 3, 10, Day.FRIDAY, 15, 16, 0);
+        Reservation waitlisted = new Reservation(2, 3, 11, Day.FRIDAY, 15, 16, 1);
+        SlotOccupancyIndex.add(head);
+        SlotOccupancyIndex.add(waitlisted);
+
+        SlotOccupancyIndex.remove(head);
+        assertEquals(1, SlotOccupancyIndex.getDepth(3, Day.FRIDAY, 15));
+        assertEquals(0, SlotOccupancyIndex.getHeadReservationId(3, Day.FRIDAY, 15));
+
+        waitlisted.setPosition(0);
+        SlotOccupancyIndex.promote(waitlisted);
+        assertEquals(2, SlotOccupancyIndex.getHeadReservationId(3, Day.FRIDAY, 15));
+    }
+
+    @Test
+    public void testWaitlistIds() {
+        SlotOccupancyIndex.add(new Reservation(1, 3, 10, Day.MONDAY, 9, 10, 0));
+        Reservation first = new Reservation(2, 3, 11, Day.MONDAY, 9, 10, 1);
+        SlotOccupancyIndex.add(first);
+        SlotOccupancyIndex.add(new Reservation(3, 3, 12, Day.MONDAY, 9, 10, 2));
+
+        assertArrayEquals(new int[]{2, 3}, SlotOccupancyIndex.getWaitlistIds(3, Day.MONDAY, 9));
+        assertEquals(0, SlotOccupancyIndex.getWaitlistIds(3, Day.MONDAY, 10).length);
+
+        first.setPosition(0);
+        SlotOccupancyIndex.promote(first);
+        assertArrayEquals(new int[]{3}, SlotOccupancyIndex.getWaitlistIds(3, Day.MONDAY, 9));
+    }
+
+    @Test
+    public void testHeadReservationIdsOfDay() {
+        SlotOccupancyIndex.add(new Reservation(1, 3, 10, Day.MONDAY, 9, 10, 0));
+        SlotOccupancyIndex.add(new Reservation(2, 3, 11, Day.MONDAY, 9, 10, 1));
+        SlotOccupancyIndex.add(new Reservation(3, 5, 12, Day.MONDAY, 22, 23, 0));
+        SlotOccupancyIndex.add(new Reservation(4, 5, 12, Day.TUESDAY, 9, 10, 0));
+
+        assertArrayEquals(new int[]{1, 3}, SlotOccupancyIndex.getHeadReservationIds(Day.MONDAY));
+        assertArrayEquals(new int[]{4}, SlotOccupancyIndex.getHeadReservationIds(Day.TUESDAY));
+        assertEquals(0, SlotOccupancyIndex.getHeadReservationIds(Day.FRIDAY).length);
+    }
+
+    @Test
+    public void testGrowsForLargerRoomIds() {
+        SlotOccupancyIndex.add(new Reservation(1, 1, 10, Day.SUNDAY, 7, 8, 0));
+        SlotOccupancyIndex.add(new Reservation(2, 500, 10, Day.SATURDAY, 23, 24, 0));
+
+        assertEquals(1, SlotOccupancyIndex.getDepth(1, Day.SUNDAY, 7));
+        assertEquals(1, SlotOccupancyIndex.getDepth(500, Day.SATURDAY, 23));
+        assertEquals(0, SlotOccupancyIndex.getDepth(1000, Day.SATURDAY, 23));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSlot() {
+        SlotOccupancyIndex.getDepth(1, Day.MONDAY, 6);
+    }
+}
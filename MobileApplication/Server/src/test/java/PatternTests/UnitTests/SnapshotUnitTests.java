@@ -0,0 +1,136 @@
+package PatternTests.UnitTests;
+
+import Core.Day;
+import Core.DomainObject;
+import Core.Reservation;
+import Core.Room;
+import Core.Student;
+import IdentityMap.ReservationIdentityMap;
+import IdentityMap.RoomIdentityMap;
+import IdentityMap.StudentIdentityMap;
+import Mapper.Snapshot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SnapshotUnitTests {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(Files.createTempDirectory("snapshot").toFile(), "snapshot.bin");
+        ReservationIdentityMap.reset();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        file.getParentFile().delete();
+        ReservationIdentityMap.reset();
+    }
+
+    @Test
+    public void testWrittenObjectsAreReadBack() throws IOException {
+        Room room = new Room(901, "LB-901", null, 6);
+        room.setVersion(3);
+        RoomIdentityMap.addRoom(room);
+        StudentIdentityMap.addStudent(new Student(90100001, "Émile", "password"));
+        Reservation reservation = new Reservation(7, 901, 90100001, Day.THURSDAY, 14, 15, 1);
+        reservation.setVersion(2);
+        reservation.setWeekId(2500);
+        ReservationIdentityMap.addRes(reservation);
+
+        Snapshot.write(file);
+        Snapshot.Contents contents = Snapshot.read(file);
+
+        Room readRoom = find(contents.getRooms(), 901);
+        assertEquals("LB-901", readRoom.getRoomNumber());
+        assertNull(readRoom.getDescription());
+        assertEquals(6, readRoom.getRoomSize());
+        assertEquals(3, readRoom.getVersion());
+
+        assertEquals("Émile", find(contents.getStudents(), 90100001).getName());
+
+        assertEquals(1, contents.getReservations().size());
+        Reservation readReservation = contents.getReservations().get(0);
+        assertEquals(Day.THURSDAY, readReservation.getDayOfWeek());
+        assertEquals(14, readReservation.getStartTime());
+        assertEquals(1, readReservation.getPosition());
+        assertEquals(2, readReservation.getVersion());
+        assertEquals(2500, readReservation.getWeekId());
+    }
+
+    @Test
+    public void testCorruptedSnapshotIsIgnored() throws IOException {
+        ReservationIdentityMap.addRes(new Reservation(7, 901, 90100001, Day.THURSDAY, 14, 15, 0));
+        Snapshot.write(file);
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(randomAccessFile.length() - 1);
+        randomAccessFile.write(0x7f);
+        randomAccessFile.close();
+
+        assertNull(Snapshot.read(file));
+        assertNull(Snapshot.read(new File(file.getParentFile(), "missing.bin")));
+    }
+
+    @Test
+    public void testReconcileOnlyLoadsChangedRows() throws Exception {
+        Room unchanged = new Room(1, "LB-351", "", 4);
+        Room updated = new Room(2, "LB-359", "", 10);
+        Room deleted = new Room(3, "LB-447", "", 6);
+        Room reloaded = new Room(2, "LB-359", "Whiteboard", 10);
+        reloaded.setVersion(1);
+        Room added = new Room(4, "VL-101", "", 8);
+
+        List<Integer> loadedIds = new ArrayList<Integer>();
+        ArrayList<Room> rooms = Snapshot.reconcile(Arrays.asList(unchanged, updated, deleted),
+                Arrays.asList(new int[]{1, 0}, new int[]{2, 1}, new int[]{4, 0}),
+                (room, row) -> room.getVersion() == row[1],
+                ids -> {
+                    loadedIds.addAll(ids);
+                    return new ArrayList<Room>(Arrays.asList(reloaded, added));
+                });
+
+        assertEquals(Arrays.asList(2, 4), loadedIds);
+        assertEquals(3, rooms.size());
+        assertSame(unchanged, rooms.get(0));
+        assertSame(reloaded, rooms.get(1));
+        assertSame(added, rooms.get(2));
+    }
+
+    @Test
+    public void testReconcileWithoutChangesReadsNothing() throws Exception {
+        Room room = new Room(1, "LB-351", "", 4);
+
+        ArrayList<Room> rooms = Snapshot.reconcile(Collections.singletonList(room), Collections.singletonList(new int[]{1, 0}),
+                (snapshotRoom, row) -> snapshotRoom.getVersion() == row[1],
+                ids -> {
+                    throw new AssertionError("Nothing should be read");
+                });
+
+        assertSame(room, rooms.get(0));
+    }
+
+    private static <T extends DomainObject> T find(List<T> objects, int id) {
+        for(T object : objects) {
+            if(object.getId() == id)
+                return object;
+        }
+        return null;
+    }
+}
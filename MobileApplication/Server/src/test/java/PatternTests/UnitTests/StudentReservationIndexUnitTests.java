@@ -0,0 +1,53 @@
+package PatternTests.UnitTests;
+
+import Core.Day;
+import Core.Reservation;
+import IdentityMap.StudentReservationIndex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StudentReservationIndexUnitTests {
+
+    @Before
+    public void setUp() {
+        StudentReservationIndex.load(new ArrayList<Reservation>());
+    }
+
+    @Test
+    public void testLoadKeepsIdsSorted() {
+        StudentReservationIndex.load(Arrays.asList(
+                new Reservation(9, 1, 100, Day.MONDAY, 9, 10, 0),
+                new Reservation(4, 2, 100, Day.MONDAY, 10, 11, 1),
+                new Reservation(6, 2, 200, Day.MONDAY, 10, 11, 0)));
+
+        assertArrayEquals(new int[]{4, 9}, StudentReservationIndex.getReservationIds(100));
+        assertArrayEquals(new int[]{6}, StudentReservationIndex.getReservationIds(200));
+        assertArrayEquals(new int[0], StudentReservationIndex.getReservationIds(300));
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        Reservation first = new Reservation(1, 1, 100, Day.FRIDAY, 15, 16, 0);
+        Reservation second = new Reservation(2, 1, 100, Day.FRIDAY, 16, 17, 0);
+        StudentReservationIndex.add(first);
+        StudentReservationIndex.add(second);
+
+        assertTrue(StudentReservationIndex.contains(100, 1));
+        assertTrue(StudentReservationIndex.contains(100, 2));
+        assertFalse(StudentReservationIndex.contains(200, 1));
+
+        StudentReservationIndex.remove(first);
+        assertFalse(StudentReservationIndex.contains(100, 1));
+        assertArrayEquals(new int[]{2}, StudentReservationIndex.getReservationIds(100));
+
+        StudentReservationIndex.remove(second);
+        assertArrayEquals(new int[0], StudentReservationIndex.getReservationIds(100));
+    }
+}
@@ -0,0 +1,164 @@
+package PatternTests.UnitTests;
+
+import Core.Day;
+import Core.Reservation;
+import Mapper.ReservationMapper;
+import TDG.DatabaseUtils;
+import TDG.ReservationTDG;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class VersionCheckUnitTests {
+
+    private Connection connection;
+    private PreparedStatement insertStatement;
+    private PreparedStatement updateStatement;
+    private PreparedStatement shiftStatement;
+    private PreparedStatement deleteStatement;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = mock(Connection.class);
+        insertStatement = mock(PreparedStatement.class);
+        updateStatement = mock(PreparedStatement.class);
+        shiftStatement = mock(PreparedStatement.class);
+        deleteStatement = mock(PreparedStatement.class);
+
+        when(connection.prepareStatement(ReservationTDG.UPDATE_SQL)).thenReturn(updateStatement);
+        when(connection.prepareStatement(ReservationTDG.SHIFT_WAITLIST_SQL)).thenReturn(shiftStatement);
+        when(connection.prepareStatement(ReservationTDG.DELETE_SQL)).thenReturn(deleteStatement);
+        when(connection.prepareStatement(startsWith("INSERT INTO reservations"))).thenReturn(insertStatement);
+    }
+
+    @Test
+    public void testStaleUpdateRaisesConcurrencyFailure() throws SQLException {
+        //Another server changed the row since version 3 was read, so the UPDATE matches nothing
+        when(updateStatement.executeBatch()).thenReturn(new int[]{0});
+
+        try {
+            ReservationTDG.update(connection, list(reservation(1, 0, 3)));
+            fail("Expected a ConcurrencyFailureException");
+        }
+        catch (ConcurrencyFailureException e) {
+        }
+    }
+
+    @Test
+    public void testStaleDeleteRaisesConcurrencyFailure() throws SQLException {
+        when(deleteStatement.executeBatch()).thenReturn(new int[]{1, 0});
+
+        try {
+            ReservationTDG.delete(connection, list(reservation(1, 0, 0), reservation(2, 1, 5)));
+            fail("Expected a ConcurrencyFailureException");
+        }
+        catch (ConcurrencyFailureException e) {
+        }
+    }
+
+    @Test
+    public void testDuplicatePositionRaisesConcurrencyFailure() throws SQLException {
+        //Another server inserted position 0 of the same slot first
+        BatchUpdateException duplicate = new BatchUpdateException("Duplicate entry for key 'slot_position_unique'", "23000", 1062, new int[0]);
+        when(insertStatement.executeBatch()).thenThrow(duplicate);
+
+        try {
+            ReservationTDG.insert(connection, list(reservation(1, 0, 0)));
+            fail("Expected a ConcurrencyFailureException");
+        }
+        catch (ConcurrencyFailureException e) {
+            assertSame(duplicate, e.getCause());
+        }
+    }
+
+    @Test
+    public void testOtherErrorsAreNotTranslated() throws SQLException {
+        BatchUpdateException lost = new BatchUpdateException("Communications link failure", "08S01", 0, new int[0]);
+        when(insertStatement.executeBatch()).thenThrow(lost);
+
+        try {
+            ReservationTDG.insert(connection, list(reservation(1, 0, 0)));
+            fail("Expected an SQLException");
+        }
+        catch (SQLException e) {
+            assertSame(lost, e);
+        }
+    }
+
+    @Test
+    public void testRemovalDeletesBeforeShiftingIntoThePosition() throws SQLException {
+        when(deleteStatement.executeBatch()).thenReturn(new int[]{1});
+        when(shiftStatement.executeBatch()).thenReturn(new int[]{1});
+
+        //The reservation at position 0 is erased, which moves the one at position 1 up, then that one is erased as well
+        Reservation first = reservation(1, 0, 0);
+        Reservation second = reservation(2, 0, 1);
+        ArrayList<Reservation> erased = list(first, second);
+
+        ReservationMapper.removeFromDB(connection, erased, erased);
+
+        InOrder order = inOrder(deleteStatement, shiftStatement);
+        order.verify(deleteStatement).executeBatch();
+        order.verify(shiftStatement).executeBatch();
+        order.verify(deleteStatement).executeBatch();
+        order.verify(shiftStatement).executeBatch();
+    }
+
+    @Test
+    public void testConflictsAreNotTransient() throws SQLException {
+        //The flusher of WriteBehind stops on these instead of retrying them forever
+        when(updateStatement.executeBatch()).thenReturn(new int[]{0});
+        when(insertStatement.executeBatch()).thenThrow(new BatchUpdateException("Duplicate entry for key 'slot_position_unique'", "23000", 1062, new int[0]));
+
+        try {
+            ReservationTDG.update(connection, list(reservation(1, 0, 3)));
+            fail("Expected a ConcurrencyFailureException");
+        }
+        catch (ConcurrencyFailureException e) {
+            assertFalse(DatabaseUtils.isTransient(e));
+        }
+
+        try {
+            ReservationTDG.insert(connection, list(reservation(1, 0, 0)));
+            fail("Expected a ConcurrencyFailureException");
+        }
+        catch (ConcurrencyFailureException e) {
+            assertFalse(DatabaseUtils.isTransient(e));
+        }
+    }
+
+    @Test
+    public void testLostConnectionsAndDeadlocksAreTransient() {
+        assertTrue(DatabaseUtils.isTransient(new BatchUpdateException("Communications link failure", "08S01", 0, new int[0])));
+        assertTrue(DatabaseUtils.isTransient(new SQLException("Deadlock found when trying to get lock", "40001", 1213)));
+        assertTrue(DatabaseUtils.isTransient(new SQLException("Lock wait timeout exceeded", "HY000", 1205)));
+        assertFalse(DatabaseUtils.isTransient(new SQLException("Cannot add or update a child row", "23000", 1452)));
+    }
+
+    private static Reservation reservation(int id, int position, int version) {
+        Reservation reservation = new Reservation(id, 1, 27526741 + id, Day.MONDAY, 9, 10, position);
+        reservation.setVersion(version);
+        return reservation;
+    }
+
+    private static ArrayList<Reservation> list(Reservation... reservations) {
+        return new ArrayList<Reservation>(Arrays.asList(reservations));
+    }
+}
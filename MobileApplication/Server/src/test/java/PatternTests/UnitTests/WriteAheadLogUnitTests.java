@@ -0,0 +1,99 @@
+package PatternTests.UnitTests;
+
+import UnitOfWork.WriteAheadLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class WriteAheadLogUnitTests {
+
+    private static final int SEGMENT_SIZE = 64;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wal").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        for(File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testRecordsAreReadBackAfterReopening() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(directory, SEGMENT_SIZE);
+        assertEquals(1, log.append(new byte[]{1, 2, 3}));
+        assertEquals(2, log.append(new byte[]{4}));
+        log.sync(2);
+
+        WriteAheadLog reopened = new WriteAheadLog(directory, SEGMENT_SIZE);
+        List<WriteAheadLog.Entry> entries = reopened.read(0);
+
+        assertEquals(2, reopened.getLastSequence());
+        assertEquals(2, entries.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, entries.get(0).getPayload());
+        assertEquals(2, entries.get(1).getSequence());
+        assertEquals(1, reopened.read(1).size());
+    }
+
+    @Test
+    public void testRecordsSpanSegments() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(directory, SEGMENT_SIZE);
+        for(int i = 0; i < 10; i++)
+            log.append(new byte[20]);
+        log.sync(10);
+
+        assertEquals(10, directory.listFiles().length);
+        assertEquals(10, new WriteAheadLog(directory, SEGMENT_SIZE).read(0).size());
+
+        log.truncate(6);
+        assertEquals(4, directory.listFiles().length);
+        assertEquals(7, new WriteAheadLog(directory, SEGMENT_SIZE).read(0).get(0).getSequence());
+    }
+
+    @Test
+    public void testTornRecordEndsTheLog() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(directory, SEGMENT_SIZE);
+        log.append(new byte[]{1});
+        log.append(new byte[]{2});
+        log.sync(2);
+
+        //Corrupts the payload of the second record
+        RandomAccessFile segment = new RandomAccessFile(directory.listFiles()[0], "rw");
+        segment.seek(2 * 16 + 1);
+        segment.write(9);
+        segment.close();
+
+        assertEquals(1, new WriteAheadLog(directory, SEGMENT_SIZE).read(0).size());
+    }
+
+    @Test
+    public void testRestartAfterDeletesTheSegments() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(directory, SEGMENT_SIZE);
+        log.append(new byte[]{1});
+        log.sync(1);
+
+        WriteAheadLog reopened = new WriteAheadLog(directory, SEGMENT_SIZE);
+        reopened.restartAfter(5);
+        assertEquals(0, directory.listFiles().length);
+        assertEquals(6, reopened.append(new byte[]{2}));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRecordLargerThanASegment() throws IOException {
+        new WriteAheadLog(directory, SEGMENT_SIZE).append(new byte[SEGMENT_SIZE]);
+    }
+}
@@ -1,6 +1,7 @@
 package com.server;
 
 import Core.Room;
+import Mapper.ResourceVersions;
 import Mapper.RoomMapper;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,15 +14,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @PrepareForTest({RoomMapper.class})
@@ -57,9 +62,29 @@ public class AllRoomsControllerTest
 
         when(RoomMapper.getAllData()).thenReturn(roomArrayList);
 
-        this.mockMvc.perform(get("/rooms")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(get("/rooms")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("[{\"id\":0,\"roomNumber\":\"H123\",\"description\":\"Room has a TV.\",\"roomSize\":2},"+
                 "{\"id\":1,\"roomNumber\":\"MBS2.234\",\"description\":\"Room has 2 computers and a desk.\",\"roomSize\":12},"+
                 "{\"id\":2,\"roomNumber\":\"H532\",\"description\":\"Room has nothing. Don't reserve this.\",\"roomSize\":0}]"));
     }
+
+    @Test
+    public void unchangedRoomsAreNotSentAgain() throws Exception
+    {
+        PowerMockito.mockStatic(RoomMapper.class);
+
+        when(RoomMapper.getAllData()).thenReturn(new ArrayList<Room>());
+
+        String etag = this.mockMvc.perform(get("/rooms")).andExpect(status().isOk())
+                .andExpect(header().string("ETag", ResourceVersions.roomsTag())).andReturn().getResponse().getHeader("ETag");
+
+        this.mockMvc.perform(get("/rooms").header("If-None-Match", etag)).andDo(print()).andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        ResourceVersions.roomsChanged();
+
+        MvcResult result = this.mockMvc.perform(get("/rooms").header("If-None-Match", etag)).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andExpect(content().string("[]"));
+    }
 }
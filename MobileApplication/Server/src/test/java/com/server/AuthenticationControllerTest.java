@@ -13,12 +13,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @PrepareForTest({StudentMapper.class})
@@ -47,7 +50,8 @@ public class AuthenticationControllerTest
 
         when(StudentMapper.getData(123456789)).thenReturn(student);
 
-        this.mockMvc.perform(get("/login?username=123456789&password=password")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(get("/login?username=123456789&password=password")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("true"));
 
     }
@@ -61,7 +65,8 @@ public class AuthenticationControllerTest
 
         when(StudentMapper.getData(123456789)).thenReturn(student);
 
-        this.mockMvc.perform(get("/login?username=123456789&password=password"))
+        MvcResult result = this.mockMvc.perform(get("/login?username=123456789&password=password")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
                 .andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("false"));
     }
@@ -70,28 +75,32 @@ public class AuthenticationControllerTest
     @Test
     public void missingParamsReturnsFalse() throws Exception
     {
-        this.mockMvc.perform(get("/login")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(get("/login")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("false"));
     }
 
     @Test
     public void tooShortReturnsFalse() throws Exception
     {
-        this.mockMvc.perform(get("/login?username=1234&password=pass")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(get("/login?username=1234&password=pass")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("false"));
     }
 
     @Test
     public void tooLongReturnsFalse() throws Exception
     {
-        this.mockMvc.perform(get("/login?username=123456781234567890123&password=password1234567890123")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(get("/login?username=123456781234567890123&password=password1234567890123")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("false"));
     }
 
     @Test
     public void usernameNotNumReturnsFalse() throws Exception
     {
-        this.mockMvc.perform(get("/login?username=username&password=password")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(get("/login?username=username&password=password")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("false"));
     }
 }
@@ -0,0 +1,182 @@
+package com.server;
+
+import Core.Day;
+import Mapper.ReservationMapper;
+import Mapper.RoomMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@PrepareForTest({ReservationMapper.class, RoomMapper.class, DatabaseExecutor.class})
+@RunWith(PowerMockRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AvailabilityControllerTest
+{
+    @Autowired
+    private MockMvc mockMvc;
+
+    @InjectMocks
+    private AvailabilityController availabilityController;
+
+    @Before
+    public void setup() throws Exception
+    {
+        this.mockMvc = MockMvcBuilders.standaloneSetup(availabilityController).build();
+
+        PowerMockito.mockStatic(ReservationMapper.class);
+        PowerMockito.mockStatic(RoomMapper.class);
+        //Real executor, watched to see which requests go through it
+        PowerMockito.spy(DatabaseExecutor.class);
+
+        when(ReservationMapper.indexesLoaded()).thenReturn(true);
+        when(RoomMapper.searchIndexLoaded()).thenReturn(true);
+        when(ReservationMapper.findFreeRooms(Day.MONDAY, 9, 11)).thenReturn(new int[]{2, 5});
+        when(ReservationMapper.findFreeRooms(Day.MONDAY, 9, 11, "LB", 6)).thenReturn(new int[]{5});
+        when(ReservationMapper.findFreeRooms(Day.MONDAY, 9, 11, null, 0)).thenReturn(new int[]{2, 5, 40});
+        when(ReservationMapper.findFreeHours(2, Day.TUESDAY)).thenReturn(new int[]{7, 8, 22});
+        when(RoomMapper.hasRoom(2)).thenReturn(true);
+        when(RoomMapper.hasRoom(99)).thenReturn(false);
+    }
+
+    @Test
+    public void availableRoomsReturnsFreeRoomIds() throws Exception
+    {
+        //Answered from memory: the result is there as soon as the request thread returns
+        MvcResult result = this.mockMvc.perform(get("/availableRooms").param("day", "monday").param("startTime", "9").param("endTime", "11")).andReturn();
+        assertArrayEquals(new int[]{2, 5}, (int[]) result.getAsyncResult(0));
+        verifyNotSubmitted();
+    }
+
+    @Test
+    public void roomSearchFiltersByLibraryAndSize() throws Exception
+    {
+        MvcResult result = this.mockMvc.perform(get("/rooms/available").param("day", "monday").param("startTime", "9").param("endTime", "11").param("library", "LB").param("minSize", "6")).andReturn();
+        assertArrayEquals(new int[]{5}, (int[]) result.getAsyncResult(0));
+        verifyNotSubmitted();
+    }
+
+    @Test
+    public void roomSearchWithoutFiltersReturnsEveryFreeRoom() throws Exception
+    {
+        MvcResult result = this.mockMvc.perform(get("/rooms/available").param("day", "monday").param("startTime", "9").param("endTime", "11")).andReturn();
+        assertArrayEquals(new int[]{2, 5, 40}, (int[]) result.getAsyncResult(0));
+        verifyNotSubmitted();
+    }
+
+    @Test
+    public void roomAvailabilityReturnsFreeHours() throws Exception
+    {
+        MvcResult result = this.mockMvc.perform(get("/roomAvailability").param("roomId", "2").param("day", "tuesday")).andReturn();
+        assertArrayEquals(new int[]{7, 8, 22}, (int[]) result.getAsyncResult(0));
+        verifyNotSubmitted();
+    }
+
+    @Test
+    public void unloadedIndexesAreLoadedOnTheExecutor() throws Exception
+    {
+        when(ReservationMapper.indexesLoaded()).thenReturn(false);
+
+        MvcResult result = this.mockMvc.perform(get("/availableRooms").param("day", "monday").param("startTime", "9").param("endTime", "11")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
+                .andExpect(content().string("[2,5]"));
+        verifySubmitted();
+    }
+
+    @Test
+    public void unloadedRoomIndexIsLoadedOnTheExecutor() throws Exception
+    {
+        when(RoomMapper.searchIndexLoaded()).thenReturn(false);
+
+        MvcResult result = this.mockMvc.perform(get("/roomAvailability").param("roomId", "2").param("day", "tuesday")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
+                .andExpect(content().string("[7,8,22]"));
+        verifySubmitted();
+    }
+
+    @Test
+    public void invalidTimeRangeThrowsIllegalArgumentException() throws Exception
+    {
+        //Thrown on the request thread, without an async dispatch
+        try
+        {
+            this.mockMvc.perform(get("/availableRooms").param("day", "monday").param("startTime", "11").param("endTime", "9"));
+            fail();
+        }
+        catch(/*IllegalArgument*/Exception e)
+        {
+            assertTrue(true);
+        }
+        verifyNotSubmitted();
+    }
+
+    @Test
+    public void invalidDayThrowsIllegalArgumentExceptionBeforeLoading() throws Exception
+    {
+        when(ReservationMapper.indexesLoaded()).thenReturn(false);
+
+        try
+        {
+            this.mockMvc.perform(get("/rooms/available").param("day", "someday").param("startTime", "9").param("endTime", "11"));
+            fail();
+        }
+        catch(/*IllegalArgument*/Exception e)
+        {
+            assertTrue(true);
+        }
+        verifyNotSubmitted();
+    }
+
+    @Test
+    public void unknownRoomThrowsIllegalArgumentException() throws Exception
+    {
+        try
+        {
+            this.mockMvc.perform(get("/roomAvailability").param("roomId", "99").param("day", "tuesday"));
+            fail();
+        }
+        catch(/*IllegalArgument*/Exception e)
+        {
+            assertTrue(true);
+        }
+        verifyNotSubmitted();
+    }
+
+    private static void verifyNotSubmitted()
+    {
+        PowerMockito.verifyStatic(never());
+        DatabaseExecutor.submit(any(DatabaseExecutor.Bulkhead.class), any(Callable.class));
+    }
+
+    private static void verifySubmitted()
+    {
+        PowerMockito.verifyStatic(times(1));
+        DatabaseExecutor.submit(any(DatabaseExecutor.Bulkhead.class), any(Callable.class));
+    }
+}
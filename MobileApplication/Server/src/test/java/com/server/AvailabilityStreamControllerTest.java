@@ -0,0 +1,62 @@
+package com.server;
+
+import Mapper.ReservationChangeFeed;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+public class AvailabilityStreamControllerTest
+{
+    private MockMvc mockMvc;
+
+    private AvailabilityStreamController availabilityStreamController;
+
+    @Before
+    public void setup()
+    {
+        availabilityStreamController = new AvailabilityStreamController();
+        availabilityStreamController.start();
+        this.mockMvc = MockMvcBuilders.standaloneSetup(availabilityStreamController).build();
+    }
+
+    @After
+    public void tearDown()
+    {
+        availabilityStreamController.stop();
+    }
+
+    @Test
+    public void newStreamStartsAtTheLastChange() throws Exception
+    {
+        MvcResult result = this.mockMvc.perform(get("/availabilityStream")).andExpect(request().asyncStarted()).andReturn();
+
+        String content = result.getResponse().getContentAsString();
+        assertTrue(content, content.contains("event:start"));
+        assertTrue(content, content.contains("id:" + ReservationChangeFeed.getEpoch() + ":" + ReservationChangeFeed.getLastSequence()));
+    }
+
+    @Test
+    public void eventIdOfAnotherRunAsksForResync() throws Exception
+    {
+        MvcResult result = this.mockMvc.perform(get("/availabilityStream").header("Last-Event-ID", "previousrun:12")).andExpect(request().asyncStarted()).andReturn();
+
+        String content = result.getResponse().getContentAsString();
+        assertTrue(content, content.contains("event:resync"));
+    }
+
+    @Test
+    public void resumingStreamGetsNothingWhenNothingChanged() throws Exception
+    {
+        String lastEventId = ReservationChangeFeed.getEpoch() + ":" + ReservationChangeFeed.getLastSequence();
+        MvcResult result = this.mockMvc.perform(get("/availabilityStream").param("lastEventId", lastEventId)).andExpect(request().asyncStarted()).andReturn();
+
+        assertTrue(result.getResponse().getContentAsString().isEmpty());
+    }
+}
@@ -0,0 +1,97 @@
+package com.server;
+
+import Mapper.ReservationMapper;
+import Mapper.ReservationOperation;
+import Mapper.RoomMapper;
+import Mapper.StudentMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@PrepareForTest({ReservationMapper.class, RoomMapper.class, StudentMapper.class})
+@RunWith(PowerMockRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BatchReservationControllerTest
+{
+    @Autowired
+    private MockMvc mockMvc;
+
+    @InjectMocks
+    private BatchReservationController batchReservationController;
+
+    @Before
+    public void setup() throws Exception
+    {
+        this.mockMvc = MockMvcBuilders.standaloneSetup(batchReservationController).build();
+
+        PowerMockito.mockStatic(ReservationMapper.class);
+        PowerMockito.mockStatic(RoomMapper.class);
+        PowerMockito.mockStatic(StudentMapper.class);
+
+        when(StudentMapper.validStudent(12345678)).thenReturn(true);
+        when(RoomMapper.validRoom(2)).thenReturn(true);
+        when(ReservationMapper.applyBatch(eq(12345678), anyListOf(ReservationOperation.class))).thenReturn(new int[]{0, 1});
+    }
+
+    @Test
+    public void normalCaseReturnsPositions() throws Exception
+    {
+        MvcResult result = this.mockMvc.perform(post("/reservations/batch").param("studentId", "12345678").contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"type\":\"delete\",\"reservationId\":4},{\"type\":\"create\",\"roomId\":2,\"day\":\"monday\",\"startTime\":9,\"endTime\":10}]")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
+                .andDo(print()).andExpect(status().isOk()).andExpect(content().string("[0,1]"));
+    }
+
+    @Test
+    public void invalidOperationThrowsIllegalArgumentException() throws Exception
+    {
+        try
+        {
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(post("/reservations/batch").param("studentId", "12345678").contentType(MediaType.APPLICATION_JSON)
+                    .content("[{\"type\":\"delete\",\"reservationId\":4},{\"type\":\"modify\",\"reservationId\":5,\"roomId\":2,\"day\":\"someday\",\"startTime\":9,\"endTime\":10}]")).andReturn()));
+            fail();
+        }
+        catch(/*IllegalArgument*/Exception e)
+        {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void emptyBatchThrowsIllegalArgumentException() throws Exception
+    {
+        try
+        {
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(post("/reservations/batch").param("studentId", "12345678").contentType(MediaType.APPLICATION_JSON).content("[]")).andReturn()));
+            fail();
+        }
+        catch(/*IllegalArgument*/Exception e)
+        {
+            assertTrue(true);
+        }
+    }
+}
@@ -13,15 +13,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @PrepareForTest({StudentMapper.class})
@@ -49,7 +52,8 @@ public class ChangePasswordControllerTest
 
         when(StudentMapper.getData(12345678)).thenReturn(student);
 
-        this.mockMvc.perform(post("/changePassword").param("username", "12345678").param("newPassword", "newPasswordHere")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(post("/changePassword").param("username", "12345678").param("newPassword", "newPasswordHere")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("true"));
     }
 
@@ -58,7 +62,7 @@ public class ChangePasswordControllerTest
     {
         try
         {
-            this.mockMvc.perform(post("/changePassword").param("username", "1234").param("newPassword", "pass")).andDo(print());
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(post("/changePassword").param("username", "1234").param("newPassword", "pass")).andReturn())).andDo(print());
             fail();
         }
         catch(/*IllegalArgument*/Exception e)
@@ -72,7 +76,7 @@ public class ChangePasswordControllerTest
     {
         try
         {
-            this.mockMvc.perform(post("/changePassword").param("username", "123456781234567890123").param("newPassword", "password1234567890123")).andDo(print());
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(post("/changePassword").param("username", "123456781234567890123").param("newPassword", "password1234567890123")).andReturn())).andDo(print());
             fail();
         }
         catch(/*IllegalArgument*/Exception e)
@@ -86,7 +90,7 @@ public class ChangePasswordControllerTest
     {
         try
         {
-            this.mockMvc.perform(post("/changePassword").param("username", "username").param("newPassword", "password1234567890123")).andDo(print());
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(post("/changePassword").param("username", "username").param("newPassword", "password1234567890123")).andReturn())).andDo(print());
             fail();
         }
         catch(/*IllegalArgument*/Exception e)
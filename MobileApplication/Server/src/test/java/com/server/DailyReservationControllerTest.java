@@ -1,5 +1,6 @@
 package com.server;
 
+import Core.Day;
 import Core.Reservation;
 import Mapper.ReservationMapper;
 import com.server.DailyReservationsController;
@@ -16,15 +17,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @PrepareForTest({ReservationMapper.class})
@@ -47,9 +51,9 @@ public class DailyReservationControllerTest
     @Test
     public void normalCase() throws Exception
     {
-        Reservation reservation1 = new Reservation(1, 1, 1, "monday", 8, 9, 0);
-        Reservation reservation2 = new Reservation(2, 2, 5, "monday", 10, 11, 0);
-        Reservation reservation3 = new Reservation(3, 3, 3, "monday", 19, 20, 0);
+        Reservation reservation1 = new Reservation(1, 1, 1, Day.MONDAY, 8, 9, 0);
+        Reservation reservation2 = new Reservation(2, 2, 5, Day.MONDAY, 10, 11, 0);
+        Reservation reservation3 = new Reservation(3, 3, 3, Day.MONDAY, 19, 20, 0);
 
         ArrayList<Reservation> reservationArrayList = new ArrayList<Reservation>();
         reservationArrayList.add(reservation1);
@@ -58,9 +62,10 @@ public class DailyReservationControllerTest
 
         PowerMockito.mockStatic(ReservationMapper.class);
 
-        when(ReservationMapper.getFullReservationsForDay("monday")).thenReturn(reservationArrayList);
+        when(ReservationMapper.getFullReservationsForDay(Day.MONDAY)).thenReturn(reservationArrayList);
 
-        this.mockMvc.perform(get("/dailyReservations?weekDay=monday")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(get("/dailyReservations?weekDay=monday")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("[{\"id\":1,\"roomId\":1,\"studentId\":1,\"day\":\"monday\",\"startTime\":8,\"endTime\":9,\"position\":0},"+
                 "{\"id\":2,\"roomId\":2,\"studentId\":5,\"day\":\"monday\",\"startTime\":10,\"endTime\":11,\"position\":0},"+
                 "{\"id\":3,\"roomId\":3,\"studentId\":3,\"day\":\"monday\",\"startTime\":19,\"endTime\":20,\"position\":0}]"));
@@ -73,7 +78,7 @@ public class DailyReservationControllerTest
     {
         try
         {
-            this.mockMvc.perform(get("/dailyReservations?weekDay=moday"));
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(get("/dailyReservations?weekDay=moday")).andReturn()));
         }
         catch (/*InvalidArgument*/Exception e)
         {
@@ -86,7 +91,7 @@ public class DailyReservationControllerTest
     {
         try
         {
-            this.mockMvc.perform(get("/dailyReservations"));
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(get("/dailyReservations")).andReturn()));
         }
         catch (/*InvalidArgument*/Exception e)
         {
@@ -0,0 +1,63 @@
+package com.server;
+
+import org.junit.Test;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DatabaseExecutorTest
+{
+    @Test
+    public void fullBulkheadTurnsRequestsAway() throws Exception
+    {
+        System.setProperty("async.fullBulkheadTest.max-concurrent", "1");
+        DatabaseExecutor.Bulkhead bulkhead = DatabaseExecutor.bulkhead("fullBulkheadTest");
+        CountDownLatch release = new CountDownLatch(1);
+
+        DeferredResult<Integer> running = DatabaseExecutor.submit(bulkhead, () ->
+        {
+            release.await();
+            return 1;
+        });
+        DeferredResult<Integer> rejected = DatabaseExecutor.submit(bulkhead, () -> 2);
+
+        assertTrue(rejected.getResult() instanceof DatabaseExecutor.BusyException);
+        assertEquals(1, bulkhead.getInProgress());
+
+        release.countDown();
+        waitFor(running);
+        assertEquals(1, running.getResult());
+
+        //The permit is given back just after the result is set
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(bulkhead.getInProgress() > 0 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+
+        DeferredResult<Integer> accepted = DatabaseExecutor.submit(bulkhead, () -> 3);
+        waitFor(accepted);
+        assertEquals(3, accepted.getResult());
+    }
+
+    @Test
+    public void failedTaskSendsItsException() throws Exception
+    {
+        DeferredResult<Integer> result = DatabaseExecutor.submit(DatabaseExecutor.bulkhead("failedTaskTest"), () ->
+        {
+            throw new IllegalArgumentException("One of more of the parameters are invalid.");
+        });
+
+        waitFor(result);
+        assertTrue(result.getResult() instanceof IllegalArgumentException);
+    }
+
+    private static void waitFor(DeferredResult<?> result) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(!result.hasResult() && System.nanoTime() < deadline)
+            Thread.sleep(1);
+    }
+}
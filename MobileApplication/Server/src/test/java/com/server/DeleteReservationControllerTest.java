@@ -1,5 +1,6 @@
 package com.server;
 
+import Core.Day;
 import Core.Reservation;
 import Mapper.ReservationMapper;
 import org.junit.Before;
@@ -13,6 +14,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.ArrayList;
@@ -20,9 +22,11 @@ import java.util.ArrayList;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -46,9 +50,9 @@ public class DeleteReservationControllerTest
 
         PowerMockito.mockStatic(ReservationMapper.class);
 
-        Reservation reservation1 = new Reservation(1, 1, 12345678, "monday", 8, 9, 0);
-        Reservation reservation2 = new Reservation(2, 2, 12345678, "tuesday", 10, 11, 15);
-        Reservation reservation3 = new Reservation(3, 3, 12345678, "wednesday", 19, 20, 1);
+        Reservation reservation1 = new Reservation(1, 1, 12345678, Day.MONDAY, 8, 9, 0);
+        Reservation reservation2 = new Reservation(2, 2, 12345678, Day.TUESDAY, 10, 11, 15);
+        Reservation reservation3 = new Reservation(3, 3, 12345678, Day.WEDNESDAY, 19, 20, 1);
 
         ArrayList<Reservation> reservationArrayList = new ArrayList<Reservation>();
         reservationArrayList.add(reservation1);
@@ -59,12 +63,16 @@ public class DeleteReservationControllerTest
 
         when(ReservationMapper.getAllResOfStudent(12345678)).thenReturn(reservationArrayList);
         when(ReservationMapper.getAllResOfStudent(12345679)).thenReturn(emptyArrayList);
+        when(ReservationMapper.getResOfStudent(12345678, 1)).thenReturn(reservation1);
+        when(ReservationMapper.getResOfStudent(12345678, 2)).thenReturn(reservation2);
+        when(ReservationMapper.getResOfStudent(12345678, 3)).thenReturn(reservation3);
     }
 
     @Test
     public void normalCaseReturnsPosition() throws Exception
     {
-        this.mockMvc.perform(post("/deleteReservation").param("studentId", "12345678").param("reservationId", "2")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(post("/deleteReservation").param("studentId", "12345678").param("reservationId", "2")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("true"));
     }
 
@@ -74,7 +82,7 @@ public class DeleteReservationControllerTest
     {
         try
         {
-            this.mockMvc.perform(post("/deleteReservation").param("studentId", "12345679").param("reservationId", "1"));
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(post("/deleteReservation").param("studentId", "12345679").param("reservationId", "1")).andReturn()));
             fail();
         }
         catch(/*IllegalArgument*/Exception e)
@@ -1,5 +1,6 @@
 package com.server;
 
+import Core.Day;
 import Core.Reservation;
 import Mapper.ReservationMapper;
 import Mapper.RoomMapper;
@@ -15,6 +16,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.ArrayList;
@@ -22,9 +24,11 @@ import java.util.ArrayList;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -50,9 +54,9 @@ public class ModifyReservationControllerTest
         PowerMockito.mockStatic(StudentMapper.class);
         PowerMockito.mockStatic(RoomMapper.class);
 
-        Reservation reservation1 = new Reservation(1, 1, 12345678, "monday", 8, 9, 0);
-        Reservation reservation2 = new Reservation(2, 2, 12345678, "tuesday", 10, 11, 15);
-        Reservation reservation3 = new Reservation(3, 3, 12345678, "wednesday", 19, 20, 1);
+        Reservation reservation1 = new Reservation(1, 1, 12345678, Day.MONDAY, 8, 9, 0);
+        Reservation reservation2 = new Reservation(2, 2, 12345678, Day.TUESDAY, 10, 11, 15);
+        Reservation reservation3 = new Reservation(3, 3, 12345678, Day.WEDNESDAY, 19, 20, 1);
 
         ArrayList<Reservation> reservationArrayList = new ArrayList<Reservation>();
         reservationArrayList.add(reservation1);
@@ -61,9 +65,12 @@ public class ModifyReservationControllerTest
 
         ArrayList<Reservation> emptyArrayList = new ArrayList<Reservation>();
 
-        when(ReservationMapper.modifyReservation(true, reservation1, 0, 12345678, "Monday", 12, 13)).thenReturn(0);
+        when(ReservationMapper.modifyReservation(true, reservation1, 0, 12345678, Day.MONDAY, 12, 13)).thenReturn(0);
         when(ReservationMapper.getAllResOfStudent(12345678)).thenReturn(reservationArrayList);
         when(ReservationMapper.getAllResOfStudent(22222222)).thenReturn(emptyArrayList);
+        when(ReservationMapper.getResOfStudent(12345678, 1)).thenReturn(reservation1);
+        when(ReservationMapper.getResOfStudent(12345678, 2)).thenReturn(reservation2);
+        when(ReservationMapper.getResOfStudent(12345678, 3)).thenReturn(reservation3);
         when(StudentMapper.validStudent(12345678)).thenReturn(true);
         when(StudentMapper.validStudent(12345679)).thenReturn(false);
         when(RoomMapper.validRoom(0)).thenReturn(true);
@@ -73,7 +80,8 @@ public class ModifyReservationControllerTest
     @Test
     public void normalCaseReturnsPosition() throws Exception
     {
-        this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "0").param("studentId", "12345678").param("newDay", "Monday").param("newStartTime", "12").param("newEndTime", "13").param("reservation", "true")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "0").param("studentId", "12345678").param("newDay", "Monday").param("newStartTime", "12").param("newEndTime", "13").param("reservation", "true")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("0"));
     }
 
@@ -83,7 +91,7 @@ public class ModifyReservationControllerTest
     {
         try
         {
-            this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "0").param("studentId", "12345678").param("newDay", "Monday").param("newStartTime", "12").param("newEndTime", "10").param("reservation", "true"));
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "0").param("studentId", "12345678").param("newDay", "Monday").param("newStartTime", "12").param("newEndTime", "10").param("reservation", "true")).andReturn()));
             fail();
         }
         catch(/*IllegalArgument*/Exception e)
@@ -97,7 +105,7 @@ public class ModifyReservationControllerTest
     {
         try
         {
-            this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "0").param("studentId", "12345679").param("newDay", "Monday").param("newStartTime", "12").param("newEndTime", "13").param("reservation", "true"));
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "0").param("studentId", "12345679").param("newDay", "Monday").param("newStartTime", "12").param("newEndTime", "13").param("reservation", "true")).andReturn()));
             fail();
         }
         catch(/*IllegalArgument*/Exception e)
@@ -111,7 +119,7 @@ public class ModifyReservationControllerTest
     {
         try
         {
-            this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "1").param("studentId", "12345678").param("newDay", "Monday").param("newStartTime", "12").param("newEndTime", "13").param("reservation", "true"));
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "1").param("studentId", "12345678").param("newDay", "Monday").param("newStartTime", "12").param("newEndTime", "13").param("reservation", "true")).andReturn()));
             fail();
         }
         catch(/*IllegalArgument*/Exception e)
@@ -125,7 +133,7 @@ public class ModifyReservationControllerTest
     {
         try
         {
-            this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "0").param("studentId", "12345678").param("newDay", "Monday").param("newStartTime", "-1").param("newEndTime", "0").param("reservation", "true"));
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "0").param("studentId", "12345678").param("newDay", "Monday").param("newStartTime", "-1").param("newEndTime", "0").param("reservation", "true")).andReturn()));
             fail();
         }
         catch(/*IllegalArgument*/Exception e)
@@ -139,7 +147,7 @@ public class ModifyReservationControllerTest
     {
         try
         {
-            this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "0").param("studentId", "12345678").param("newDay", "341").param("newStartTime", "12").param("newEndTime", "13").param("reservation", "true"));
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "0").param("studentId", "12345678").param("newDay", "341").param("newStartTime", "12").param("newEndTime", "13").param("reservation", "true")).andReturn()));
             fail();
         }
         catch(/*IllegalArgument*/Exception e)
@@ -153,7 +161,7 @@ public class ModifyReservationControllerTest
     {
         try
         {
-            this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "0").param("studentId", "22222222").param("newDay", "monday").param("newStartTime", "12").param("newEndTime", "13").param("reservation", "true"));
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(post("/modifyReservation").param("oldReservationId", "1").param("newRoomId", "0").param("studentId", "22222222").param("newDay", "monday").param("newStartTime", "12").param("newEndTime", "13").param("reservation", "true")).andReturn()));
             fail();
         }
         catch(/*IllegalArgument*/Exception e)
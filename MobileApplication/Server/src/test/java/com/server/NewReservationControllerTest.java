@@ -1,5 +1,6 @@
 package com.server;
 
+import Core.Day;
 import Core.Student;
 import Core.Room;
 import Mapper.ReservationMapper;
@@ -16,13 +17,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -48,7 +52,7 @@ public class NewReservationControllerTest
         PowerMockito.mockStatic(StudentMapper.class);
         PowerMockito.mockStatic(RoomMapper.class);
 
-        when(ReservationMapper.makeNew(0, 0, "Monday", 12, 13)).thenReturn(0);
+        when(ReservationMapper.makeNew(0, 0, Day.MONDAY, 12, 13)).thenReturn(0);
         when(StudentMapper.validStudent(12345678)).thenReturn(true);
         when(StudentMapper.validStudent(12345679)).thenReturn(false);
         when(RoomMapper.validRoom(0)).thenReturn(true);
@@ -58,7 +62,8 @@ public class NewReservationControllerTest
     @Test
     public void normalCaseReturnsPosition() throws Exception
     {
-        this.mockMvc.perform(post("/reservation").param("roomId", "0").param("studentId", "12345678").param("day", "Monday").param("startTime", "12").param("endTime", "13")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(post("/reservation").param("roomId", "0").param("studentId", "12345678").param("day", "Monday").param("startTime", "12").param("endTime", "13")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("0"));
     }
 
@@ -66,35 +71,40 @@ public class NewReservationControllerTest
     @Test
     public void tooBigRangeInvalid() throws Exception
     {
-        this.mockMvc.perform(post("/reservation").param("roomId", "0").param("studentId", "12345678").param("day", "Monday").param("startTime", "12").param("endTime", "10")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(post("/reservation").param("roomId", "0").param("studentId", "12345678").param("day", "Monday").param("startTime", "12").param("endTime", "10")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("-1"));
     }
 
     @Test
     public void notRealStudent() throws Exception
     {
-        this.mockMvc.perform(post("/reservation").param("roomId", "0").param("studentId", "12345679").param("day", "Monday").param("startTime", "-1").param("endTime", "0")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(post("/reservation").param("roomId", "0").param("studentId", "12345679").param("day", "Monday").param("startTime", "-1").param("endTime", "0")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("-1"));
     }
 
     @Test
     public void notRealRoom() throws Exception
     {
-        this.mockMvc.perform(post("/reservation").param("roomId", "1").param("studentId", "12345678").param("day", "Monday").param("startTime", "-1").param("endTime", "0")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(post("/reservation").param("roomId", "1").param("studentId", "12345678").param("day", "Monday").param("startTime", "-1").param("endTime", "0")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("-1"));
     }
 
     @Test
     public void invalidTimes() throws Exception
     {
-        this.mockMvc.perform(post("/reservation").param("roomId", "0").param("studentId", "12345678").param("day", "Monday").param("startTime", "-1").param("endTime", "0")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(post("/reservation").param("roomId", "0").param("studentId", "12345678").param("day", "Monday").param("startTime", "-1").param("endTime", "0")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("-1"));
     }
 
     @Test
     public void invalidDay() throws Exception
     {
-        this.mockMvc.perform(post("/reservation").param("roomId", "0").param("studentId", "12345678").param("day", "341").param("startTime", "12").param("endTime", "13")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(post("/reservation").param("roomId", "0").param("studentId", "12345678").param("day", "341").param("startTime", "12").param("endTime", "13")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("-1"));
     }
 }
@@ -1,8 +1,10 @@
 package com.server;
 
+import Core.Day;
 import Core.Reservation;
 import Core.Student;
 import Mapper.ReservationMapper;
+import Mapper.ResourceVersions;
 import Mapper.StudentMapper;
 import org.junit.Before;
 import org.junit.Test;
@@ -15,6 +17,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.lang.reflect.Array;
@@ -23,9 +26,11 @@ import java.util.ArrayList;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @PrepareForTest({ReservationMapper.class, StudentMapper.class})
@@ -48,9 +53,9 @@ public class UserReservationsControllerTest
     @Test
     public void normalCase() throws Exception
     {
-        Reservation reservation1 = new Reservation(1, 1, 1, "monday", 8, 9, 0);
-        Reservation reservation2 = new Reservation(2, 2, 5, "monday", 10, 11, 15);
-        Reservation reservation3 = new Reservation(3, 3, 3, "monday", 19, 20, 1);
+        Reservation reservation1 = new Reservation(1, 1, 1, Day.MONDAY, 8, 9, 0);
+        Reservation reservation2 = new Reservation(2, 2, 5, Day.MONDAY, 10, 11, 15);
+        Reservation reservation3 = new Reservation(3, 3, 3, Day.MONDAY, 19, 20, 1);
 
         ArrayList<Reservation> reservationArrayList = new ArrayList<Reservation>();
         reservationArrayList.add(reservation1);
@@ -63,18 +68,38 @@ public class UserReservationsControllerTest
         when(ReservationMapper.getAllResOfStudent(27511876)).thenReturn(reservationArrayList);
         when(StudentMapper.validStudent(27511876)).thenReturn(true);
 
-        this.mockMvc.perform(get("/userReservations?studentId=27511876")).andDo(print()).andExpect(status().isOk())
+        MvcResult result = this.mockMvc.perform(get("/userReservations?studentId=27511876")).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andDo(print()).andExpect(status().isOk())
                 .andExpect(content().string("[{\"id\":1,\"roomId\":1,\"studentId\":1,\"day\":\"monday\",\"startTime\":8,\"endTime\":9,\"position\":0},"+
                         "{\"id\":2,\"roomId\":2,\"studentId\":5,\"day\":\"monday\",\"startTime\":10,\"endTime\":11,\"position\":15},"+
                         "{\"id\":3,\"roomId\":3,\"studentId\":3,\"day\":\"monday\",\"startTime\":19,\"endTime\":20,\"position\":1}]"));
     }
 
+    @Test
+    public void unchangedReservationsAreNotSentAgain() throws Exception
+    {
+        PowerMockito.mockStatic(ReservationMapper.class);
+        PowerMockito.mockStatic(StudentMapper.class);
+
+        when(ReservationMapper.getAllResOfStudent(27511876)).thenReturn(new ArrayList<Reservation>());
+        when(StudentMapper.validStudent(27511876)).thenReturn(true);
+
+        this.mockMvc.perform(get("/userReservations?studentId=27511876").header("If-None-Match", ResourceVersions.studentTag(27511876))).andDo(print())
+                .andExpect(status().isNotModified()).andExpect(content().string(""));
+
+        String etag = ResourceVersions.studentTag(27511876);
+        ResourceVersions.weekChanged();
+
+        MvcResult result = this.mockMvc.perform(get("/userReservations?studentId=27511876").header("If-None-Match", etag)).andExpect(request().asyncStarted()).andReturn();
+        this.mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andExpect(content().string("[]"));
+    }
+
     @Test
     public void invalidStudentIdThrowsIllegalArgumentException() throws Exception
     {
         try
         {
-            this.mockMvc.perform(get("/userReservations?studentId=1"));
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(get("/userReservations?studentId=1")).andReturn()));
             fail();
         }
         catch (/*IllegalArgument*/Exception e)
@@ -92,7 +117,7 @@ public class UserReservationsControllerTest
 
         try
         {
-            this.mockMvc.perform(get("/userReservations?studentId=33333333"));
+            this.mockMvc.perform(asyncDispatch(this.mockMvc.perform(get("/userReservations?studentId=33333333")).andReturn()));
             fail();
         }
         catch (/*IllegalArgument*/Exception e)